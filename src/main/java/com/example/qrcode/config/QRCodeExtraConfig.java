@@ -1,13 +1,42 @@
 package com.example.qrcode.config;
 
+import com.example.qrcode.config.QRCodeProperties.QRCodeAdmissionProperties;
+import com.example.qrcode.config.QRCodeProperties.QRCodeBatchProperties;
+import com.example.qrcode.config.QRCodeProperties.QRCodeCacheProperties;
 import com.example.qrcode.config.QRCodeProperties.QRCodeFontProperties;
+import com.example.qrcode.config.QRCodeProperties.QRCodeSinkProperties;
+import com.example.qrcode.config.QRCodeProperties.SinkType;
+import com.example.qrcode.config.QRCodeProperties.QRCodeStoreProperties;
+import com.example.qrcode.config.QRCodeProperties.QRCodeVerifyProperties;
+import com.example.qrcode.core.QRCodeCanvasPool;
+import com.example.qrcode.core.QRCodeDirectorySink;
+import com.example.qrcode.core.QRCodeFontRegistry;
 import com.example.qrcode.core.QRCodeGenerator;
+import com.example.qrcode.core.QRCodeLabelCache;
+import com.example.qrcode.core.QRCodeMemorySink;
+import com.example.qrcode.core.QRCodeMetrics;
+import com.example.qrcode.core.QRCodeObjectStoreSink;
+import com.example.qrcode.core.QRCodeOutputSink;
+import com.example.qrcode.core.QRCodeRenderStore;
+import com.example.qrcode.core.QRCodeRenderLimiter;
+import com.example.qrcode.core.QRCodeRenderOptions;
+import com.example.qrcode.core.QRCodeVerifier;
 import com.example.qrcode.entity.QRCodeExtraData;
+import com.example.qrcode.service.QRCodeFileShardStore;
+import com.example.qrcode.service.QRCodeShardService;
+import com.example.qrcode.service.QRCodeShardStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.dromara.hutool.core.util.SystemUtil;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -16,7 +45,14 @@ import java.awt.*;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Enter the description of this class here
@@ -29,28 +65,233 @@ import java.nio.file.Files;
 @EnableConfigurationProperties({QRCodeProperties.class})
 public class QRCodeExtraConfig {
 
+    /**
+     * 生成测试二维码图片, 写入输出存储的 test 目录
+     */
     @Bean
-    public ApplicationRunner qrCodeExtraTestRunner(QRCodeProperties qrCodeProperties) {
+    public ApplicationRunner qrCodeExtraTestRunner(QRCodeProperties qrCodeProperties, QRCodeOutputSink qrCodeOutputSink) {
         return args -> {
             if (Boolean.TRUE.equals(qrCodeProperties.getTest())) {
                 String text = qrCodeProperties.getBaseText();
+                QRCodeRenderOptions options = qrCodeProperties.toRenderOptions(400);
                 QRCodeExtraData extraData = QRCodeExtraData.getTestInstance();
                 String baseName = FilenameUtils.getBaseName(qrCodeProperties.getIconPath());
                 String extension = FilenameUtils.getExtension(qrCodeProperties.getIconPath());
-                CanDisplayChinese.canDisplay(); // 打印所有支持的中文字体
-                String currentDir = SystemUtil.get("user.dir");
-                String targetFilepath = currentDir + "/" + baseName + "_target1." + extension;
-                String withExtraDataPath = QRCodeGenerator.generateQRCodeWithExtraData(text, 400, qrCodeProperties.getIconPath(), targetFilepath, extraData);
-                log.info("生成的二维码位置: {}", withExtraDataPath);
-                targetFilepath = currentDir + "/" + baseName + "_target2." + extension;
-                extraData.setStationName("奥迪充电站杭州城西银泰宇宙无敌充电站");
-                withExtraDataPath = QRCodeGenerator.generateQRCodeWithExtraData(text, 400, qrCodeProperties.getIconPath(), targetFilepath, extraData);
-                log.info("生成的二维码位置: {}", withExtraDataPath);
+                // 打印所有支持的中文字体, 枚举系统字体较慢, 在后台线程中执行
+                Thread.ofPlatform().daemon().name("qrcode-font-enumeration").start(CanDisplayChinese::canDisplay);
+                try {
+                    String withExtraDataPath = QRCodeGenerator.writeQRCodeWithExtraData(text, options, extraData,
+                            qrCodeOutputSink, "test/" + baseName + "_target1." + extension);
+                    log.info("生成的二维码位置: {}", withExtraDataPath);
+                    extraData.setStationName("奥迪充电站杭州城西银泰宇宙无敌充电站");
+                    withExtraDataPath = QRCodeGenerator.writeQRCodeWithExtraData(text, options, extraData,
+                            qrCodeOutputSink, "test/" + baseName + "_target2." + extension);
+                    log.info("生成的二维码位置: {}", withExtraDataPath);
+                } catch (Exception e) {
+                    log.error("生成测试二维码失败", e);
+                }
             }
         };
     }
 
+    /**
+     * 延迟加载字体时, 在后台线程中预先加载字体与图标并生成一张二维码, 第一个请求不必等待
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "pile.connector.qr-code.startup", name = "lazy-fonts", havingValue = "true")
+    public ApplicationRunner qrCodeWarmUpRunner(QRCodeProperties qrCodeProperties) {
+        return args -> {
+            if (!Boolean.TRUE.equals(qrCodeProperties.getStartup().getWarmUp())) {
+                return;
+            }
+            Thread.ofPlatform().daemon().name("qrcode-warm-up").start(() -> {
+                long start = System.nanoTime();
+                try {
+                    QRCodeGenerator.writeQRCodeWithExtraData(qrCodeProperties.getBaseText(), qrCodeProperties.toRenderOptions(400),
+                            QRCodeExtraData.getTestInstance(), OutputStream.nullOutputStream());
+                    log.info("二维码预热完成, 耗时: {} ms", QRCodeMetrics.recordWarmUp(start));
+                } catch (Exception e) {
+                    log.warn("二维码预热失败", e);
+                }
+            });
+        };
+    }
+
+    /**
+     * 二维码输出存储; 定义其他 {@link QRCodeOutputSink} 实现时不再创建, 如: 对接真实的对象存储
+     */
+    @Bean
+    @ConditionalOnMissingBean(QRCodeOutputSink.class)
+    public QRCodeOutputSink qrCodeOutputSink(QRCodeProperties qrCodeProperties) throws IOException {
+        QRCodeSinkProperties sink = qrCodeProperties.getSink();
+        Path importRoot = Path.of(qrCodeProperties.getImporting().getPath()).toAbsolutePath().normalize();
+        if (sink.getType() != SinkType.MEMORY && importRoot.startsWith(Path.of(sink.getPath()).toAbsolutePath().normalize())) {
+            throw new IllegalStateException("导入根目录不能位于输出存储根目录中, 否则下载接口可以读取导入的输入文件: " + importRoot);
+        }
+        return switch (sink.getType()) {
+            case DIRECTORY -> new QRCodeDirectorySink(Path.of(sink.getPath()));
+            case MEMORY -> new QRCodeMemorySink();
+            case OBJECT -> new QRCodeObjectStoreSink(Path.of(sink.getPath()), sink.getBucket());
+        };
+    }
+
+    /**
+     * 分片批量任务的共享存储, 默认基于文件; 定义其他 {@link QRCodeShardStore} 实现时不再创建
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean(QRCodeShardStore.class)
+    @ConditionalOnProperty(prefix = "pile.connector.qr-code.shard", name = "enabled", havingValue = "true")
+    public QRCodeFileShardStore qrCodeShardStore(QRCodeProperties qrCodeProperties, ObjectMapper objectMapper) throws IOException {
+        return new QRCodeFileShardStore(Path.of(qrCodeProperties.getShard().getPath()), objectMapper);
+    }
+
+    /**
+     * 启动完成后开始领取分片
+     */
     @Bean
+    @ConditionalOnProperty(prefix = "pile.connector.qr-code.shard", name = "enabled", havingValue = "true")
+    public ApplicationRunner qrCodeShardWorkerRunner(QRCodeShardService qrCodeShardService) {
+        return args -> qrCodeShardService.startWorkers();
+    }
+
+    /**
+     * 批量生成、导入与分片任务的渲染线程池, 线程数与 CPU 核数相当, 队列有界
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService qrCodeRenderExecutor(QRCodeProperties qrCodeProperties) {
+        QRCodeBatchProperties batch = qrCodeProperties.getBatch();
+        AtomicInteger threadNumber = new AtomicInteger();
+        return new ThreadPoolExecutor(batch.getThreads(), batch.getThreads(), 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(batch.getQueueCapacity()),
+                runnable -> new Thread(runnable, "qrcode-render-" + threadNumber.incrementAndGet()),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * 单个二维码的渲染线程池, 只在开启虚拟线程时使用; 队列很短, 已满时拒绝任务, 由调用方返回 429
+     * <p>
+     * 与批量生成、导入和分片任务使用的 qrCodeRenderExecutor 分开, 批量任务占满线程池时单个二维码的请求不受影响
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService qrCodeInteractiveExecutor(QRCodeProperties qrCodeProperties) {
+        QRCodeAdmissionProperties admission = qrCodeProperties.getAdmission();
+        AtomicInteger threadNumber = new AtomicInteger();
+        return new ThreadPoolExecutor(admission.getRenderThreads(), admission.getRenderThreads(), 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(admission.getRenderQueueCapacity()),
+                runnable -> new Thread(runnable, "qrcode-interactive-" + threadNumber.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 二维码图片缓存, 关闭缓存时容量为 0
+     */
+    @Bean
+    public QRCodeLabelCache qrCodeLabelCache(QRCodeProperties qrCodeProperties) {
+        QRCodeCacheProperties cache = qrCodeProperties.getCache();
+        return new QRCodeLabelCache(Boolean.TRUE.equals(cache.getEnabled()) ? cache.getMaxBytes() : 0L);
+    }
+
+    /**
+     * 二维码画布池, 批量生成时复用画布
+     */
+    @Bean
+    public QRCodeCanvasPool qrCodeCanvasPool(QRCodeProperties qrCodeProperties) {
+        QRCodeCanvasPool pool = new QRCodeCanvasPool(qrCodeProperties.getPool().getMaxBytes());
+        QRCodeCanvasPool.setInstance(pool);
+        return pool;
+    }
+
+    /**
+     * 单个二维码渲染的准入控制, 关闭时不限制同时渲染的数量
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "pile.connector.qr-code.admission", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public QRCodeRenderLimiter qrCodeRenderLimiter(QRCodeProperties qrCodeProperties) {
+        QRCodeAdmissionProperties admission = qrCodeProperties.getAdmission();
+        return new QRCodeRenderLimiter("render", admission.getMaxConcurrent(), admission.getQueueCapacity(),
+                admission.getMaxWait(), admission.getRetryAfter());
+    }
+
+    /**
+     * 批量请求的准入控制, 批量请求在写完响应前一直占用许可, 与单个二维码的许可分开计数
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "pile.connector.qr-code.admission", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public QRCodeRenderLimiter qrCodeBatchLimiter(QRCodeProperties qrCodeProperties) {
+        QRCodeAdmissionProperties admission = qrCodeProperties.getAdmission();
+        return new QRCodeRenderLimiter("batch", admission.getMaxBatchConcurrent(), admission.getQueueCapacity(),
+                admission.getMaxWait(), admission.getRetryAfter());
+    }
+
+    /**
+     * 二维码解码校验, 关闭时不校验
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "pile.connector.qr-code.verify", name = "enabled", havingValue = "true")
+    public QRCodeVerifier qrCodeVerifier(QRCodeProperties qrCodeProperties) {
+        QRCodeVerifyProperties verify = qrCodeProperties.getVerify();
+        return new QRCodeVerifier(verify.getThreads(), verify.getQueueCapacity());
+    }
+
+    /**
+     * 二维码图片缓存、磁盘存储、画布池、准入控制与解码校验的统计指标
+     */
+    @Bean
+    public MeterBinder qrCodeMeterBinder(QRCodeLabelCache qrCodeLabelCache, ObjectProvider<QRCodeRenderStore> qrCodeRenderStore,
+                                         QRCodeCanvasPool qrCodeCanvasPool, ObjectProvider<QRCodeRenderLimiter> qrCodeRenderLimiters,
+                                         ObjectProvider<QRCodeVerifier> qrCodeVerifier) {
+        return registry -> {
+            FunctionCounter.builder("qrcode.cache.requests", qrCodeLabelCache, cache -> cache.getStats().hits())
+                    .tag("result", "hit").register(registry);
+            FunctionCounter.builder("qrcode.cache.requests", qrCodeLabelCache, cache -> cache.getStats().misses())
+                    .tag("result", "miss").register(registry);
+            FunctionCounter.builder("qrcode.cache.evictions", qrCodeLabelCache, cache -> cache.getStats().evictions())
+                    .register(registry);
+            Gauge.builder("qrcode.cache.size", qrCodeLabelCache, cache -> cache.getStats().bytes())
+                    .baseUnit("bytes").register(registry);
+            qrCodeRenderStore.ifAvailable(store -> {
+                FunctionCounter.builder("qrcode.store.requests", store, s -> s.getStats().hits())
+                        .tag("result", "hit").register(registry);
+                FunctionCounter.builder("qrcode.store.requests", store, s -> s.getStats().misses())
+                        .tag("result", "miss").register(registry);
+                FunctionCounter.builder("qrcode.store.evictions", store, s -> s.getStats().evictions())
+                        .register(registry);
+                Gauge.builder("qrcode.store.size", store, s -> s.getStats().bytes())
+                        .baseUnit("bytes").register(registry);
+            });
+            FunctionCounter.builder("qrcode.canvas.pool.requests", qrCodeCanvasPool, pool -> pool.getStats().hits())
+                    .tag("result", "hit").register(registry);
+            FunctionCounter.builder("qrcode.canvas.pool.requests", qrCodeCanvasPool, pool -> pool.getStats().misses())
+                    .tag("result", "miss").register(registry);
+            Gauge.builder("qrcode.canvas.pool.idle", qrCodeCanvasPool, pool -> pool.getStats().idleBytes())
+                    .baseUnit("bytes").register(registry);
+            qrCodeRenderLimiters.orderedStream().forEach(limiter -> {
+                Gauge.builder("qrcode.admission.active", limiter, l -> l.getStats().active())
+                        .tag("limiter", limiter.getName()).register(registry);
+                Gauge.builder("qrcode.admission.queue", limiter, l -> l.getStats().waiting())
+                        .tag("limiter", limiter.getName()).register(registry);
+                FunctionCounter.builder("qrcode.admission.requests", limiter, l -> l.getStats().admitted())
+                        .tag("limiter", limiter.getName()).tag("result", "admitted").register(registry);
+                FunctionCounter.builder("qrcode.admission.requests", limiter, l -> l.getStats().rejected())
+                        .tag("limiter", limiter.getName()).tag("result", "rejected").register(registry);
+            });
+            qrCodeVerifier.ifAvailable(verifier ->
+                    Gauge.builder("qrcode.verify.queue", verifier, QRCodeVerifier::getQueueSize).register(registry));
+        };
+    }
+
+    /**
+     * 二维码图片磁盘存储
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "pile.connector.qr-code.store", name = "enabled", havingValue = "true")
+    public QRCodeRenderStore qrCodeRenderStore(QRCodeProperties qrCodeProperties) throws IOException {
+        QRCodeStoreProperties store = qrCodeProperties.getStore();
+        return new QRCodeRenderStore(Path.of(store.getPath()), store.getMaxBytes(), store.getMaxEntries());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "pile.connector.qr-code.startup", name = "lazy-fonts", havingValue = "false", matchIfMissing = true)
     public Font defaultFont(QRCodeProperties qrCodeProperties) {
         String defaultPath = qrCodeProperties.getFont().getDefaultFont();
         Font defaultFont = new Font("宋体", Font.PLAIN, 18); // 服务器不一定有这个字体
@@ -58,7 +299,9 @@ public class QRCodeExtraConfig {
             log.info("加载默认字体文件: {}", defaultPath);
             defaultPath = StringUtils.removeStart(defaultPath, "classpath:");
             try (InputStream fontStream = getClass().getClassLoader().getResourceAsStream(defaultPath)) {
-                assert fontStream != null;
+                if (fontStream == null) {
+                    throw new IOException("字体文件不存在: " + defaultPath);
+                }
                 Font baseFont = Font.createFont(Font.TRUETYPE_FONT, fontStream);
                 defaultFont = baseFont.deriveFont(Font.PLAIN);
                 GraphicsEnvironment.getLocalGraphicsEnvironment().registerFont(defaultFont);
@@ -83,6 +326,7 @@ public class QRCodeExtraConfig {
     }
 
     @Bean
+    @ConditionalOnProperty(prefix = "pile.connector.qr-code.startup", name = "lazy-fonts", havingValue = "false", matchIfMissing = true)
     public Font miSansMediumFont(QRCodeProperties qrCodeProperties) {
         log.info("加载 MiSans-Medium 字体文件: {}", qrCodeProperties.getFont().getMiSansMediumFont());
         QRCodeFontProperties font = qrCodeProperties.getFont();
@@ -91,6 +335,7 @@ public class QRCodeExtraConfig {
     }
 
     @Bean
+    @ConditionalOnProperty(prefix = "pile.connector.qr-code.startup", name = "lazy-fonts", havingValue = "false", matchIfMissing = true)
     public Font miSansNormalFont(QRCodeProperties qrCodeProperties) {
         log.info("加载 MiSans-Normal 字体文件: {}", qrCodeProperties.getFont().getMiSansNormalFont());
         QRCodeFontProperties font = qrCodeProperties.getFont();
@@ -98,13 +343,40 @@ public class QRCodeExtraConfig {
         return deduceFont(path);
     }
 
+    /**
+     * 二维码文字的字体注册表, 字体只加载一次并预先派生各样式的字体
+     * <p>
+     * 延迟加载字体时不创建字体 Bean, 由注册表在第一次使用时直接读取 MiSans-Medium 字体文件, 且不向 GraphicsEnvironment 注册
+     */
+    @Bean
+    public QRCodeFontRegistry qrCodeFontRegistry(@Qualifier("miSansMediumFont") ObjectProvider<Font> miSansMediumFont, QRCodeProperties qrCodeProperties) {
+        Font font = miSansMediumFont.getIfAvailable();
+        QRCodeFontRegistry registry;
+        if (font != null) {
+            registry = new QRCodeFontRegistry(font);
+        } else {
+            String path = StringUtils.removeStart(qrCodeProperties.getFont().getMiSansMediumFont(), "classpath:");
+            registry = new QRCodeFontRegistry(() -> {
+                log.info("延迟加载 MiSans-Medium 字体文件: {}", path);
+                return loadFont(path);
+            });
+        }
+        QRCodeFontRegistry.setInstance(registry);
+        return registry;
+    }
+
     private Font deduceFont(String path) {
+        Font baseFont = loadFont(path);
+        GraphicsEnvironment.getLocalGraphicsEnvironment().registerFont(baseFont);
+        return baseFont;
+    }
+
+    private Font loadFont(String path) {
         try (InputStream fontStream = getClass().getClassLoader().getResourceAsStream(path)) {
-            assert fontStream != null;
-            Font baseFont = Font.createFont(Font.TRUETYPE_FONT, fontStream);
-            baseFont.deriveFont(Font.PLAIN);
-            GraphicsEnvironment.getLocalGraphicsEnvironment().registerFont(baseFont);
-            return baseFont;
+            if (fontStream == null) {
+                throw new IOException("字体文件不存在: " + path);
+            }
+            return Font.createFont(Font.TRUETYPE_FONT, fontStream);
         } catch (IOException | FontFormatException e) {
             log.error("加载字体失败", e);
             return new Font("宋体", Font.PLAIN, 18);
@@ -1,5 +1,8 @@
 package com.example.qrcode.config;
 
+import com.example.qrcode.core.QRCodeCanvasPool;
+import com.example.qrcode.core.QRCodeRenderOptions;
+import com.example.qrcode.util.PngEncoder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -34,6 +37,10 @@ public class QRCodeProperties {
      * 二维码高度
      */
     private Integer height = 300;
+    /**
+     * 二维码静默区宽度, 单位: 模块
+     */
+    private Integer quietZone = 2;
     /**
      * 是否生成测试二维码图片检查是否支持中文
      */
@@ -44,6 +51,90 @@ public class QRCodeProperties {
      * @apiNote 可以不配置
      */
     private QRCodeFontProperties font = new QRCodeFontProperties();
+    /**
+     * 批量生成二维码的配置
+     *
+     * @apiNote 可以不配置
+     */
+    private QRCodeBatchProperties batch = new QRCodeBatchProperties();
+    /**
+     * 二维码图片的 PNG 编码配置
+     *
+     * @apiNote 可以不配置
+     */
+    private QRCodePngProperties png = new QRCodePngProperties();
+    /**
+     * 二维码图片缓存的配置
+     *
+     * @apiNote 可以不配置
+     */
+    private QRCodeCacheProperties cache = new QRCodeCacheProperties();
+    /**
+     * 二维码图片磁盘存储的配置
+     *
+     * @apiNote 可以不配置
+     */
+    private QRCodeStoreProperties store = new QRCodeStoreProperties();
+    /**
+     * 二维码画布池的配置
+     *
+     * @apiNote 可以不配置
+     */
+    private QRCodePoolProperties pool = new QRCodePoolProperties();
+    /**
+     * 二维码渲染准入控制的配置
+     *
+     * @apiNote 可以不配置
+     */
+    private QRCodeAdmissionProperties admission = new QRCodeAdmissionProperties();
+    /**
+     * 二维码打印页 PDF 的配置
+     *
+     * @apiNote 可以不配置
+     */
+    private QRCodeSheetProperties sheet = new QRCodeSheetProperties();
+    /**
+     * 服务启动的配置
+     *
+     * @apiNote 可以不配置
+     */
+    private QRCodeStartupProperties startup = new QRCodeStartupProperties();
+    /**
+     * 二维码解码校验的配置
+     *
+     * @apiNote 可以不配置
+     */
+    private QRCodeVerifyProperties verify = new QRCodeVerifyProperties();
+    /**
+     * 批量导入任务的配置
+     *
+     * @apiNote 可以不配置
+     */
+    private QRCodeImportProperties importing = new QRCodeImportProperties();
+    /**
+     * 多实例分片批量任务的配置
+     *
+     * @apiNote 可以不配置
+     */
+    private QRCodeShardProperties shard = new QRCodeShardProperties();
+    /**
+     * 二维码输出存储的配置
+     *
+     * @apiNote 可以不配置
+     */
+    private QRCodeSinkProperties sink = new QRCodeSinkProperties();
+
+    /**
+     * 根据配置生成渲染参数
+     *
+     * @param size 二维码尺寸
+     * @return 渲染参数
+     */
+    public QRCodeRenderOptions toRenderOptions(int size) {
+        return QRCodeRenderOptions.of(size, iconPath)
+                .setQuietZone(quietZone)
+                .setPngEncoder(new PngEncoder(png.getColorMode(), png.getCompressionLevel(), png.getFilter()));
+    }
 
     /**
      * 二维码图片的字体配置
@@ -68,4 +159,311 @@ public class QRCodeProperties {
          */
         private String miSansNormalFont = "classpath:fonts/MiSans-Normal.ttf";
     }
+
+    /**
+     * 批量生成二维码的配置
+     */
+    @Getter
+    @Setter
+    public static class QRCodeBatchProperties {
+        /**
+         * 渲染线程数, 默认为 CPU 核数
+         */
+        private Integer threads = Runtime.getRuntime().availableProcessors();
+        /**
+         * 渲染线程池的等待队列长度, 队列已满时由提交任务的线程自行渲染
+         */
+        private Integer queueCapacity = 1024;
+        /**
+         * 单次请求最多包含的二维码数量
+         */
+        private Integer maxItems = 20000;
+    }
+
+    /**
+     * 二维码图片的 PNG 编码配置
+     */
+    @Getter
+    @Setter
+    public static class QRCodePngProperties {
+        /**
+         * 颜色类型, 默认无损地选择最小的颜色类型; 配置为 INDEXED 时颜色数超过 256 的图片会被重新映射颜色
+         */
+        private PngEncoder.ColorMode colorMode = PngEncoder.ColorMode.AUTO;
+        /**
+         * 压缩级别, 0 ~ 9, 级别越高体积越小、编码越慢
+         */
+        private Integer compressionLevel = 6;
+        /**
+         * 行过滤方式
+         */
+        private PngEncoder.FilterStrategy filter = PngEncoder.FilterStrategy.ADAPTIVE;
+    }
+
+    /**
+     * 二维码图片缓存的配置
+     */
+    @Getter
+    @Setter
+    public static class QRCodeCacheProperties {
+        /**
+         * 是否缓存生成的二维码图片
+         */
+        private Boolean enabled = true;
+        /**
+         * 缓存容量, 单位: 字节, 默认 64MB
+         */
+        private Long maxBytes = 64L * 1024 * 1024;
+    }
+
+    /**
+     * 二维码图片磁盘存储的配置
+     */
+    @Getter
+    @Setter
+    public static class QRCodeStoreProperties {
+        /**
+         * 是否将生成的二维码图片保存到本地磁盘, 服务重启后可以直接使用
+         */
+        private Boolean enabled = false;
+        /**
+         * 存储根目录
+         */
+        private String path = System.getProperty("java.io.tmpdir") + "/qrcode-store";
+        /**
+         * 图片总大小上限, 单位: 字节, 默认 1GB
+         */
+        private Long maxBytes = 1024L * 1024 * 1024;
+        /**
+         * 图片数量上限, 决定索引文件大小, 创建后不可修改
+         */
+        private Integer maxEntries = 200_000;
+    }
+
+    /**
+     * 二维码画布池的配置
+     */
+    @Getter
+    @Setter
+    public static class QRCodePoolProperties {
+        /**
+         * 空闲画布占用的内存上限, 单位: 字节, 默认 32MB, 为 0 时不复用画布
+         */
+        private Long maxBytes = QRCodeCanvasPool.DEFAULT_MAX_BYTES;
+    }
+
+    /**
+     * 二维码渲染准入控制的配置
+     */
+    @Getter
+    @Setter
+    public static class QRCodeAdmissionProperties {
+        /**
+         * 是否限制同时渲染的数量, 超出限制的请求排队等待, 队列已满时返回 429
+         */
+        private Boolean enabled = true;
+        /**
+         * 同时渲染单个二维码的数量上限, 默认为 CPU 核数
+         */
+        private Integer maxConcurrent = Runtime.getRuntime().availableProcessors();
+        /**
+         * 同时处理的批量请求数量上限, 每个批量请求整体占用一个许可, 直到响应写完;
+         * 与单个二维码的许可分开计数, 慢速客户端的批量下载不会导致单个二维码的请求被拒绝
+         */
+        private Integer maxBatchConcurrent = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+        /**
+         * 等待渲染许可的队列长度, 单个二维码与批量请求各自排队
+         */
+        private Integer queueCapacity = 64;
+        /**
+         * 在队列中等待的最长时间, 单位: 毫秒
+         */
+        private Long maxWait = 2000L;
+        /**
+         * 拒绝请求时响应头 Retry-After 的值, 单位: 秒
+         */
+        private Integer retryAfter = 1;
+        /**
+         * 开启虚拟线程时执行单个二维码渲染的线程数, 默认为 CPU 核数; 与批量生成的渲染线程池分开
+         */
+        private Integer renderThreads = Runtime.getRuntime().availableProcessors();
+        /**
+         * 单个二维码渲染线程池的队列长度, 队列已满时直接拒绝并返回 429, 不在请求线程中渲染
+         */
+        private Integer renderQueueCapacity = Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * 二维码打印页 PDF 的配置, 纸张为 A4 纵向
+     */
+    @Getter
+    @Setter
+    public static class QRCodeSheetProperties {
+        /**
+         * 每页的列数
+         */
+        private Integer columns = 3;
+        /**
+         * 每页的行数
+         */
+        private Integer rows = 4;
+        /**
+         * 页边距, 单位: 毫米
+         */
+        private Float margin = 10f;
+        /**
+         * 二维码之间的间距, 单位: 毫米
+         */
+        private Float gap = 5f;
+    }
+
+    /**
+     * 服务启动的配置, 快速启动见 application-fast-startup.yml
+     */
+    @Getter
+    @Setter
+    public static class QRCodeStartupProperties {
+        /**
+         * 是否延迟加载字体, 开启后启动时不读取字体文件、不向 GraphicsEnvironment 注册字体, 第一次生成二维码时才加载
+         */
+        private Boolean lazyFonts = false;
+        /**
+         * 延迟加载字体时, 是否在启动后由后台线程预先加载字体与图标并生成一张二维码, 不阻塞启动
+         */
+        private Boolean warmUp = true;
+    }
+
+    /**
+     * 二维码解码校验的配置
+     */
+    @Getter
+    @Setter
+    public static class QRCodeVerifyProperties {
+        /**
+         * 是否用 ZXing 解码生成的二维码, 校验能否扫描且内容一致
+         */
+        private Boolean enabled = false;
+        /**
+         * 单个二维码请求的抽样比例, 0 ~ 1, 在校验线程池中异步校验, 不影响响应时间; 校验失败的二维码从缓存与磁盘存储中移除
+         */
+        private Double interactiveRate = 0.01;
+        /**
+         * 批量生成的抽样比例, 0 ~ 1, 打印任务建议全部校验; 校验失败的二维码记录在批量结果中, 不写入压缩包
+         */
+        private Double batchRate = 1.0;
+        /**
+         * 异步校验的线程数
+         */
+        private Integer threads = 1;
+        /**
+         * 等待异步校验的队列长度, 队列已满时丢弃校验
+         */
+        private Integer queueCapacity = 256;
+    }
+
+    /**
+     * 批量导入任务的配置
+     */
+    @Getter
+    @Setter
+    public static class QRCodeImportProperties {
+        /**
+         * 导入根目录, 任务的输入文件必须位于其中; 输出写入输出存储
+         */
+        private String path = System.getProperty("java.io.tmpdir") + "/qrcode-import";
+        /**
+         * 每处理多少条记录保存一次检查点, ZIP 输出时也是每个分卷的二维码数量
+         */
+        private Integer checkpointInterval = 1000;
+        /**
+         * 输出进度日志的间隔, 单位: 毫秒
+         */
+        private Long progressInterval = 10_000L;
+        /**
+         * 同时执行的导入任务数量上限, 每个任务占用一个后台线程, 超出时返回 429
+         */
+        private Integer maxRunning = 2;
+        /**
+         * 保留进度的已结束任务数量, 超出时移除最早结束的任务
+         */
+        private Integer maxFinished = 100;
+    }
+
+    /**
+     * 多实例分片批量任务的配置
+     */
+    @Getter
+    @Setter
+    public static class QRCodeShardProperties {
+        /**
+         * 是否启用分片批量任务, 启用后本实例领取并执行共享任务存储中的分片
+         */
+        private Boolean enabled = false;
+        /**
+         * 任务存储根目录, 所有实例必须使用同一目录
+         */
+        private String path = System.getProperty("java.io.tmpdir") + "/qrcode-shard";
+        /**
+         * 实例标识, 为空时使用主机名与进程号
+         */
+        private String instanceId;
+        /**
+         * 本实例同时执行的分片数量, 每个分片内部按批量生成的线程数并行渲染
+         */
+        private Integer workers = 1;
+        /**
+         * 每个分片的记录数
+         */
+        private Integer chunkSize = 1000;
+        /**
+         * 租约时长, 单位: 毫秒, 实例宕机后其分片最迟在租约到期后被重新领取
+         */
+        private Long leaseTtl = 60_000L;
+        /**
+         * 每个分片最多领取的次数, 执行失败或租约到期都计为一次, 达到上限后分片标记为失败, 不再重试
+         */
+        private Integer maxAttempts = 3;
+        /**
+         * 没有可领取的分片时的轮询间隔, 单位: 毫秒
+         */
+        private Long pollInterval = 5_000L;
+    }
+
+    /**
+     * 二维码输出存储的配置
+     */
+    @Getter
+    @Setter
+    public static class QRCodeSinkProperties {
+        /**
+         * 存储类型, 多实例部署时使用共享目录或对象存储, 实例本身不保存输出
+         */
+        private SinkType type = SinkType.DIRECTORY;
+        /**
+         * 存储根目录, 导入根目录不能位于其中, 否则下载接口可以读取导入的输入文件
+         */
+        private String path = System.getProperty("java.io.tmpdir") + "/qrcode-output";
+        /**
+         * 对象存储的存储桶名称
+         */
+        private String bucket = "qrcode";
+    }
+
+    /**
+     * 二维码输出存储类型
+     */
+    public enum SinkType {
+        /**
+         * 本地或共享目录, 下载时以 sendfile 发送
+         */
+        DIRECTORY,
+        /**
+         * 内存, 用于测试与单实例
+         */
+        MEMORY,
+        /**
+         * 对象存储的本地替身
+         */
+        OBJECT
+    }
 }
@@ -1,30 +1,53 @@
 package com.example.qrcode.controller;
 
 import com.example.qrcode.config.QRCodeProperties;
-import com.example.qrcode.core.QRCodeGenerator;
+import com.example.qrcode.core.QRCodeDirectorySink;
+import com.example.qrcode.core.QRCodeLabelCache;
+import com.example.qrcode.core.QRCodeOutputSink;
+import com.example.qrcode.core.QRCodeRenderLimiter;
+import com.example.qrcode.core.QRCodeRenderOptions;
+import com.example.qrcode.core.QRCodeRenderOptions.OutputFormat;
+import com.example.qrcode.core.QRCodeRenderStore;
+import com.example.qrcode.core.QRCodeVariant;
+import com.example.qrcode.entity.QRCodeBatchResult;
 import com.example.qrcode.entity.QRCodeExtraData;
+import com.example.qrcode.entity.QRCodeImportRequest;
+import com.example.qrcode.entity.QRCodeImportStatus;
+import com.example.qrcode.entity.QRCodeShardStatus;
+import com.example.qrcode.service.QRCodeBatchService;
+import com.example.qrcode.service.QRCodeImportService;
+import com.example.qrcode.service.QRCodeLabelService;
+import com.example.qrcode.service.QRCodeShardService;
 import com.example.qrcode.util.ZipUtil;
+import com.google.zxing.WriterException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FilenameUtils;
-import org.dromara.hutool.core.util.SystemUtil;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.server.ResponseStatusException;
 
-import java.io.File;
 import java.io.IOException;
 import java.net.URLConnection;
 import java.net.URLEncoder;
+import java.nio.channels.Channels;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.zip.ZipOutputStream;
 
 /**
  * 二维码生成控制器
+ * <p>
+ * 渲染已饱和时返回 429 与 Retry-After, 见 {@link QRCodeRenderLimiter}
  *
  * @author weasley
  * @version 1.0.0
@@ -33,91 +56,415 @@ import java.util.concurrent.CompletableFuture;
 @RestController
 @RequestMapping("/api/qrcode")
 public class QRCodeController {
+    /**
+     * 单次请求最多包含的尺寸数量
+     */
+    private static final int MAX_VARIANTS = 8;
+    /**
+     * 二维码尺寸上限, 单位: 像素
+     */
+    private static final int MAX_VARIANT_SIZE = 4096;
+    /**
+     * Tomcat 支持 sendfile 时在请求中设置的属性, 以及交给 Tomcat 发送的文件
+     */
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    /**
+     * 可以下载的文件: 导入任务的 ZIP 分卷与处理结果、分片批量任务的分片输出, 以及二维码图片
+     */
+    private static final Pattern DOWNLOADABLE = Pattern.compile(
+            "(.+/)?(labels-\\d+\\.zip|results-\\d+\\.jsonl|chunk-\\d+\\.(zip|jsonl)|[^/]+\\.(png|svg))");
 
     @Autowired
     private QRCodeProperties qrCodeProperties;
+    @Autowired
+    private QRCodeBatchService qrCodeBatchService;
+    @Autowired
+    private QRCodeLabelService qrCodeLabelService;
+    @Autowired
+    private QRCodeImportService qrCodeImportService;
+    @Autowired
+    private QRCodeShardService qrCodeShardService;
+    @Autowired
+    private QRCodeOutputSink qrCodeOutputSink;
 
     /**
      * 生成二维码图片
+     * <p>
+     * 以渲染输入的摘要作为 ETag, 客户端携带匹配的 If-None-Match 时直接返回 304
+     *
+     * @param format  输出格式, png 或 svg
+     * @param outline SVG 中的文字是否转换为字形轮廓
      */
     @GetMapping("/generate")
-    public void generate(HttpServletRequest request, HttpServletResponse response) {
-        log.info("生成二维码图片");
-
-        String extension = FilenameUtils.getExtension(qrCodeProperties.getIconPath());
+    public void generate(@RequestParam(defaultValue = "png") String format, @RequestParam(defaultValue = "false") boolean outline,
+                         HttpServletRequest request, HttpServletResponse response) throws IOException {
         QRCodeExtraData testInstance = QRCodeExtraData.getTestInstance();
-        String currentDir = SystemUtil.get("user.dir");
-        String targetFilepath = currentDir + File.separator + testInstance.getFileName() + "." + extension;
-
-        String withExtraDataPath = QRCodeGenerator.generateQRCodeWithExtraData(
-                qrCodeProperties.getBaseText(), 400,
-                qrCodeProperties.getIconPath(), targetFilepath, testInstance);
+        OutputFormat outputFormat = getOutputFormat(format);
+        QRCodeRenderOptions options = getRenderOptions().setFormat(outputFormat).setOutlineText(outline);
+        String etag = "\"" + qrCodeLabelService.renderKey(options, testInstance) + "\"";
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+            return;
+        }
 
-        log.info("生成的二维码位置: {}", withExtraDataPath);
+        byte[] content;
+        try {
+            content = qrCodeLabelService.render(options, testInstance);
+        } catch (WriterException e) {
+            log.error("生成二维码失败, 文件名 {},", testInstance.getFileName(), e);
+            response.sendError(HttpStatus.INTERNAL_SERVER_ERROR.value());
+            return;
+        }
 
-        String encodedFileName = getEncodedFileName(withExtraDataPath);
+        String encodedFileName = getEncodedFileName(FilenameUtils.getBaseName(testInstance.getFileName()) + "." + outputFormat.getExtension());
         response.setCharacterEncoding(StandardCharsets.UTF_8.name());
-        response.setContentType(URLConnection.guessContentTypeFromName(encodedFileName));
+        response.setContentType(outputFormat.getContentType());
         response.addHeader("File-Base-Name", encodedFileName); // 告诉前端文件基本名
         response.setHeader("Content-Disposition", "inline; filename=" + encodedFileName);
-
-        try {
-            Files.copy(new File(withExtraDataPath).toPath(), response.getOutputStream());
-        } catch (Exception e) {
-            log.error("文件数据转换失败, 文件名 {},", encodedFileName, e);
-        }
-
-        CompletableFuture.runAsync(() -> {
-            try {
-                Files.deleteIfExists(new File(withExtraDataPath).toPath());
-            } catch (Exception e) {
-                log.error("删除文件失败: {}", withExtraDataPath, e);
-            }
-        });
+        response.setContentLength(content.length);
+        response.getOutputStream().write(content);
     }
 
     /**
      * 下载二维码压缩包
+     * <p>
+     * 整个请求占用一个批量许可, 在许可内依次生成每个二维码并立即写入 ZIP 流, 不在内存中保留全部图片, 也不产生任何临时文件
      */
     @GetMapping("/download")
     public void download(HttpServletRequest request, HttpServletResponse response) throws IOException {
-        // 生成两个二维码图片
         QRCodeExtraData testInstance1 = QRCodeExtraData.getTestInstance();
         QRCodeExtraData testInstance2 = QRCodeExtraData.getTestInstance().setStationName("奥迪充电站杭州城西银泰超级充电站");
+        List<QRCodeExtraData> extraDataList = List.of(testInstance1, testInstance2);
 
-        String currentDir = SystemUtil.get("user.dir");
-        String targetFilepath1 = currentDir + File.separator + testInstance1.getFileName() + ".png";
-        String targetFilepath2 = currentDir + File.separator + testInstance2.getFileName() + ".png";
+        QRCodeRenderOptions options = getRenderOptions();
+        String etag = "\"" + qrCodeLabelService.renderKey(options, extraDataList) + "\"";
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+            return;
+        }
 
-        String qrCodePath1 = QRCodeGenerator.generateQRCodeWithExtraData(qrCodeProperties.getBaseText(), 400, qrCodeProperties.getIconPath(), targetFilepath1, testInstance1);
-        String qrCodePath2 = QRCodeGenerator.generateQRCodeWithExtraData(qrCodeProperties.getBaseText(), 400, qrCodeProperties.getIconPath(), targetFilepath2, testInstance2);
+        try (QRCodeRenderLimiter.Permit permit = qrCodeBatchService.acquirePermit()) {
+            String encodedFileName = getEncodedFileName(testInstance1.getStationName() + "充电枪编码集.zip");
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            response.setContentType(URLConnection.guessContentTypeFromName(encodedFileName));
+            response.addHeader("File-Base-Name", encodedFileName);
+            response.setHeader("Content-Disposition", "attachment; filename=" + encodedFileName);
 
-        // 压缩成zip包
-        String zipFilePath = currentDir + File.separator + testInstance1.getStationName() + "充电枪编码集.zip";
-        String encodedFileName = getEncodedFileName(zipFilePath);
-        ZipUtil.addToZip(zipFilePath, List.of(qrCodePath1, qrCodePath2));
+            try (ZipOutputStream zos = new ZipOutputStream(response.getOutputStream())) {
+                for (QRCodeExtraData extraData : extraDataList) {
+                    byte[] content;
+                    try {
+                        content = qrCodeLabelService.renderWithinPermit(options, extraData);
+                    } catch (WriterException e) {
+                        log.error("生成二维码失败, 文件名 {},", extraData.getFileName(), e);
+                        continue;
+                    }
+                    ZipUtil.addToZip(zos, extraData.getFileName(), output -> output.write(content));
+                }
+            }
+        }
+    }
 
-        // 将zip包写入response
+    /**
+     * 下载同一二维码的多种分辨率, 如: 门户缩略图、接口图片与打印图片
+     * <p>
+     * 二维码只编码与排版一次, 各尺寸按比例绘制, 以 ZIP 流的形式写入响应, 文件名为 {@code 文件名_尺寸.格式}
+     *
+     * @param sizes  二维码尺寸列表, 如: 120,400,1200
+     * @param format 输出格式, png 或 svg
+     */
+    @GetMapping("/variants")
+    public void variants(@RequestParam(defaultValue = "120,400,1200") List<Integer> sizes, @RequestParam(defaultValue = "png") String format,
+                         HttpServletResponse response) throws IOException {
+        OutputFormat outputFormat = getOutputFormat(format);
+        if (sizes.isEmpty() || sizes.size() > MAX_VARIANTS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "尺寸数量应为 1 ~ " + MAX_VARIANTS);
+        }
+        List<QRCodeVariant> variants = new ArrayList<>(sizes.size());
+        for (Integer size : sizes) {
+            if (size == null || size <= 0 || size > MAX_VARIANT_SIZE) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "尺寸应为 1 ~ " + MAX_VARIANT_SIZE + ": " + size);
+            }
+            variants.add(new QRCodeVariant(size, outputFormat));
+        }
+
+        QRCodeExtraData testInstance = QRCodeExtraData.getTestInstance();
+        Map<QRCodeVariant, byte[]> contents;
+        try {
+            contents = qrCodeLabelService.renderVariants(getRenderOptions(), testInstance, variants);
+        } catch (WriterException e) {
+            log.error("生成二维码失败, 文件名 {},", testInstance.getFileName(), e);
+            response.sendError(HttpStatus.INTERNAL_SERVER_ERROR.value());
+            return;
+        }
+
+        String baseName = FilenameUtils.getBaseName(testInstance.getFileName());
+        String encodedFileName = getEncodedFileName(baseName + ".zip");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setContentType(URLConnection.guessContentTypeFromName(encodedFileName));
+        response.addHeader("File-Base-Name", encodedFileName);
+        response.setHeader("Content-Disposition", "attachment; filename=" + encodedFileName);
+        try (ZipOutputStream zos = new ZipOutputStream(response.getOutputStream())) {
+            for (Map.Entry<QRCodeVariant, byte[]> entry : contents.entrySet()) {
+                String entryName = baseName + "_" + entry.getKey().size() + "." + outputFormat.getExtension();
+                ZipUtil.addToZip(zos, entryName, output -> output.write(entry.getValue()));
+            }
+        }
+    }
+
+    /**
+     * 二维码图片缓存的统计信息
+     */
+    @GetMapping("/cache/stats")
+    public QRCodeLabelCache.Stats cacheStats() {
+        return qrCodeLabelService.getCacheStats();
+    }
+
+    /**
+     * 二维码图片磁盘存储的统计信息, 未开启磁盘存储时为空
+     */
+    @GetMapping("/store/stats")
+    public QRCodeRenderStore.Stats storeStats() {
+        return qrCodeLabelService.getStoreStats();
+    }
+
+    /**
+     * 批量生成二维码压缩包
+     * <p>
+     * 二维码并行生成并以 ZIP 流的形式写入响应, 压缩包最后附带清单文件 manifest.json, 记录每个二维码的处理结果。
+     * 整个批量请求占用一个批量许可, 与单个二维码的渲染许可分开计数, 并行度由批量生成的线程池限制
+     *
+     * @param extraDataList 二维码额外的信息列表, 如: 一个充电站的所有充电枪
+     */
+    @PostMapping("/batch")
+    public void batch(@RequestBody List<QRCodeExtraData> extraDataList, HttpServletResponse response) throws IOException {
+        checkBatchSize(extraDataList);
+        try (QRCodeRenderLimiter.Permit permit = qrCodeBatchService.acquirePermit()) {
+            writeBatchZip(extraDataList, response);
+        }
+    }
+
+    private void writeBatchZip(List<QRCodeExtraData> extraDataList, HttpServletResponse response) throws IOException {
+        String stationName = StringUtils.defaultIfBlank(extraDataList.get(0).getStationName(), "");
+        String encodedFileName = getEncodedFileName(stationName + "充电枪编码集.zip");
         response.setCharacterEncoding(StandardCharsets.UTF_8.name());
         response.setContentType(URLConnection.guessContentTypeFromName(encodedFileName));
         response.addHeader("File-Base-Name", encodedFileName);
         response.setHeader("Content-Disposition", "attachment; filename=" + encodedFileName);
+        try (ZipOutputStream zos = new ZipOutputStream(response.getOutputStream())) {
+            qrCodeBatchService.writeZip(getRenderOptions(), extraDataList, zos);
+        }
+    }
+
+    /**
+     * 批量生成二维码, 只返回每个二维码的处理结果
+     *
+     * @param extraDataList 二维码额外的信息列表
+     */
+    @PostMapping("/batch/manifest")
+    public List<QRCodeBatchResult> batchManifest(@RequestBody List<QRCodeExtraData> extraDataList) {
+        checkBatchSize(extraDataList);
+        try (QRCodeRenderLimiter.Permit permit = qrCodeBatchService.acquirePermit()) {
+            return qrCodeBatchService.manifest(getRenderOptions(), extraDataList);
+        }
+    }
+
+    /**
+     * 批量生成二维码打印页 PDF
+     * <p>
+     * 每页按配置的行列排列多张二维码, 每页排满后立即写入响应, 上千把充电枪的充电站也不会占用额外内存。
+     * 整个请求占用一个批量许可
+     *
+     * @param extraDataList 二维码额外的信息列表, 如: 一个充电站的所有充电枪
+     */
+    @PostMapping("/sheet")
+    public void sheet(@RequestBody List<QRCodeExtraData> extraDataList, HttpServletResponse response) throws IOException {
+        checkBatchSize(extraDataList);
+        try (QRCodeRenderLimiter.Permit permit = qrCodeBatchService.acquirePermit()) {
+            String stationName = StringUtils.defaultIfBlank(extraDataList.get(0).getStationName(), "");
+            String encodedFileName = getEncodedFileName(stationName + "充电枪编码集.pdf");
+            response.setContentType("application/pdf");
+            response.addHeader("File-Base-Name", encodedFileName);
+            response.setHeader("Content-Disposition", "attachment; filename=" + encodedFileName);
+            qrCodeBatchService.writePdfSheet(getRenderOptions(), extraDataList, response.getOutputStream());
+        }
+    }
+
+    /**
+     * 提交批量导入任务
+     * <p>
+     * 从导入根目录中的 CSV 或 JSONL 文件逐条生成二维码, 在后台执行; 以相同的输入与输出再次提交时从检查点继续。
+     * 正在执行的任务达到 {@code importing.max-running} 时返回 429
+     *
+     * @param request 导入请求
+     * @return 任务进度
+     */
+    @PostMapping("/import")
+    public QRCodeImportStatus startImport(@RequestBody QRCodeImportRequest request) {
         try {
-            Files.copy(new File(zipFilePath).toPath(), response.getOutputStream());
-        } catch (Exception e) {
-            log.error("文件数据转换失败, 文件名 {},", encodedFileName, e);
+            return qrCodeImportService.start(request);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
         }
+    }
+
+    /**
+     * 所有导入任务的进度
+     */
+    @GetMapping("/import")
+    public List<QRCodeImportStatus> importStatuses() {
+        return qrCodeImportService.getStatuses();
+    }
+
+    /**
+     * 导入任务的进度, 包括处理速率与预计剩余时间
+     *
+     * @param jobId 任务编号
+     */
+    @GetMapping("/import/{jobId}")
+    public QRCodeImportStatus importStatus(@PathVariable String jobId) {
+        return requireImportJob(qrCodeImportService.getStatus(jobId));
+    }
+
+    /**
+     * 取消导入任务, 已保存的检查点保留
+     *
+     * @param jobId 任务编号
+     */
+    @DeleteMapping("/import/{jobId}")
+    public QRCodeImportStatus cancelImport(@PathVariable String jobId) {
+        return requireImportJob(qrCodeImportService.cancel(jobId));
+    }
+
+    /**
+     * 创建多实例分片批量任务
+     * <p>
+     * 只保存任务, 立即返回; 输入文件由领取到切分的实例在后台按记录数切分为分片, 由所有启用分片任务的实例领取执行
+     *
+     * @param request 任务请求, 输入文件相对于导入根目录且必须位于共享存储上, 输出目录为输出存储中的名称
+     * @return 任务进度, 切分完成前 indexing 为 true
+     */
+    @PostMapping("/shard")
+    public QRCodeShardStatus createShardJob(@RequestBody QRCodeImportRequest request) throws IOException {
+        checkShardEnabled();
+        try {
+            return qrCodeShardService.create(request);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    /**
+     * 所有分片批量任务的进度
+     */
+    @GetMapping("/shard")
+    public List<QRCodeShardStatus> shardStatuses() throws IOException {
+        checkShardEnabled();
+        return qrCodeShardService.getStatuses();
+    }
 
-        // 清理文件
-        CompletableFuture.runAsync(() -> {
+    /**
+     * 分片批量任务的进度, 包括各状态的分片数量与正在执行的实例
+     *
+     * @param jobId 任务编号
+     */
+    @GetMapping("/shard/{jobId}")
+    public QRCodeShardStatus shardStatus(@PathVariable String jobId) throws IOException {
+        checkShardEnabled();
+        QRCodeShardStatus status = qrCodeShardService.getStatus(jobId);
+        if (status == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "分片批量任务不存在");
+        }
+        return status;
+    }
+
+    /**
+     * 下载输出存储中的文件, 如: 导入任务与分片批量任务生成的 ZIP 分卷
+     * <p>
+     * 只能下载任务输出的文件, 见 {@link #DOWNLOADABLE}, 检查点等其他文件返回 404。
+     * 目录存储在 Tomcat 支持时以 sendfile 发送, 由内核直接将文件写入套接字; 否则以 {@code FileChannel#transferTo} 写入响应
+     *
+     * @param name 文件在输出存储中的名称, e.g: station-export/labels-00001.zip
+     */
+    @GetMapping("/files/{*name}")
+    public void file(@PathVariable String name, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        name = StringUtils.removeStart(name, "/");
+        long size = -1;
+        if (DOWNLOADABLE.matcher(name).matches()) {
             try {
-                Files.deleteIfExists(new File(qrCodePath1).toPath());
-                Files.deleteIfExists(new File(qrCodePath2).toPath());
-                Files.deleteIfExists(new File(zipFilePath).toPath());
-            } catch (Exception e) {
-                log.error("删除文件失败: {}", zipFilePath, e);
+                size = qrCodeOutputSink.size(name);
+            } catch (IllegalArgumentException e) {
+                size = -1;
+            }
+        }
+        if (size < 0) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "文件不存在");
+        }
+        String fileName = FilenameUtils.getName(name);
+        String encodedFileName = getEncodedFileName(fileName);
+        response.setContentType(StringUtils.defaultIfBlank(URLConnection.guessContentTypeFromName(fileName), "application/octet-stream"));
+        response.addHeader("File-Base-Name", encodedFileName);
+        response.setHeader("Content-Disposition", "attachment; filename=" + encodedFileName);
+        response.setContentLengthLong(size);
+        if (qrCodeOutputSink instanceof QRCodeDirectorySink directorySink && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, directorySink.resolve(name).toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, size);
+            return;
+        }
+        qrCodeOutputSink.transferTo(name, Channels.newChannel(response.getOutputStream()));
+    }
+
+    /**
+     * 渲染已饱和, 返回 429 让客户端稍后重试
+     */
+    @ExceptionHandler(QRCodeRenderLimiter.RejectedException.class)
+    public ResponseEntity<String> renderRejected(QRCodeRenderLimiter.RejectedException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .header(HttpHeaders.CACHE_CONTROL, "no-store")
+                .body("二维码生成繁忙, 请稍后重试");
+    }
+
+    private void checkBatchSize(List<QRCodeExtraData> extraDataList) {
+        if (extraDataList == null || extraDataList.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "二维码列表不能为空");
+        }
+        int maxItems = qrCodeProperties.getBatch().getMaxItems();
+        if (extraDataList.size() > maxItems) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "单次最多生成 " + maxItems + " 个二维码");
+        }
+    }
+
+    private void checkShardEnabled() {
+        if (!qrCodeShardService.isEnabled()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "分片批量任务未启用");
+        }
+    }
+
+    private QRCodeImportStatus requireImportJob(QRCodeImportStatus status) {
+        if (status == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "导入任务不存在");
+        }
+        return status;
+    }
+
+    private OutputFormat getOutputFormat(String format) {
+        for (OutputFormat outputFormat : OutputFormat.values()) {
+            if (outputFormat.getExtension().equalsIgnoreCase(format)) {
+                return outputFormat;
             }
-        });
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "不支持的格式: " + format);
+    }
+
+    private QRCodeRenderOptions getRenderOptions() {
+        return qrCodeProperties.toRenderOptions(400);
     }
 
     private String getEncodedFileName(String fileBaseName) {
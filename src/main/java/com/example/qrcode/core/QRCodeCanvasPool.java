@@ -0,0 +1,189 @@
+package com.example.qrcode.core;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 二维码画布池
+ * <p>
+ * 按尺寸与图片类型复用 {@link BufferedImage} 及其 {@link Graphics2D}, 批量生成时每张二维码不再分配整张画布。
+ * 池中空闲画布占用的内存有上限, 超出时归还的画布直接丢弃。
+ * <pre>{@code
+ * try (QRCodeCanvasPool.Canvas canvas = QRCodeCanvasPool.getInstance().borrow(width, height, BufferedImage.TYPE_INT_RGB)) {
+ *     draw(canvas.getImage(), canvas.getGraphics());
+ *     encode(canvas.getImage());
+ * }
+ * }</pre>
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+public final class QRCodeCanvasPool {
+    /**
+     * 默认的空闲画布内存上限, 单位: 字节
+     */
+    public static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+    private static volatile QRCodeCanvasPool instance = new QRCodeCanvasPool(DEFAULT_MAX_BYTES);
+
+    private final long maxBytes;
+    private final Map<CanvasKey, Deque<Canvas>> idle = new ConcurrentHashMap<>();
+    private final AtomicLong idleBytes = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder discards = new LongAdder();
+
+    /**
+     * @param maxBytes 空闲画布的内存上限, 单位: 字节, 为 0 时不复用
+     */
+    public QRCodeCanvasPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 获取全局的画布池
+     */
+    public static QRCodeCanvasPool getInstance() {
+        return instance;
+    }
+
+    /**
+     * 设置全局的画布池
+     *
+     * @param pool 画布池
+     */
+    public static void setInstance(QRCodeCanvasPool pool) {
+        instance = pool;
+    }
+
+    /**
+     * 借出画布, 用完后调用 {@link Canvas#close()} 归还
+     *
+     * @param width     宽度
+     * @param height    高度
+     * @param imageType 图片类型, 如: {@link BufferedImage#TYPE_INT_RGB}
+     * @return 画布
+     * @apiNote 画布的像素内容与 Graphics2D 的状态均为上一次使用后的结果, 调用方需要自行覆盖
+     */
+    public Canvas borrow(int width, int height, int imageType) {
+        CanvasKey key = new CanvasKey(width, height, imageType);
+        Deque<Canvas> canvases = idle.get(key);
+        Canvas canvas = canvases == null ? null : canvases.pollFirst();
+        if (canvas != null) {
+            idleBytes.addAndGet(-canvas.bytes);
+            hits.increment();
+        } else {
+            canvas = new Canvas(this, key, new BufferedImage(width, height, imageType));
+            misses.increment();
+        }
+        canvas.borrowed = true;
+        return canvas;
+    }
+
+    /**
+     * 丢弃所有空闲画布
+     */
+    public void clear() {
+        idle.values().forEach(canvases -> {
+            for (Canvas canvas; (canvas = canvases.pollFirst()) != null; ) {
+                idleBytes.addAndGet(-canvas.bytes);
+                canvas.dispose();
+            }
+        });
+    }
+
+    /**
+     * 获取画布池统计信息
+     */
+    public Stats getStats() {
+        return new Stats(idleBytes.get(), maxBytes, hits.sum(), misses.sum(), discards.sum());
+    }
+
+    private void release(Canvas canvas) {
+        if (idleBytes.addAndGet(canvas.bytes) > maxBytes) {
+            idleBytes.addAndGet(-canvas.bytes);
+            discards.increment();
+            canvas.dispose();
+            return;
+        }
+        idle.computeIfAbsent(canvas.key, k -> new ConcurrentLinkedDeque<>()).offerFirst(canvas);
+    }
+
+    private static long weigh(BufferedImage image) {
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+
+    /**
+     * 借出的画布, 同一时间只能由一个线程使用
+     */
+    public static final class Canvas implements AutoCloseable {
+        private final QRCodeCanvasPool pool;
+        private final CanvasKey key;
+        private final BufferedImage image;
+        private final long bytes;
+        private Graphics2D graphics;
+        private boolean borrowed;
+
+        private Canvas(QRCodeCanvasPool pool, CanvasKey key, BufferedImage image) {
+            this.pool = pool;
+            this.key = key;
+            this.image = image;
+            this.bytes = weigh(image);
+        }
+
+        public BufferedImage getImage() {
+            return image;
+        }
+
+        /**
+         * 获取画布的 Graphics2D, 随画布一起复用, 调用方不得 dispose
+         */
+        public Graphics2D getGraphics() {
+            if (graphics == null) {
+                graphics = image.createGraphics();
+            }
+            return graphics;
+        }
+
+        /**
+         * 归还画布, 归还后不得再使用画布及其 Graphics2D
+         */
+        @Override
+        public void close() {
+            if (borrowed) {
+                borrowed = false;
+                pool.release(this);
+            }
+        }
+
+        private void dispose() {
+            if (graphics != null) {
+                graphics.dispose();
+                graphics = null;
+            }
+        }
+    }
+
+    private record CanvasKey(int width, int height, int imageType) {
+    }
+
+    /**
+     * 画布池统计信息
+     *
+     * @param idleBytes 空闲画布占用的内存, 单位: 字节
+     * @param maxBytes  空闲画布的内存上限, 单位: 字节
+     * @param hits      复用画布的次数
+     * @param misses    新建画布的次数
+     * @param discards  超出上限而丢弃画布的次数
+     */
+    public record Stats(long idleBytes, long maxBytes, long hits, long misses, long discards) {
+    }
+}
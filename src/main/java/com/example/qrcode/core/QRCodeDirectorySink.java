@@ -0,0 +1,150 @@
+package com.example.qrcode.core;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * 保存在目录中的二维码输出存储
+ * <p>
+ * 写入时先写入根目录下的 {@code .tmp} 目录, 提交时原子重命名到目标位置, 多个实例可以共享同一目录。
+ * 读取以 {@link FileChannel#transferTo} 写入目标通道, 目标为套接字时由内核直接发送文件内容, 不经过 JVM 堆。
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+public class QRCodeDirectorySink implements QRCodeOutputSink {
+    private final Path root;
+    private final Path tmpDir;
+
+    /**
+     * 打开或创建存储, 删除一小时前遗留的临时文件; 更新的临时文件可能属于共享目录的其他实例, 予以保留
+     *
+     * @param root 存储根目录
+     * @throws IOException 无法创建目录
+     */
+    public QRCodeDirectorySink(Path root) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        this.tmpDir = this.root.resolve(".tmp");
+        Files.createDirectories(tmpDir);
+        FileTime expired = FileTime.from(Instant.now().minus(1, ChronoUnit.HOURS));
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(tmpDir)) {
+            for (Path path : stream) {
+                if (Files.getLastModifiedTime(path).compareTo(expired) < 0) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Output create(String name) throws IOException {
+        Path target = resolve(name);
+        Path temp = tmpDir.resolve(UUID.randomUUID() + ".tmp");
+        OutputStream stream = new BufferedOutputStream(Files.newOutputStream(temp, CREATE_NEW, WRITE), 64 * 1024);
+        return new Output() {
+            private boolean closed;
+
+            @Override
+            public void write(int b) throws IOException {
+                stream.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                stream.write(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                stream.flush();
+            }
+
+            @Override
+            public void commit() throws IOException {
+                if (closed) {
+                    throw new IOException("Output already committed or closed: " + name);
+                }
+                closed = true;
+                boolean moved = false;
+                try {
+                    stream.close();
+                    Files.createDirectories(target.getParent());
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    moved = true;
+                } finally {
+                    if (!moved) {
+                        Files.deleteIfExists(temp);
+                    }
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (!closed) {
+                    closed = true;
+                    try {
+                        stream.close();
+                    } finally {
+                        Files.deleteIfExists(temp);
+                    }
+                }
+            }
+        };
+    }
+
+    @Override
+    public long size(String name) throws IOException {
+        Path path = resolve(name);
+        return Files.isRegularFile(path) ? Files.size(path) : -1;
+    }
+
+    @Override
+    public InputStream open(String name) throws IOException {
+        return Files.newInputStream(resolve(name));
+    }
+
+    @Override
+    public boolean delete(String name) throws IOException {
+        return Files.deleteIfExists(resolve(name));
+    }
+
+    @Override
+    public String describe(String name) {
+        return resolve(name).toString();
+    }
+
+    /**
+     * 以 {@link FileChannel#transferTo} 写入目标通道
+     */
+    @Override
+    public void transferTo(String name, WritableByteChannel target) throws IOException {
+        try (FileChannel channel = FileChannel.open(resolve(name), READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; ) {
+                position += channel.transferTo(position, size - position, target);
+            }
+        }
+    }
+
+    /**
+     * 名称对应的文件路径, 如: 交给 Web 容器以 sendfile 发送
+     *
+     * @param name 名称
+     * @return 文件路径
+     * @throws IllegalArgumentException 名称不合法
+     */
+    public Path resolve(String name) {
+        return root.resolve(QRCodeOutputSink.checkName(name));
+    }
+}
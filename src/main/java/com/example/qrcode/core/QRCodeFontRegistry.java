@@ -0,0 +1,203 @@
+package com.example.qrcode.core;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 二维码文字的字体注册表
+ * <p>
+ * 字体只加载一次, 并为每种文字样式预先派生好对应字号的字体; 重复出现的文字, 如站点名称、底部文字的前缀,
+ * 排版结果 ({@link GlyphVector}) 按样式和内容缓存, 避免每次生成都重新查找 CJK 字形。
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+public final class QRCodeFontRegistry {
+    /**
+     * 缓存的排版结果数量上限
+     */
+    private static final int MAX_CACHED_LINES = 4096;
+    /**
+     * 与绘制时的渲染参数一致: 无变换、文字抗锯齿、整数字宽
+     */
+    private static final FontRenderContext RENDER_CONTEXT = new FontRenderContext(null, true, false);
+
+    private static volatile QRCodeFontRegistry instance;
+
+    /**
+     * 延迟加载时的基础字体加载逻辑, 加载完成后置为 null
+     */
+    private Supplier<Font> baseFontLoader;
+    private volatile Font[] fonts;
+    private final Map<LineKey, TextLine> lines = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<LineKey, TextLine> eldest) {
+            return size() > MAX_CACHED_LINES;
+        }
+    };
+
+    /**
+     * @param baseFont 基础字体, 各样式的字体由它派生
+     */
+    public QRCodeFontRegistry(Font baseFont) {
+        this.fonts = deriveFonts(baseFont);
+    }
+
+    /**
+     * 延迟加载字体, 第一次获取字体或排版文字时才加载, 缩短服务启动时间
+     *
+     * @param baseFontLoader 基础字体的加载逻辑, 只调用一次
+     */
+    public QRCodeFontRegistry(Supplier<Font> baseFontLoader) {
+        this.baseFontLoader = baseFontLoader;
+    }
+
+    /**
+     * 获取全局的字体注册表
+     *
+     * @return 字体注册表, 未设置时使用系统默认字体
+     */
+    public static QRCodeFontRegistry getInstance() {
+        QRCodeFontRegistry registry = instance;
+        if (registry == null) {
+            synchronized (QRCodeFontRegistry.class) {
+                if (instance == null) {
+                    instance = new QRCodeFontRegistry(new Font("宋体", Font.PLAIN, 18));
+                }
+                registry = instance;
+            }
+        }
+        return registry;
+    }
+
+    /**
+     * 设置全局的字体注册表
+     *
+     * @param registry 字体注册表
+     */
+    public static void setInstance(QRCodeFontRegistry registry) {
+        instance = registry;
+    }
+
+    /**
+     * 获取样式对应的字体
+     */
+    public Font getFont(TextStyle style) {
+        Font[] loaded = fonts;
+        if (loaded == null) {
+            synchronized (this) {
+                if (fonts == null) {
+                    fonts = deriveFonts(baseFontLoader.get());
+                    baseFontLoader = null;
+                }
+                loaded = fonts;
+            }
+        }
+        return loaded[style.ordinal()];
+    }
+
+    /**
+     * 字体是否已加载
+     */
+    public boolean isLoaded() {
+        return fonts != null;
+    }
+
+    /**
+     * 排版文字并缓存排版结果, 适用于重复出现的文字
+     *
+     * @param style 文字样式
+     * @param text  文字内容
+     * @return 排版结果
+     */
+    public TextLine layout(TextStyle style, String text) {
+        LineKey key = new LineKey(style, text);
+        synchronized (lines) {
+            TextLine line = lines.get(key);
+            if (line != null) {
+                return line;
+            }
+        }
+        TextLine line = shape(style, text);
+        synchronized (lines) {
+            lines.putIfAbsent(key, line);
+        }
+        return line;
+    }
+
+    /**
+     * 排版文字但不缓存, 适用于每次都不同的文字, 如枪码
+     *
+     * @param style 文字样式
+     * @param text  文字内容
+     * @return 排版结果
+     */
+    public TextLine shape(TextStyle style, String text) {
+        GlyphVector glyphs = getFont(style).createGlyphVector(RENDER_CONTEXT, text);
+        // 与 FontMetrics#stringWidth 一致, 按四舍五入取整
+        int width = (int) (0.5 + glyphs.getGlyphPosition(glyphs.getNumGlyphs()).getX());
+        return new TextLine(glyphs, width);
+    }
+
+    /**
+     * 清空缓存的排版结果
+     */
+    public void clear() {
+        synchronized (lines) {
+            lines.clear();
+        }
+    }
+
+    private static Font[] deriveFonts(Font baseFont) {
+        TextStyle[] styles = TextStyle.values();
+        Font[] fonts = new Font[styles.length];
+        for (TextStyle style : styles) {
+            fonts[style.ordinal()] = baseFont.deriveFont(style.getStyle(), style.getSize());
+        }
+        return fonts;
+    }
+
+    /**
+     * 文字样式
+     */
+    @Getter
+    @AllArgsConstructor
+    public enum TextStyle {
+        /**
+         * 顶部标题
+         */
+        TITLE(Font.BOLD, 22),
+        /**
+         * 底部文字
+         */
+        CAPTION(Font.PLAIN, 18);
+
+        private final int style;
+        private final float size;
+    }
+
+    /**
+     * 排版后的一行文字
+     *
+     * @param glyphs 字形及位置, 发布后只读, 可以在多个线程中同时绘制
+     * @param width  文字宽度, 单位: 像素
+     */
+    public record TextLine(GlyphVector glyphs, int width) {
+        /**
+         * 以 (x, y) 为基线起点绘制文字, 使用 Graphics2D 当前的颜色
+         */
+        public void draw(Graphics2D g2d, float x, float y) {
+            g2d.drawGlyphVector(glyphs, x, y);
+        }
+    }
+
+    private record LineKey(TextStyle style, String text) {
+    }
+}
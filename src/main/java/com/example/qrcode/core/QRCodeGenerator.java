@@ -1,18 +1,20 @@
 package com.example.qrcode.core;
 
+import com.example.qrcode.core.QRCodeFontRegistry.TextLine;
+import com.example.qrcode.core.QRCodeFontRegistry.TextStyle;
+import com.example.qrcode.core.QRCodeLabelTemplate.TemplateKey;
+import com.example.qrcode.core.QRCodeMetrics.Stage;
+import com.example.qrcode.core.QRCodeRenderOptions.OutputFormat;
 import com.example.qrcode.entity.QRCodeExtraData;
 import com.google.zxing.BarcodeFormat;
 import com.google.zxing.EncodeHintType;
-import com.google.zxing.MultiFormatWriter;
 import com.google.zxing.WriterException;
 import com.google.zxing.common.BitMatrix;
 import com.google.zxing.qrcode.QRCodeWriter;
 import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.FilenameUtils;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+import com.google.zxing.qrcode.encoder.Encoder;
 import org.apache.commons.lang3.StringUtils;
-import org.dromara.hutool.core.util.SystemUtil;
-import org.dromara.hutool.extra.spring.SpringUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -20,11 +22,15 @@ import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.geom.RoundRectangle2D;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
@@ -37,80 +43,458 @@ import java.util.Objects;
 public class QRCodeGenerator {
     private static final String UTF_8 = StandardCharsets.UTF_8.displayName();
     private static final Logger log = LoggerFactory.getLogger(QRCodeGenerator.class);
+    /**
+     * 二维码顶部标题区域高度
+     */
+    private static final int TOP_EXTENSION = 30;
+    /**
+     * 二维码底部文字区域高度
+     */
+    private static final int BOTTOM_EXTENSION = 100;
+    /**
+     * 二维码中间图标尺寸
+     */
+    private static final int ICON_SIZE = 80;
+    /**
+     * 二维码中间图标圆角半径
+     */
+    private static final int ICON_CORNER_RADIUS = 30;
+    /**
+     * 二维码中间图标白色边框宽度
+     */
+    private static final int ICON_BORDER_WIDTH = 10;
+    /**
+     * 底部文字的前缀, 每个元素一行, 作为静态内容绘制在模板中
+     */
+    private static final String[] BOTTOM_TEXT_PREFIXES = {"所处地区: ", "桩名称: ", "枪编号: ", "枪码: "};
+    /**
+     * 底部文字的左边距
+     */
+    private static final int BOTTOM_TEXT_X = 30;
+    /**
+     * 底部第一行文字基线与二维码底部的距离
+     */
+    private static final int BOTTOM_TEXT_OFFSET = 20;
+    /**
+     * 底部每行文字的高度
+     */
+    private static final int BOTTOM_LINE_HEIGHT = 22;
+    /**
+     * 底部文字中内容可能重复的行数 (所处地区、桩名称), 其余行的内容每个二维码都不同, 不缓存排版结果
+     */
+    private static final int CACHED_BOTTOM_LINES = 2;
+
+    static {
+        // 写入输出流时使用内存缓冲, 避免 ImageIO 为每次编码在临时目录创建缓存文件
+        ImageIO.setUseCache(false);
+    }
 
     /**
      * Generate QRCode
      */
-    public static void generateQRCode(String text, String filepath, int width, int height) throws WriterException, IOException {
+    public static BufferedImage generateQRCodeImage(String text, int width, int height) throws WriterException {
         Map<EncodeHintType, Object> hintMap = new LinkedHashMap<>();
         hintMap.put(EncodeHintType.CHARACTER_SET, UTF_8);
-
         QRCodeWriter qrCodeWriter = new QRCodeWriter();
         BitMatrix bitMatrix = qrCodeWriter.encode(text, BarcodeFormat.QR_CODE, width, height, hintMap);
+        BufferedImage image = QRCodeRasterizer.toBufferedImage(bitMatrix, BufferedImage.TYPE_INT_RGB);
+        return image;
+    }
 
-        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-        processQRCode(width, height, bitMatrix, image);
+    /**
+     * 生成带额外信息的二维码图片并写入输出存储
+     * <p>
+     * 图片完整写入后才对读取可见, 同名的并发请求各自写入, 以最后提交的为准, 不会读到不完整的图片
+     *
+     * @param text      二维码内容
+     * @param options   渲染参数
+     * @param extraData 二维码额外的信息
+     * @param sink      输出存储
+     * @param name      图片在存储中的名称
+     * @return 图片在存储中的位置
+     * @throws WriterException 二维码编码失败
+     * @throws IOException     图标读取、图片编码或写入存储失败
+     */
+    public static String writeQRCodeWithExtraData(String text, QRCodeRenderOptions options, QRCodeExtraData extraData,
+                                                  QRCodeOutputSink sink, String name) throws WriterException, IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(32 * 1024);
+        writeQRCodeWithExtraData(text, options, extraData, output);
+        long start = System.nanoTime();
+        try (QRCodeOutputSink.Output sinkOutput = sink.create(name)) {
+            output.writeTo(sinkOutput);
+            sinkOutput.commit();
+        }
+        QRCodeMetrics.record(Stage.WRITE, start);
+        return sink.describe(name);
+    }
+
+    /**
+     * 生成带额外信息的二维码图片并写入输出流
+     *
+     * @param text      二维码内容
+     * @param size      二维码尺寸
+     * @param iconPath  二维码图标路径
+     * @param extraData 二维码额外的信息
+     * @param output    输出流, 调用方负责关闭
+     * @throws WriterException 二维码编码失败
+     * @throws IOException     图标读取或图片编码失败
+     */
+    public static void writeQRCodeWithExtraData(String text, int size, String iconPath, QRCodeExtraData extraData, OutputStream output) throws WriterException, IOException {
+        writeQRCodeWithExtraData(text, QRCodeRenderOptions.of(size, iconPath), extraData, output);
+    }
 
-        File qrFile = new File(filepath);
-        if (qrFile.exists()) {
-            FileUtils.forceDelete(qrFile);
+    /**
+     * 生成带额外信息的二维码图片并写入输出流
+     *
+     * @param text      二维码内容
+     * @param options   渲染参数
+     * @param extraData 二维码额外的信息
+     * @param output    输出流, 调用方负责关闭
+     * @throws WriterException 二维码编码失败
+     * @throws IOException     图标读取或图片编码失败
+     * @implNote PNG 格式的画布从 {@link QRCodeCanvasPool} 借出, 编码完成后归还; SVG 格式不经过光栅化
+     */
+    public static void writeQRCodeWithExtraData(String text, QRCodeRenderOptions options, QRCodeExtraData extraData, OutputStream output) throws WriterException, IOException {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            if (options.getFormat() == OutputFormat.SVG) {
+                writeSvg(layoutLabel(text, options, extraData, false), extraData, options, output);
+            } else {
+                writeLabelPng(layoutLabel(text, options, extraData, true), extraData, options, output);
+            }
+            success = true;
+        } finally {
+            QRCodeMetrics.recordRender(start, success);
         }
-        ImageIO.write(image, "png", qrFile);
-        if (qrFile.exists()) {
-            log.info("Generate QRCode success: {}", filepath);
+    }
+
+    /**
+     * 将图片编码为 PNG 并写入输出流
+     *
+     * @param image   图片
+     * @param options 渲染参数, 使用其中的 PNG 编码器
+     * @param output  输出流, 调用方负责关闭
+     * @throws IOException 图片编码失败
+     */
+    public static void writePng(BufferedImage image, QRCodeRenderOptions options, OutputStream output) throws IOException {
+        options.getPngEncoder().encode(image, output);
+    }
+
+    /**
+     * 在内存中一次性合成带额外信息的二维码图片
+     *
+     * @param text      二维码内容
+     * @param size      二维码尺寸
+     * @param iconPath  二维码图标路径
+     * @param extraData 二维码额外的信息
+     * @return 合成后的二维码图片
+     * @throws WriterException 二维码编码失败
+     * @throws IOException     图标读取失败
+     * @implNote 二维码、图标、顶部标题与底部文字绘制在同一张画布上, 中间不产生任何临时文件
+     */
+    public static BufferedImage renderQRCodeWithExtraData(String text, int size, String iconPath, QRCodeExtraData extraData) throws WriterException, IOException {
+        return renderQRCodeWithExtraData(text, QRCodeRenderOptions.of(size, iconPath), extraData);
+    }
+
+    /**
+     * 在内存中一次性合成带额外信息的二维码图片
+     *
+     * @param text      二维码内容
+     * @param options   渲染参数
+     * @param extraData 二维码额外的信息
+     * @return 合成后的二维码图片
+     * @throws WriterException 二维码编码失败
+     * @throws IOException     图标读取失败
+     */
+    public static BufferedImage renderQRCodeWithExtraData(String text, QRCodeRenderOptions options, QRCodeExtraData extraData) throws WriterException, IOException {
+        LabelLayout layout = layoutLabel(text, options, extraData, true);
+        BufferedImage canvas = new BufferedImage(layout.width(), layout.height(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = canvas.createGraphics();
+        try {
+            drawLabel(layout, extraData, canvas, g2d);
+        } finally {
+            g2d.dispose();
         }
+        return canvas;
     }
 
     /**
-     * Generate QRCode
+     * 以矢量形式输出带额外信息的二维码图片, 不经过光栅化
+     *
+     * @param text      二维码内容
+     * @param options   渲染参数, 只使用尺寸、静默区与图标
+     * @param extraData 二维码额外的信息
+     * @param canvas    输出目标, 如: {@link QRCodeSvgWriter}、{@link QRCodePdfSheet}
+     * @throws WriterException 二维码编码失败
+     * @throws IOException     图标读取或写入失败
      */
-    public static BufferedImage generateQRCodeImage(String text, int width, int height) throws WriterException {
-        Map<EncodeHintType, Object> hintMap = new LinkedHashMap<>();
-        hintMap.put(EncodeHintType.CHARACTER_SET, UTF_8);
-        QRCodeWriter qrCodeWriter = new QRCodeWriter();
-        BitMatrix bitMatrix = qrCodeWriter.encode(text, BarcodeFormat.QR_CODE, width, height, hintMap);
-        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-        processQRCode(width, height, bitMatrix, image);
-        return image;
+    public static void drawQRCodeWithExtraData(String text, QRCodeRenderOptions options, QRCodeExtraData extraData, QRCodeVectorCanvas canvas) throws WriterException, IOException {
+        drawVector(layoutLabel(text, options, extraData, false), extraData, canvas);
     }
 
     /**
-     * 生成圆角图片
+     * 一次编码与排版, 生成多种分辨率与格式的二维码图片
+     * <p>
+     * 所有规格共享二维码编码、图标与文字排版的结果, 每种规格只需按比例绘制与编码输出, 不必各自完整生成一次。
+     * 尺寸与 {@link QRCodeRenderOptions#getSize()} 相同的 PNG 与 {@link #writeQRCodeWithExtraData} 的输出完全一致;
+     * 其余 PNG 按比例缩放整张图片, 二维码模块对齐到像素; SVG 只生成一次, 各规格只有宽高不同。
      *
-     * @param filepath        图片路径, 如：path/to/qrCode.png
-     * @param cornerRadius    圆角半径, 如: 20
-     * @param withWhiteBorder 图片外部是否需要填充白色边框
-     * @return 圆角图片路径
-     * @throws IOException IOException
-     * @implNote 圆角图片外部没有一圈白色边框
+     * @param text      二维码内容
+     * @param options   渲染参数, 决定布局的基准尺寸与 PNG 编码器
+     * @param extraData 二维码额外的信息
+     * @param variants  输出规格, 如: 120 像素缩略图、400 像素图片与 1200 像素打印图片
+     * @return 每种规格的图片内容, 按 variants 的顺序排列, 重复的规格只生成一次
+     * @throws WriterException 二维码编码失败
+     * @throws IOException     图标读取或图片编码失败
+     */
+    public static Map<QRCodeVariant, byte[]> renderVariants(String text, QRCodeRenderOptions options, QRCodeExtraData extraData, List<QRCodeVariant> variants) throws WriterException, IOException {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            boolean exact = variants.contains(QRCodeVariant.png(options.getSize()));
+            LabelLayout layout = layoutLabel(text, options, extraData, exact);
+            Map<QRCodeVariant, byte[]> contents = new LinkedHashMap<>();
+            QRCodeSvgWriter svg = null;
+            for (QRCodeVariant variant : variants) {
+                if (contents.containsKey(variant)) {
+                    continue;
+                }
+                double scale = (double) variant.size() / options.getSize();
+                ByteArrayOutputStream output = new ByteArrayOutputStream(32 * 1024);
+                if (variant.format() == OutputFormat.SVG) {
+                    long svgStart = System.nanoTime();
+                    if (svg == null) {
+                        svg = new QRCodeSvgWriter(options.isOutlineText());
+                        drawVector(layout, extraData, svg);
+                    }
+                    svg.writeTo(output, scale);
+                    QRCodeMetrics.record(Stage.SVG, svgStart);
+                } else if (variant.size() == options.getSize()) {
+                    writeLabelPng(layout, extraData, options, output);
+                } else {
+                    writeScaledPng(layout, extraData, options, scale, output);
+                }
+                contents.put(variant, output.toByteArray());
+            }
+            success = true;
+            return contents;
+        } finally {
+            QRCodeMetrics.recordRender(start, success);
+        }
+    }
+
+    /**
+     * 以 PNG 格式输出原尺寸的二维码图片
+     */
+    private static void writeLabelPng(LabelLayout layout, QRCodeExtraData extraData, QRCodeRenderOptions options, OutputStream output) throws IOException {
+        try (QRCodeCanvasPool.Canvas canvas = QRCodeCanvasPool.getInstance().borrow(layout.width(), layout.height(), BufferedImage.TYPE_INT_RGB)) {
+            drawLabel(layout, extraData, canvas.getImage(), canvas.getGraphics());
+            long pngStart = System.nanoTime();
+            writePng(canvas.getImage(), options, output);
+            QRCodeMetrics.record(Stage.PNG, pngStart);
+        }
+    }
+
+    /**
+     * 以 PNG 格式输出按比例缩放的二维码图片
+     */
+    private static void writeScaledPng(LabelLayout layout, QRCodeExtraData extraData, QRCodeRenderOptions options, double scale, OutputStream output) throws IOException {
+        int width = QRCodeScaledCanvas.scaledSize(layout.width(), scale);
+        int height = QRCodeScaledCanvas.scaledSize(layout.height(), scale);
+        try (QRCodeCanvasPool.Canvas canvas = QRCodeCanvasPool.getInstance().borrow(width, height, BufferedImage.TYPE_INT_RGB)) {
+            long start = System.nanoTime();
+            drawVector(layout, extraData, new QRCodeScaledCanvas(canvas.getGraphics(), scale));
+            start = QRCodeMetrics.record(Stage.RASTERIZE, start);
+            writePng(canvas.getImage(), options, output);
+            QRCodeMetrics.record(Stage.PNG, start);
+        }
+    }
+
+    /**
+     * 编码二维码并计算图片的布局
+     *
+     * @param raster 是否需要光栅化使用的静态模板, 输出 SVG 时不需要
+     */
+    private static LabelLayout layoutLabel(String text, QRCodeRenderOptions options, QRCodeExtraData extraData, boolean raster) throws WriterException, IOException {
+        long start = System.nanoTime();
+        String qrCodeText = text.replace("${GunCode}", extraData.getGunCode());
+        ByteMatrix modules = encodeModules(qrCodeText);
+        start = QRCodeMetrics.record(Stage.ENCODE, start);
+        int size = options.getSize();
+        // 与 QRCodeWriter 一致: 模块按整数倍放大, 剩余像素均分到两侧
+        int codeWidth = modules.getWidth() + options.getQuietZone() * 2;
+        int qrWidth = Math.max(size, codeWidth);
+        int qrHeight = qrWidth;
+        int moduleSize = qrWidth / codeWidth;
+        int padding = (qrWidth - modules.getWidth() * moduleSize) / 2;
+
+        boolean hasTopText = StringUtils.isNoneBlank(extraData.getStationName());
+        boolean hasBottomText = StringUtils.isNoneBlank(extraData.getGunCode());
+        int topHeight = hasTopText ? TOP_EXTENSION : 0;
+        int bottomHeight = hasBottomText ? BOTTOM_EXTENSION : 0;
+
+        // 背景、底部文字前缀与图标来自模板, 只有二维码模块、标题与字段内容需要实时绘制
+        QRCodeFontRegistry fontRegistry = QRCodeFontRegistry.getInstance();
+        BufferedImage icon = QRCodeIconCache.getIcon(options.getIconPath(), ICON_CORNER_RADIUS, ICON_BORDER_WIDTH, ICON_SIZE);
+        start = QRCodeMetrics.record(Stage.ICON, start);
+        int logoXOrY = (size - ICON_SIZE) / 2;
+        // 尺寸过小时图标会延伸到底部文字区域, 此时前缀需要绘制在图标之上, 不能放入模板
+        boolean staticPrefixes = logoXOrY + ICON_SIZE <= qrHeight;
+        QRCodeLabelTemplate template = null;
+        if (raster) {
+            TemplateKey templateKey = new TemplateKey(qrWidth, topHeight + qrHeight + bottomHeight, topHeight, bottomHeight,
+                    options.getIconPath(), logoXOrY, topHeight + logoXOrY);
+            template = QRCodeLabelTemplate.getTemplate(templateKey, icon, fontRegistry, g2d -> {
+                if (bottomHeight > 0 && staticPrefixes) {
+                    int bottomTextY = topHeight + qrHeight + BOTTOM_TEXT_OFFSET;
+                    for (String prefix : BOTTOM_TEXT_PREFIXES) {
+                        fontRegistry.layout(TextStyle.CAPTION, prefix).draw(g2d, BOTTOM_TEXT_X, bottomTextY);
+                        bottomTextY += BOTTOM_LINE_HEIGHT;
+                    }
+                }
+            });
+            QRCodeMetrics.record(Stage.TEMPLATE, start);
+        }
+        return new LabelLayout(modules, moduleSize, padding, qrWidth, qrHeight, topHeight, bottomHeight,
+                icon, logoXOrY, topHeight + logoXOrY, staticPrefixes, template, fontRegistry);
+    }
+
+    /**
+     * 在画布上绘制二维码图片, 画布的原有内容会被模板完全覆盖
+     */
+    private static void drawLabel(LabelLayout layout, QRCodeExtraData extraData, BufferedImage canvas, Graphics2D g2d) {
+        long start = System.nanoTime();
+        layout.template().copyTo(canvas);
+        QRCodeRasterizer.rasterize(layout.modules(), layout.moduleSize(), canvas, layout.padding(), layout.topHeight() + layout.padding());
+        // 二维码中间的圆角图标
+        layout.template().drawIcon(canvas);
+        start = QRCodeMetrics.record(Stage.RASTERIZE, start);
+
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON); // 抗锯齿
+        g2d.setColor(Color.BLACK);
+        layoutText(layout, extraData, layout.staticPrefixes(), (text, line, style, x, y) -> line.draw(g2d, x, y));
+        QRCodeMetrics.record(Stage.TEXT, start);
+    }
+
+    /**
+     * 以 SVG 格式输出二维码图片
+     */
+    private static void writeSvg(LabelLayout layout, QRCodeExtraData extraData, QRCodeRenderOptions options, OutputStream output) throws IOException {
+        long start = System.nanoTime();
+        QRCodeSvgWriter svg = new QRCodeSvgWriter(options.isOutlineText());
+        drawVector(layout, extraData, svg);
+        svg.writeTo(output);
+        QRCodeMetrics.record(Stage.SVG, start);
+    }
+
+    /**
+     * 以矢量形式输出二维码图片, 元素的位置与 {@link #drawLabel} 一致
+     */
+    private static void drawVector(LabelLayout layout, QRCodeExtraData extraData, QRCodeVectorCanvas canvas) throws IOException {
+        canvas.beginLabel(layout.width(), layout.height());
+        canvas.modules(layout.modules(), layout.moduleSize(), layout.padding(), layout.topHeight() + layout.padding());
+        canvas.image(layout.icon(), layout.iconX(), layout.iconY());
+        QRCodeFontRegistry fontRegistry = layout.fontRegistry();
+        try {
+            layoutText(layout, extraData, false, (text, line, style, x, y) -> {
+                try {
+                    canvas.text(text, line, fontRegistry.getFont(style), x, y);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        canvas.endLabel();
+    }
+
+    /**
+     * 排版顶部标题与底部文字, 依次交给 consumer 输出
+     *
+     * @param skipPrefixes 是否跳过底部文字的前缀, 前缀已经绘制在模板中时跳过
      */
-    public static String makeRoundedCorner(String filepath, int cornerRadius, boolean withWhiteBorder) throws IOException {
-        String targetFilepath = makeRoundedCornerWithoutWhiteBorder(filepath, cornerRadius);
-        if (withWhiteBorder) {
-            return makeRoundedCornerWithWhiteBorder(targetFilepath, cornerRadius);
+    private static void layoutText(LabelLayout layout, QRCodeExtraData extraData, boolean skipPrefixes, TextConsumer consumer) {
+        QRCodeFontRegistry fontRegistry = layout.fontRegistry();
+        // 顶部标题（居中）
+        if (layout.topHeight() > 0) {
+            TextLine title = fontRegistry.layout(TextStyle.TITLE, extraData.getStationName());
+            consumer.accept(extraData.getStationName(), title, TextStyle.TITLE, (layout.width() - title.width()) / 2, layout.topHeight() - 5);
+        }
+        // 底部文字（左对齐）, 与站点相关的内容重复出现, 使用缓存的排版结果
+        if (layout.bottomHeight() > 0) {
+            int bottomTextY = layout.topHeight() + layout.qrHeight() + BOTTOM_TEXT_OFFSET;
+            String[] bottomTexts = getBottomTexts(extraData);
+            for (int i = 0; i < bottomTexts.length; i++) {
+                TextLine prefix = fontRegistry.layout(TextStyle.CAPTION, BOTTOM_TEXT_PREFIXES[i]);
+                if (!skipPrefixes) {
+                    consumer.accept(BOTTOM_TEXT_PREFIXES[i], prefix, TextStyle.CAPTION, BOTTOM_TEXT_X, bottomTextY);
+                }
+                if (!bottomTexts[i].isEmpty()) {
+                    TextLine line = i < CACHED_BOTTOM_LINES
+                            ? fontRegistry.layout(TextStyle.CAPTION, bottomTexts[i])
+                            : fontRegistry.shape(TextStyle.CAPTION, bottomTexts[i]);
+                    consumer.accept(bottomTexts[i], line, TextStyle.CAPTION, BOTTOM_TEXT_X + prefix.width(), bottomTextY);
+                }
+                bottomTextY += BOTTOM_LINE_HEIGHT;
+            }
         }
-        return targetFilepath;
     }
 
     /**
-     * 生成圆角图片
+     * 编码二维码, 只生成模块矩阵而不放大到像素尺寸
+     *
+     * @param content 二维码内容
+     * @return 二维码模块矩阵
+     * @throws WriterException 二维码编码失败
+     */
+    public static ByteMatrix encodeModules(String content) throws WriterException {
+        Map<EncodeHintType, Object> hints = new LinkedHashMap<>();
+        hints.put(EncodeHintType.CHARACTER_SET, UTF_8);
+        return Encoder.encode(content, ErrorCorrectionLevel.H, hints).getMatrix();
+    }
+
+    /**
+     * 二维码底部的额外文字, 与 {@link #BOTTOM_TEXT_PREFIXES} 一一对应
+     *
+     * @param extraData 二维码额外的信息
+     * @return 底部文字前缀之后的内容, 每个元素一行
+     */
+    private static String[] getBottomTexts(QRCodeExtraData extraData) {
+        return new String[]{
+                StringUtils.defaultIfBlank(extraData.getArea(), ""),
+                StringUtils.defaultIfBlank(extraData.getPileName(), ""),
+                StringUtils.defaultIfBlank(extraData.getGunNo(), ""),
+                StringUtils.defaultIfBlank(extraData.getGunCode(), ""),
+        };
+    }
+    /**
+     * 读取图片, 支持 classpath: 前缀
      *
-     * @param filepath     图片路径, 如：path/to/qrCode.png
-     * @param cornerRadius 圆角半径, 如: 20
-     * @return 圆角图片路径
+     * @param filepath 图片路径
+     * @return 图片
      * @throws IOException IOException
-     * @implNote 圆角图片外部没有一圈白色边框
      */
-    private static String makeRoundedCornerWithoutWhiteBorder(String filepath, int cornerRadius) throws IOException {
-        String outputPath = getFileOutputPath(filepath);
-        File outputPathFile = new File(outputPath);
-        BufferedImage originalImage;
+    static BufferedImage readImage(String filepath) throws IOException {
         if (filepath.startsWith("classpath:")) {
             String resourcePath = filepath.substring("classpath:".length());
-            originalImage = ImageIO.read(Objects.requireNonNull(QRCodeGenerator.class.getClassLoader().getResourceAsStream(resourcePath)));
-        } else {
-            originalImage = ImageIO.read(new File(filepath));
+            try (InputStream inputStream = QRCodeGenerator.class.getClassLoader().getResourceAsStream(resourcePath)) {
+                return ImageIO.read(Objects.requireNonNull(inputStream, filepath));
+            }
         }
+        return ImageIO.read(new File(filepath));
+    }
+
+    /**
+     * 将图片裁剪为圆角
+     *
+     * @param originalImage 原始图片
+     * @param cornerRadius  圆角半径
+     * @return 圆角图片, 圆角外部透明
+     */
+    static BufferedImage roundedCornerImage(BufferedImage originalImage, int cornerRadius) {
         int width = originalImage.getWidth();
         int height = originalImage.getHeight();
 
@@ -122,40 +506,23 @@ public class QRCodeGenerator {
         g2d.fill(new RoundRectangle2D.Double(0, 0, width, height, cornerRadius, cornerRadius));
         g2d.setComposite(AlphaComposite.SrcAtop);
         g2d.drawImage(originalImage, 0, 0, null);
-
         g2d.dispose();
-        ImageIO.write(roundedImage, "PNG", outputPathFile);
-        return outputPath;
+        return roundedImage;
     }
 
     /**
-     * 生成圆角图片
+     * 在圆角图片外部添加一圈白色边框
      *
-     * @param filepath     图片路径, 如：path/to/qrCode.png
-     * @param cornerRadius 圆角半径, 如: 20
-     * @return 圆角图片路径
-     * @throws IOException IOException
-     * @implNote 圆角图片外部添加一圈白色边框
+     * @param originalImage 圆角图片
+     * @param cornerRadius  圆角半径
+     * @param borderWidth   边框宽度
+     * @return 带白色边框的图片
      */
-    public static String makeRoundedCornerWithWhiteBorder(String filepath, int cornerRadius) throws IOException {
-        File inputFile = new File(filepath);
-        if (!inputFile.exists()) {
-            log.error("File not found: {}", filepath);
-            return null;
-        }
-        String outputPath = getFileOutputPath(filepath);
-        File outputPathFile = new File(outputPath);
-        if (!outputPathFile.exists()) {
-            outputPathFile = inputFile;
-            outputPath = filepath;
-        }
-        BufferedImage originalImage = ImageIO.read(outputPathFile);
-
+    static BufferedImage whiteBorderImage(BufferedImage originalImage, int cornerRadius, int borderWidth) {
         int width = originalImage.getWidth();
         int height = originalImage.getHeight();
 
         // 添加外边框
-        int borderWidth = 10; // 定义边框宽度
         int borderedWidth = width + 2 * borderWidth;
         int borderedHeight = height + 2 * borderWidth;
 
@@ -174,227 +541,33 @@ public class QRCodeGenerator {
         g2d.setColor(Color.WHITE); // 这里改为黑色边框，你也可以根据需要修改边框颜色
         g2d.setStroke(new BasicStroke(4)); // 定义边框粗细
         g2d.draw(new RoundRectangle2D.Double(1, 1, borderedWidth - 3, borderedHeight - 3, cornerRadius, cornerRadius)); // 调整边框位置和大小
-
         g2d.dispose();
-        ImageIO.write(borderedImage, "PNG", outputPathFile);
-        return outputPath;
+        return borderedImage;
     }
 
     /**
-     * Generate QRCode with icon
-     *
-     * @param content  二维码内容, 如：https://www.newlink.com
-     * @param size     二维码尺寸, 如：300
-     * @param filePath 二维码文件路径, 如：./qr-code/qr_code_pic_demo.png
-     * @param iconPath icon文件路径, 如：./qr-code/icon_right_angle_1280x1280.png
+     * 二维码图片的布局
      */
-    public static void generateQRCodeWithIcon(String content, int size, String filePath, String iconPath) {
-        try {
-            File file = new File(filePath);
-            if (file.exists()) {
-                FileUtils.forceDelete(file);
-            }
-            Map<EncodeHintType, Object> hints = new LinkedHashMap<>();
-            hints.put(EncodeHintType.CHARACTER_SET, UTF_8);
-            hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.H);
-            hints.put(EncodeHintType.MARGIN, 2);
-            BitMatrix bitMatrix = new MultiFormatWriter().encode(content, BarcodeFormat.QR_CODE, size, size, hints);
-
-            BufferedImage qrImage = toBufferedImage(bitMatrix);
-
-            Graphics2D g2d = qrImage.createGraphics();
-            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON); // 抗锯齿
-
-            Image logoImage = ImageIO.read(new File(iconPath));
-            int logoXOrY = (size - 80) / 2; // Assume logo size as 80x80
-            g2d.drawImage(logoImage, logoXOrY, logoXOrY, 80, 80, null);
-            g2d.dispose();
-
-            ImageIO.write(qrImage, "png", file);
-            log.info("QR Code with icon created successfully. file: {}", filePath);
-        } catch (Exception e) {
-            log.error("Could not generate QR Code: {}", e.getMessage(), e);
+    private record LabelLayout(ByteMatrix modules, int moduleSize, int padding, int width, int qrHeight,
+                               int topHeight, int bottomHeight, BufferedImage icon, int iconX, int iconY,
+                               boolean staticPrefixes, QRCodeLabelTemplate template, QRCodeFontRegistry fontRegistry) {
+        int height() {
+            return topHeight + qrHeight + bottomHeight;
         }
     }
 
     /**
-     * 生成二维码额外的信息
-     *
-     * @param text      二维码内容
-     * @param size      二维码尺寸
-     * @param iconPath  二维码图标路径
-     * @param filepath  生成的二维码图片路径
-     * @param extraData 二维码额外的信息
-     * @return 二维码图片路径
+     * 排版后的文字的输出逻辑
      */
-    public static String generateQRCodeWithExtraData(String text, int size, String iconPath, String filepath, QRCodeExtraData extraData) {
-        String qrCodeText = text.replace("${GunCode}", extraData.getGunCode());
-        try {
-            String roundedIconPath = makeRoundedCorner(iconPath, 30, true);
-            generateQRCodeWithIcon(qrCodeText, size, filepath, roundedIconPath);
-
-            boolean hasTopText = StringUtils.isNoneBlank(extraData.getStationName());
-            boolean hasBottomText = StringUtils.isNoneBlank(extraData.getGunCode());
-            // 添加文字到二维码图片顶部
-            if (hasTopText) {
-                filepath = expandQRCodeTop(extraData.getStationName(), filepath, filepath);
-            }
-            if (hasBottomText) {
-                File input = new File(filepath);
-                BufferedImage qrImage = ImageIO.read(input);
-                // 扩展二维码底部高度
-                int bottomExtension = 100; // 扩展高度为100像素
-                BufferedImage bottomImage = new BufferedImage(qrImage.getWidth(), qrImage.getHeight() + bottomExtension, BufferedImage.TYPE_INT_RGB);
-                Graphics2D bottomGraphics = bottomImage.createGraphics();
-                bottomGraphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON); // 抗锯齿
-                bottomGraphics.setColor(Color.WHITE); // 填充白色底部区域
-                bottomGraphics.fillRect(0, qrImage.getHeight(), qrImage.getWidth(), bottomExtension); // 扩展的白色区域
-                bottomGraphics.drawImage(qrImage, 0, 0, null); // 将原有的二维码绘制在扩展后的图像上
-                bottomGraphics.dispose();
-
-                // 在扩展的底部区域添加文字（右对齐）
-                Graphics2D bottomGraphicsWithText = bottomImage.createGraphics();
-                bottomGraphicsWithText.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON); // 抗锯齿
-                bottomGraphicsWithText.setColor(Color.BLACK); // 设置文字颜色
-                Font miSansMediumFont = SpringUtil.getBean("miSansMediumFont", Font.class);
-                Font font = miSansMediumFont.deriveFont(Font.PLAIN, 18); // 字体和大小
-                bottomGraphicsWithText.setFont(font);
-                // 额外的文字
-                java.util.List<String> additionalTexts = new ArrayList<>();
-                additionalTexts.add("所处地区: " + StringUtils.defaultIfBlank(extraData.getArea(), ""));
-                additionalTexts.add("桩名称: " + StringUtils.defaultIfBlank(extraData.getPileName(), ""));
-                additionalTexts.add("枪编号: " + StringUtils.defaultIfBlank(extraData.getGunNo(), ""));
-                additionalTexts.add("枪码: " + StringUtils.defaultIfBlank(extraData.getGunCode(), ""));
-
-                int lineHeight = 22; // 每行文字的高度
-                int bottomTextY = qrImage.getHeight() + 20; // 在二维码底部留出一定的空间
-
-                // 绘制底部文字（左对齐）
-                int x = 30; // 左对齐，留出一定边距
-                for (String line : additionalTexts) {
-                    bottomGraphicsWithText.drawString(line, x, bottomTextY);
-                    bottomTextY += lineHeight; // 向下移动到下一行
-                }
-                ImageIO.write(bottomImage, "png", input);
-            }
-            log.info("QR Code with text created successfully. Filepath: {}", filepath);
-            File fileRoundedIcon = new File(roundedIconPath);
-            if (fileRoundedIcon.exists()) {
-                fileRoundedIcon.delete();
-            }
-            return filepath;
-        } catch (Exception e) {
-            log.error("Could not generate QR Code，QR code data: {} ,{}", qrCodeText, e.getMessage(), e);
-            return "";
-        }
-    }
-
-    /**
-     * 在二维码顶部添加额外的信息
-     *
-     * @param topAdditionalInfo 顶部额外的信息
-     * @param qrCodePath        二维码图片路径
-     * @param targetFilePath    生成的二维码图片路径
-     * @return 生成的二维码图片路径
-     */
-    public static String expandQRCodeTop(String topAdditionalInfo, String qrCodePath, String targetFilePath) {
-        if (StringUtils.isBlank(qrCodePath) || StringUtils.isBlank(targetFilePath) || StringUtils.isBlank(topAdditionalInfo)) {
-            return targetFilePath;
-        }
-        try {
-            File qrFile = new File(qrCodePath);
-            BufferedImage qrImage = ImageIO.read(qrFile);
-            // 扩展二维码顶部高度 30 像素
-            int height = 30;
-            int extendedHeight = qrImage.getHeight() + height;
-            BufferedImage extendedImage = new BufferedImage(qrImage.getWidth(), extendedHeight, BufferedImage.TYPE_INT_RGB);
-            Graphics2D g2d = extendedImage.createGraphics();
-            g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON); // 抗锯齿
-
-            // 填充顶部区域
-            g2d.setColor(Color.WHITE);
-            g2d.fillRect(0, 0, qrImage.getWidth(), height);
-
-            // 在顶部区域添加额外的信息
-            g2d.setColor(Color.BLACK);
-            Font miSansMediumFont = SpringUtil.getBean("miSansMediumFont", Font.class); // 字体和大小
-            Font font = miSansMediumFont.deriveFont(Font.BOLD, 22);
-            g2d.setFont(font); // 字体和大小
-            int textWidth = g2d.getFontMetrics().stringWidth(topAdditionalInfo);
-            int x = (extendedImage.getWidth() - textWidth) / 2;
-            int y = height - 5; // 调整位置，留出 25 像素间距
-            g2d.drawString(new String(topAdditionalInfo.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8), x, y);
-
-            // 将原始二维码图像放置在新图像的中间并重叠边缘
-            int xPos = (extendedImage.getWidth() - qrImage.getWidth()) / 2;
-            int yPos = height; // 起始位置在填充的顶部区域下方
-            g2d.drawImage(qrImage, xPos, yPos, null);
-
-            // 将扩展后的图片保存为文件
-            File output = new File(targetFilePath);
-            ImageIO.write(extendedImage, "png", output);
-            g2d.dispose();
-            if (output.exists()) {
-                log.info("Generate QRCode success: {}", targetFilePath);
-            }
-            return targetFilePath;
-        } catch (Exception e) {
-            log.error("Could not generate QR Code: {}", e.getMessage(), e);
-            return "";
-        }
-    }
-
-    /**
-     * 处理二维码
-     */
-    private static void processQRCode(int width, int height, BitMatrix bitMatrix, BufferedImage image) {
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                int color = bitMatrix.get(x, y) ? 0xFF000000 : 0xFFFFFFFF;
-                image.setRGB(x, y, color);
-            }
-        }
-    }
-
-    /**
-     * 获取文件输出路径
-     *
-     * @param filepath 源文件路径
-     * @return 文件输出路径
-     */
-    private static String getFileOutputPath(String filepath) {
-        String filename = FilenameUtils.getName(filepath);
-        String baseName = FilenameUtils.getBaseName(filepath);
-        String extension = FilenameUtils.getExtension(filepath);
-        log.info("获取文件输出路径 baseName: {}, extension: {}, filename: {}", baseName, extension, filename);
-        String tempDir = SystemUtil.getTmpDirPath();
-        if (filepath.startsWith("classpath:")) {
-            return tempDir + StringUtils.substringAfterLast(filepath, "/");
-        }
-        if (filepath.endsWith("_rounded.png")) {
-            return filepath;
-        }
-        return tempDir + baseName + "_rounded." + extension;
-    }
-
-    /**
-     * 生成二维码
-     *
-     * @param matrix 二维码矩阵
-     * @return 二维码图片
-     */
-    private static BufferedImage toBufferedImage(BitMatrix matrix) {
-        int black = 0xFF000000;
-        int white = 0xFFFFFFFF;
-        int width = matrix.getWidth();
-        int height = matrix.getHeight();
-        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                image.setRGB(x, y, matrix.get(x, y) ? black : white);
-            }
-        }
-        return image;
+    @FunctionalInterface
+    private interface TextConsumer {
+        /**
+         * @param text  文字内容
+         * @param line  排版结果
+         * @param style 文字样式
+         * @param x     基线起点横坐标
+         * @param y     基线纵坐标
+         */
+        void accept(String text, TextLine line, TextStyle style, float x, float y);
     }
 }
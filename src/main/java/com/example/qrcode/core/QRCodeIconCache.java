@@ -0,0 +1,119 @@
+package com.example.qrcode.core;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 二维码图标缓存
+ * <p>
+ * 缓存经过圆角、白色边框与缩放处理后的最终图标, 避免每生成一张二维码都重新解码并缩放原始大图。
+ * 源文件的修改时间或大小发生变化时, 缓存自动失效并重新加载。
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+public final class QRCodeIconCache {
+    private static final Logger log = LoggerFactory.getLogger(QRCodeIconCache.class);
+    private static final Map<IconKey, IconEntry> CACHE = new ConcurrentHashMap<>();
+
+    private QRCodeIconCache() {
+    }
+
+    /**
+     * 获取处理好的图标
+     *
+     * @param iconPath     图标路径, 支持 classpath: 前缀
+     * @param cornerRadius 圆角半径
+     * @param borderWidth  白色边框宽度
+     * @param targetSize   缩放后的图标边长
+     * @return 图标图片
+     * @throws IOException 图标读取失败
+     * @apiNote 返回的图片为共享实例, 调用方不得修改
+     */
+    public static BufferedImage getIcon(String iconPath, int cornerRadius, int borderWidth, int targetSize) throws IOException {
+        IconKey key = new IconKey(iconPath, cornerRadius, borderWidth, targetSize);
+        long stamp = sourceStamp(iconPath);
+        IconEntry entry = CACHE.get(key);
+        if (entry != null && entry.stamp() == stamp) {
+            return entry.image();
+        }
+        try {
+            return CACHE.compute(key, (k, current) -> {
+                if (current != null && current.stamp() == stamp) {
+                    return current;
+                }
+                return new IconEntry(loadIcon(k), stamp);
+            }).image();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 清除指定图标的所有缓存
+     *
+     * @param iconPath 图标路径
+     */
+    public static void invalidate(String iconPath) {
+        CACHE.keySet().removeIf(key -> key.iconPath().equals(iconPath));
+    }
+
+    /**
+     * 清除所有缓存
+     */
+    public static void clear() {
+        CACHE.clear();
+    }
+
+    private static BufferedImage loadIcon(IconKey key) {
+        try {
+            log.info("加载二维码图标: {}", key);
+            BufferedImage rounded = QRCodeGenerator.roundedCornerImage(QRCodeGenerator.readImage(key.iconPath()), key.cornerRadius());
+            BufferedImage bordered = QRCodeGenerator.whiteBorderImage(rounded, key.cornerRadius(), key.borderWidth());
+            BufferedImage scaled = new BufferedImage(key.targetSize(), key.targetSize(), BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g2d = scaled.createGraphics();
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2d.drawImage(bordered, 0, 0, key.targetSize(), key.targetSize(), null);
+            g2d.dispose();
+            return scaled;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 计算图标源文件的版本标记
+     *
+     * @param iconPath 图标路径
+     * @return 版本标记, 源文件变化时随之变化; jar 包内的资源视为不可变
+     */
+    public static long sourceStamp(String iconPath) {
+        File file;
+        if (iconPath.startsWith("classpath:")) {
+            URL url = QRCodeIconCache.class.getClassLoader().getResource(iconPath.substring("classpath:".length()));
+            if (url == null || !"file".equals(url.getProtocol())) {
+                return 0L;
+            }
+            file = FileUtils.toFile(url);
+        } else {
+            file = new File(iconPath);
+        }
+        return file.lastModified() * 31 + file.length();
+    }
+
+    private record IconKey(String iconPath, int cornerRadius, int borderWidth, int targetSize) {
+    }
+
+    private record IconEntry(BufferedImage image, long stamp) {
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.qrcode.core;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 已编码二维码图片的内存缓存
+ * <p>
+ * 按最近最少使用 (LRU) 淘汰, 容量以字节计算而不是条目数, 缓存的键为渲染输入的摘要,
+ * 如 {@code QRCodeLabelService#renderKey}。
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+public class QRCodeLabelCache {
+    /**
+     * 每个条目除图片内容外的估算开销, 单位: 字节
+     */
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private long currentBytes;
+
+    /**
+     * @param maxBytes 缓存容量, 单位: 字节
+     */
+    public QRCodeLabelCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 获取缓存的图片
+     *
+     * @param key 渲染输入的摘要
+     * @return 图片内容, 未命中时返回 null
+     * @apiNote 返回的数组为共享实例, 调用方不得修改
+     */
+    public byte[] get(String key) {
+        byte[] content;
+        synchronized (this) {
+            content = entries.get(key);
+        }
+        (content == null ? misses : hits).increment();
+        return content;
+    }
+
+    /**
+     * 缓存图片, 超出容量时淘汰最久未使用的条目
+     *
+     * @param key     渲染输入的摘要
+     * @param content 图片内容
+     */
+    public void put(String key, byte[] content) {
+        long size = weigh(content);
+        if (size > maxBytes) {
+            return;
+        }
+        synchronized (this) {
+            byte[] previous = entries.put(key, content);
+            if (previous != null) {
+                currentBytes -= weigh(previous);
+            }
+            currentBytes += size;
+            Iterator<Map.Entry<String, byte[]>> iterator = entries.entrySet().iterator();
+            while (currentBytes > maxBytes && iterator.hasNext()) {
+                Map.Entry<String, byte[]> eldest = iterator.next();
+                currentBytes -= weigh(eldest.getValue());
+                iterator.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * 移除缓存的图片, 如: 解码校验失败
+     *
+     * @param key 渲染输入的摘要
+     * @return 是否存在并已移除
+     */
+    public synchronized boolean invalidate(String key) {
+        byte[] previous = entries.remove(key);
+        if (previous == null) {
+            return false;
+        }
+        currentBytes -= weigh(previous);
+        return true;
+    }
+
+    /**
+     * 清空缓存
+     */
+    public synchronized void clear() {
+        entries.clear();
+        currentBytes = 0;
+    }
+
+    /**
+     * 获取缓存统计信息
+     */
+    public synchronized Stats getStats() {
+        return new Stats(entries.size(), currentBytes, maxBytes, hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    private static long weigh(byte[] content) {
+        return content.length + ENTRY_OVERHEAD;
+    }
+
+    /**
+     * 缓存统计信息
+     *
+     * @param size      条目数
+     * @param bytes     已使用的容量, 单位: 字节
+     * @param maxBytes  缓存容量, 单位: 字节
+     * @param hits      命中次数
+     * @param misses    未命中次数
+     * @param evictions 淘汰次数
+     */
+    public record Stats(int size, long bytes, long maxBytes, long hits, long misses, long evictions) {
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.qrcode.core;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * 二维码图片的静态模板
+ * <p>
+ * 同一配置下每张二维码图片中不变的部分, 如白色背景、底部文字的前缀, 只绘制一次并保存为像素数组;
+ * 中间图标预先拆分为不透明的连续色段与少量半透明像素。生成二维码时整块复制背景,
+ * 绘制二维码模块后再按色段复制图标, 只有标题与字段内容需要实时绘制。
+ * <p>
+ * 图标或字体注册表发生变化时, 模板自动重新生成。
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+public final class QRCodeLabelTemplate {
+    /**
+     * 缓存的模板数量上限, 超出时清空重建, 正常配置下只有少量尺寸组合
+     */
+    private static final int MAX_TEMPLATES = 64;
+    private static final Map<TemplateKey, QRCodeLabelTemplate> TEMPLATES = new ConcurrentHashMap<>();
+
+    private final int width;
+    private final int height;
+    private final int[] background;
+    private final BufferedImage icon;
+    private final QRCodeFontRegistry fontRegistry;
+    /**
+     * 图标中不透明的色段, 每三个元素一组: 画布下标、图标像素下标、长度
+     */
+    private final int[] iconRuns;
+    /**
+     * 图标中半透明的像素, 每两个元素一组: 画布下标、ARGB 颜色
+     */
+    private final int[] iconBlends;
+    private final int[] iconPixels;
+
+    private QRCodeLabelTemplate(TemplateKey key, BufferedImage icon, QRCodeFontRegistry fontRegistry, Consumer<Graphics2D> painter) {
+        this.width = key.width();
+        this.height = key.height();
+        this.icon = icon;
+        this.fontRegistry = fontRegistry;
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
+        try {
+            g2d.setColor(Color.WHITE);
+            g2d.fillRect(0, 0, width, height);
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON); // 抗锯齿
+            g2d.setColor(Color.BLACK);
+            painter.accept(g2d);
+        } finally {
+            g2d.dispose();
+        }
+        this.background = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+
+        int iconWidth = icon.getWidth();
+        int iconHeight = icon.getHeight();
+        this.iconPixels = icon.getRGB(0, 0, iconWidth, iconHeight, null, 0, iconWidth);
+        int[] runs = new int[iconWidth * iconHeight];
+        int[] blends = new int[iconWidth * iconHeight];
+        int runCount = 0;
+        int blendCount = 0;
+        // 超出画布的部分裁剪掉, 与 drawImage 一致
+        int fromX = Math.max(0, -key.iconX());
+        int toX = Math.min(iconWidth, width - key.iconX());
+        int fromY = Math.max(0, -key.iconY());
+        int toY = Math.min(iconHeight, height - key.iconY());
+        for (int y = fromY; y < toY; y++) {
+            int dstRow = (key.iconY() + y) * width + key.iconX();
+            for (int x = fromX; x < toX; x++) {
+                int src = y * iconWidth + x;
+                int alpha = iconPixels[src] >>> 24;
+                if (alpha == 0xFF) {
+                    int start = x;
+                    while (x + 1 < toX && iconPixels[src + x + 1 - start] >>> 24 == 0xFF) {
+                        x++;
+                    }
+                    runs[runCount++] = dstRow + start;
+                    runs[runCount++] = src;
+                    runs[runCount++] = x + 1 - start;
+                } else if (alpha != 0) {
+                    blends[blendCount++] = dstRow + x;
+                    blends[blendCount++] = iconPixels[src];
+                }
+            }
+        }
+        this.iconRuns = Arrays.copyOf(runs, runCount);
+        this.iconBlends = Arrays.copyOf(blends, blendCount);
+    }
+
+    /**
+     * 获取模板, 不存在或已过期时重新生成
+     *
+     * @param key          模板的尺寸与图标位置
+     * @param icon         处理好的图标, 见 {@link QRCodeIconCache#getIcon}
+     * @param fontRegistry 绘制静态文字使用的字体注册表
+     * @param painter      静态部分的绘制逻辑, 在白色背景上以黑色绘制, 结果只能取决于 key 与 fontRegistry
+     * @return 模板
+     */
+    public static QRCodeLabelTemplate getTemplate(TemplateKey key, BufferedImage icon, QRCodeFontRegistry fontRegistry, Consumer<Graphics2D> painter) {
+        QRCodeLabelTemplate template = TEMPLATES.get(key);
+        if (template != null && template.icon == icon && template.fontRegistry == fontRegistry) {
+            return template;
+        }
+        if (TEMPLATES.size() >= MAX_TEMPLATES) {
+            TEMPLATES.clear();
+        }
+        return TEMPLATES.compute(key, (k, current) -> {
+            if (current != null && current.icon == icon && current.fontRegistry == fontRegistry) {
+                return current;
+            }
+            return new QRCodeLabelTemplate(k, icon, fontRegistry, painter);
+        });
+    }
+
+    /**
+     * 清空缓存的模板
+     */
+    public static void clear() {
+        TEMPLATES.clear();
+    }
+
+    /**
+     * 将模板的静态部分复制到画布上, 覆盖画布的全部内容
+     *
+     * @param canvas 与模板尺寸相同的 {@code TYPE_INT_RGB} 画布
+     */
+    public void copyTo(BufferedImage canvas) {
+        System.arraycopy(background, 0, pixels(canvas), 0, background.length);
+    }
+
+    /**
+     * 在画布上绘制图标, 结果与 {@code Graphics2D#drawImage} 的 SrcOver 合成一致
+     *
+     * @param canvas 与模板尺寸相同的 {@code TYPE_INT_RGB} 画布
+     */
+    public void drawIcon(BufferedImage canvas) {
+        int[] data = pixels(canvas);
+        for (int i = 0; i < iconRuns.length; i += 3) {
+            System.arraycopy(iconPixels, iconRuns[i + 1], data, iconRuns[i], iconRuns[i + 2]);
+        }
+        for (int i = 0; i < iconBlends.length; i += 2) {
+            int offset = iconBlends[i];
+            data[offset] = blend(iconBlends[i + 1], data[offset]);
+        }
+    }
+
+    private int[] pixels(BufferedImage canvas) {
+        if (canvas.getType() != BufferedImage.TYPE_INT_RGB || canvas.getWidth() != width || canvas.getHeight() != height
+                || canvas.getRaster().getDataBuffer().getOffset() != 0
+                || canvas.getRaster().getSampleModelTranslateX() != 0 || canvas.getRaster().getSampleModelTranslateY() != 0) {
+            throw new IllegalArgumentException("Canvas does not match template " + width + "x" + height);
+        }
+        return ((DataBufferInt) canvas.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * 不透明背景上的 SrcOver 合成, 乘法与 Java2D 的 mul8table 取整方式一致
+     */
+    private static int blend(int argb, int rgb) {
+        int alpha = argb >>> 24;
+        int inverse = 0xFF - alpha;
+        int r = mul8(alpha, (argb >> 16) & 0xFF) + mul8(inverse, (rgb >> 16) & 0xFF);
+        int g = mul8(alpha, (argb >> 8) & 0xFF) + mul8(inverse, (rgb >> 8) & 0xFF);
+        int b = mul8(alpha, argb & 0xFF) + mul8(inverse, rgb & 0xFF);
+        return 0xFF000000 | r << 16 | g << 8 | b;
+    }
+
+    private static int mul8(int a, int b) {
+        return (a * b * 0x10101 + 0x800000) >>> 24;
+    }
+
+    /**
+     * 模板的键
+     *
+     * @param width        画布宽度
+     * @param height       画布高度
+     * @param topHeight    顶部标题区域高度
+     * @param bottomHeight 底部文字区域高度
+     * @param iconPath     图标路径
+     * @param iconX        图标左上角横坐标
+     * @param iconY        图标左上角纵坐标
+     */
+    public record TemplateKey(int width, int height, int topHeight, int bottomHeight, String iconPath, int iconX, int iconY) {
+    }
+}
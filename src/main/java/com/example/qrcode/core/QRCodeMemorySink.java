@@ -0,0 +1,97 @@
+package com.example.qrcode.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 保存在内存中的二维码输出存储, 用于测试与单实例, 服务重启后内容丢失
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+public class QRCodeMemorySink implements QRCodeOutputSink {
+    private final Map<String, byte[]> contents = new ConcurrentHashMap<>();
+
+    @Override
+    public Output create(String name) {
+        QRCodeOutputSink.checkName(name);
+        return new Output() {
+            private ByteArrayOutputStream buffer = new ByteArrayOutputStream(32 * 1024);
+
+            @Override
+            public void write(int b) throws IOException {
+                checkOpen().write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                checkOpen().write(b, off, len);
+            }
+
+            @Override
+            public void commit() throws IOException {
+                contents.put(name, checkOpen().toByteArray());
+                buffer = null;
+            }
+
+            @Override
+            public void close() {
+                buffer = null;
+            }
+
+            private ByteArrayOutputStream checkOpen() throws IOException {
+                if (buffer == null) {
+                    throw new IOException("Output already committed or closed: " + name);
+                }
+                return buffer;
+            }
+        };
+    }
+
+    @Override
+    public long size(String name) {
+        byte[] content = contents.get(name);
+        return content == null ? -1 : content.length;
+    }
+
+    @Override
+    public InputStream open(String name) throws IOException {
+        return new ByteArrayInputStream(get(name));
+    }
+
+    @Override
+    public boolean delete(String name) {
+        return contents.remove(name) != null;
+    }
+
+    @Override
+    public String describe(String name) {
+        return "memory:" + name;
+    }
+
+    /**
+     * 直接写出内存中的内容, 不经过输入流
+     */
+    @Override
+    public void transferTo(String name, WritableByteChannel target) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(get(name));
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+
+    private byte[] get(String name) throws IOException {
+        byte[] content = contents.get(name);
+        if (content == null) {
+            throw new NoSuchFileException(name);
+        }
+        return content;
+    }
+}
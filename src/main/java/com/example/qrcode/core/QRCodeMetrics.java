@@ -0,0 +1,257 @@
+package com.example.qrcode.core;
+
+import io.micrometer.core.instrument.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 二维码生成过程的监控指标
+ * <p>
+ * {@link QRCodeGenerator} 为静态工具类, 指标注册在 {@link Metrics#globalRegistry} 中,
+ * Spring Boot 启动后会把 Prometheus 等注册表加入全局注册表, 通过 Actuator 对外暴露。
+ * <ul>
+ *     <li>{@code qrcode.render.stage}: 各阶段耗时, 标签 stage 见 {@link Stage}</li>
+ *     <li>{@code qrcode.render}: 生成一张二维码的总耗时, 标签 outcome 为 success/failure</li>
+ *     <li>{@code qrcode.label.bytes}: 二维码图片的大小</li>
+ *     <li>{@code qrcode.batch.labels}/{@code qrcode.batch.failures}: 每次批量生成的数量与失败数</li>
+ *     <li>{@code qrcode.admission.wait}: 等待渲染许可的时间, 标签 limiter 为准入控制的名称, outcome 为 admitted/rejected</li>
+ *     <li>{@code qrcode.verify}: 解码校验的耗时, 标签 outcome 见 {@link QRCodeVerifier.Outcome}; {@code qrcode.verify.dropped}: 队列已满而丢弃的校验</li>
+ *     <li>{@code qrcode.verify.invalidated}: 交互请求校验失败后从缓存与磁盘存储中移除的二维码, 标签 outcome 见 {@link QRCodeVerifier.Outcome}</li>
+ *     <li>{@code qrcode.warmup}: 启动后在后台加载字体、图标并生成第一张二维码的耗时</li>
+ * </ul>
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+public final class QRCodeMetrics {
+    private static final Map<Stage, Timer> STAGE_TIMERS = new EnumMap<>(Stage.class);
+    private static final Timer RENDER_SUCCESS = renderTimer("success");
+    private static final Timer RENDER_FAILURE = renderTimer("failure");
+    private static final DistributionSummary LABEL_BYTES = DistributionSummary.builder("qrcode.label.bytes")
+            .description("Size of encoded QR code labels")
+            .baseUnit("bytes")
+            .register(Metrics.globalRegistry);
+    private static final DistributionSummary BATCH_LABELS = DistributionSummary.builder("qrcode.batch.labels")
+            .description("Number of labels per batch request")
+            .register(Metrics.globalRegistry);
+    private static final Counter BATCH_FAILURES = Counter.builder("qrcode.batch.failures")
+            .description("Labels that failed in batch requests")
+            .register(Metrics.globalRegistry);
+    private static final Map<String, Timer> ADMISSION_TIMERS = new ConcurrentHashMap<>();
+    private static final Map<QRCodeVerifier.Outcome, Timer> VERIFY_TIMERS = new EnumMap<>(QRCodeVerifier.Outcome.class);
+    private static final Counter VERIFY_DROPPED = Counter.builder("qrcode.verify.dropped")
+            .description("Sampled verifications dropped because the verify queue was full")
+            .register(Metrics.globalRegistry);
+    private static final Map<QRCodeVerifier.Outcome, Counter> VERIFY_INVALIDATED = new EnumMap<>(QRCodeVerifier.Outcome.class);
+    private static final Timer WARM_UP = Timer.builder("qrcode.warmup")
+            .description("Time to load fonts and assets and render the first label after startup")
+            .register(Metrics.globalRegistry);
+    private static final Timer SHARD_COMPLETED = shardTimer("completed");
+    private static final Timer SHARD_LOST = shardTimer("lost");
+    private static final Timer SHARD_FAILED = shardTimer("failed");
+
+    static {
+        for (Stage stage : Stage.values()) {
+            STAGE_TIMERS.put(stage, Timer.builder("qrcode.render.stage")
+                    .description("Time spent in each QR code rendering stage")
+                    .tag("stage", stage.getTag())
+                    .register(Metrics.globalRegistry));
+        }
+        for (QRCodeVerifier.Outcome outcome : QRCodeVerifier.Outcome.values()) {
+            VERIFY_TIMERS.put(outcome, Timer.builder("qrcode.verify")
+                    .description("Time to decode a rendered label and compare it with the encoded text")
+                    .tag("outcome", outcome.getTag())
+                    .register(Metrics.globalRegistry));
+            VERIFY_INVALIDATED.put(outcome, Counter.builder("qrcode.verify.invalidated")
+                    .description("Interactive labels removed from the caches after a failed verification")
+                    .tag("outcome", outcome.getTag())
+                    .register(Metrics.globalRegistry));
+        }
+    }
+
+    private QRCodeMetrics() {
+    }
+
+    /**
+     * 记录阶段耗时
+     *
+     * @param stage      阶段
+     * @param startNanos 阶段开始时的 {@link System#nanoTime()}
+     * @return 当前的 {@link System#nanoTime()}, 可以作为下一阶段的开始时间
+     */
+    public static long record(Stage stage, long startNanos) {
+        long now = System.nanoTime();
+        STAGE_TIMERS.get(stage).record(now - startNanos, TimeUnit.NANOSECONDS);
+        return now;
+    }
+
+    /**
+     * 记录生成一张二维码的总耗时
+     *
+     * @param startNanos 开始时的 {@link System#nanoTime()}
+     * @param success    是否成功
+     */
+    public static void recordRender(long startNanos, boolean success) {
+        (success ? RENDER_SUCCESS : RENDER_FAILURE).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录二维码图片的大小
+     *
+     * @param bytes 图片大小, 单位: 字节
+     */
+    public static void recordLabelBytes(long bytes) {
+        LABEL_BYTES.record(bytes);
+    }
+
+    /**
+     * 记录一次批量生成的结果
+     *
+     * @param labels 二维码数量
+     * @param failed 失败的数量
+     */
+    public static void recordBatch(int labels, long failed) {
+        BATCH_LABELS.record(labels);
+        BATCH_FAILURES.increment(failed);
+    }
+
+    /**
+     * 记录渲染许可的等待时间
+     *
+     * @param limiter    准入控制的名称, 如: render、batch; 单个二维码渲染线程池拒绝任务时为 interactive-executor
+     * @param startNanos 开始等待时的 {@link System#nanoTime()}
+     * @param admitted   是否获得许可
+     */
+    public static void recordAdmission(String limiter, long startNanos, boolean admitted) {
+        String outcome = admitted ? "admitted" : "rejected";
+        ADMISSION_TIMERS.computeIfAbsent(limiter + "/" + outcome, key -> admissionTimer(limiter, outcome))
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录解码校验的结果与耗时
+     *
+     * @param startNanos 开始校验时的 {@link System#nanoTime()}
+     * @param outcome    校验结果
+     */
+    public static void recordVerify(long startNanos, QRCodeVerifier.Outcome outcome) {
+        VERIFY_TIMERS.get(outcome).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 记录因队列已满而丢弃的校验
+     */
+    public static void recordVerifyDropped() {
+        VERIFY_DROPPED.increment();
+    }
+
+    /**
+     * 记录校验失败后从缓存中移除的二维码
+     *
+     * @param outcome 校验结果
+     */
+    public static void recordVerifyInvalidated(QRCodeVerifier.Outcome outcome) {
+        VERIFY_INVALIDATED.get(outcome).increment();
+    }
+
+    /**
+     * 记录启动预热的耗时
+     *
+     * @param startNanos 开始预热时的 {@link System#nanoTime()}
+     * @return 预热耗时, 单位: 毫秒
+     */
+    public static long recordWarmUp(long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        WARM_UP.record(nanos, TimeUnit.NANOSECONDS);
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * 记录分片批量任务中一个分片的执行结果与耗时
+     *
+     * @param startNanos 开始执行时的 {@link System#nanoTime()}
+     * @param completed  是否已完成并提交
+     * @param lost       租约是否已被其他实例取得
+     */
+    public static void recordShardChunk(long startNanos, boolean completed, boolean lost) {
+        Timer timer = completed ? SHARD_COMPLETED : lost ? SHARD_LOST : SHARD_FAILED;
+        timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static Timer admissionTimer(String limiter, String outcome) {
+        return Timer.builder("qrcode.admission.wait")
+                .description("Time spent waiting for a render permit")
+                .tag("limiter", limiter)
+                .tag("outcome", outcome)
+                .register(Metrics.globalRegistry);
+    }
+
+    private static Timer shardTimer(String outcome) {
+        return Timer.builder("qrcode.shard.chunk")
+                .description("Time to render one chunk of a sharded batch job")
+                .tag("outcome", outcome)
+                .register(Metrics.globalRegistry);
+    }
+
+    private static Timer renderTimer(String outcome) {
+        return Timer.builder("qrcode.render")
+                .description("Time to render and encode one QR code label")
+                .tag("outcome", outcome)
+                .register(Metrics.globalRegistry);
+    }
+
+    /**
+     * 二维码生成的阶段
+     */
+    @Getter
+    @AllArgsConstructor
+    public enum Stage {
+        /**
+         * ZXing 编码二维码模块矩阵
+         */
+        ENCODE("encode"),
+        /**
+         * 获取处理好的中间图标, 未命中缓存时包括读取、圆角与缩放
+         */
+        ICON("icon"),
+        /**
+         * 获取静态模板, 未命中时包括绘制模板
+         */
+        TEMPLATE("template"),
+        /**
+         * 复制模板、绘制二维码模块与图标
+         */
+        RASTERIZE("rasterize"),
+        /**
+         * 绘制标题与底部文字
+         */
+        TEXT("text"),
+        /**
+         * PNG 编码
+         */
+        PNG("png"),
+        /**
+         * SVG 输出, 包括图标内嵌与文字输出
+         */
+        SVG("svg"),
+        /**
+         * 写入磁盘文件
+         */
+        WRITE("write"),
+        /**
+         * 从磁盘存储读取图片
+         */
+        STORE_READ("store_read"),
+        /**
+         * 写入磁盘存储, 包括刷盘与重命名
+         */
+        STORE_WRITE("store_write");
+
+        private final String tag;
+    }
+}
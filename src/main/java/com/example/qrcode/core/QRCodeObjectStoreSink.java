@@ -0,0 +1,118 @@
+package com.example.qrcode.core;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.UUID;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * 对象存储的本地替身, 用于在没有对象存储的环境中验证无状态部署
+ * <p>
+ * 与对象存储的语义一致: 名称是扁平的键, / 没有目录含义; 对象先在本地暂存, 提交时整体上传, 上传完成前不可见;
+ * 不支持重命名与追加, 读取只能以流的方式进行, 无法使用 sendfile。
+ * 对象保存在 {@code <root>/<bucket>/} 中, 文件名为键的 URL 编码。
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+public class QRCodeObjectStoreSink implements QRCodeOutputSink {
+    private final String bucket;
+    private final Path bucketDir;
+    private final Path spoolDir;
+
+    /**
+     * @param root   存储根目录
+     * @param bucket 存储桶名称
+     * @throws IOException 无法创建目录
+     */
+    public QRCodeObjectStoreSink(Path root, String bucket) throws IOException {
+        this.bucket = bucket;
+        this.bucketDir = root.resolve(bucket);
+        this.spoolDir = root.resolve(".spool");
+        Files.createDirectories(bucketDir);
+        Files.createDirectories(spoolDir);
+    }
+
+    @Override
+    public Output create(String name) throws IOException {
+        Path object = objectPath(name);
+        Path spool = spoolDir.resolve(UUID.randomUUID() + ".tmp");
+        OutputStream stream = new BufferedOutputStream(Files.newOutputStream(spool, CREATE_NEW, WRITE), 64 * 1024);
+        return new Output() {
+            private boolean closed;
+
+            @Override
+            public void write(int b) throws IOException {
+                stream.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                stream.write(b, off, len);
+            }
+
+            /**
+             * 上传整个对象
+             */
+            @Override
+            public void commit() throws IOException {
+                if (closed) {
+                    throw new IOException("Output already committed or closed: " + name);
+                }
+                closed = true;
+                stream.close();
+                Path uploading = bucketDir.resolve(".upload-" + spool.getFileName());
+                try {
+                    Files.copy(spool, uploading);
+                    Files.move(uploading, object, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(uploading);
+                    Files.deleteIfExists(spool);
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (!closed) {
+                    closed = true;
+                    try {
+                        stream.close();
+                    } finally {
+                        Files.deleteIfExists(spool);
+                    }
+                }
+            }
+        };
+    }
+
+    @Override
+    public long size(String name) throws IOException {
+        Path object = objectPath(name);
+        return Files.isRegularFile(object) ? Files.size(object) : -1;
+    }
+
+    @Override
+    public InputStream open(String name) throws IOException {
+        return Files.newInputStream(objectPath(name));
+    }
+
+    @Override
+    public boolean delete(String name) throws IOException {
+        return Files.deleteIfExists(objectPath(name));
+    }
+
+    @Override
+    public String describe(String name) {
+        return "object://" + bucket + "/" + name;
+    }
+
+    private Path objectPath(String name) {
+        return bucketDir.resolve(URLEncoder.encode(QRCodeOutputSink.checkName(name), StandardCharsets.UTF_8));
+    }
+}
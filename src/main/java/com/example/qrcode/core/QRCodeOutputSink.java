@@ -0,0 +1,133 @@
+package com.example.qrcode.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.regex.Pattern;
+
+/**
+ * 二维码输出存储
+ * <p>
+ * 生成的图片与压缩包按名称写入存储, 名称以 / 分隔层级, 如: station-export/labels-00001.zip。
+ * 写入的内容在 {@link Output#commit()} 之后才对读取可见, 未提交就关闭的输出被丢弃, 读取方不会看到写了一半的文件。
+ * <ul>
+ *     <li>{@link QRCodeMemorySink}: 保存在内存中, 用于测试与单实例</li>
+ *     <li>{@link QRCodeDirectorySink}: 保存在本地或共享目录中, 以 {@link java.nio.channels.FileChannel#transferTo} 输出</li>
+ *     <li>{@link QRCodeObjectStoreSink}: 对象存储的本地替身, 整个对象上传后才可见, 不支持重命名与追加</li>
+ * </ul>
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+public interface QRCodeOutputSink {
+    /**
+     * 允许的名称: 不以 / 开头或结尾, 各层级不为空, 不以 . 开头
+     */
+    Pattern NAME = Pattern.compile("[^/.\\\\\\x00-\\x1f][^/\\\\\\x00-\\x1f]*(/[^/.\\\\\\x00-\\x1f][^/\\\\\\x00-\\x1f]*)*");
+
+    /**
+     * 创建输出, 同名内容在提交时被替换
+     *
+     * @param name 名称
+     * @return 输出, 调用方负责关闭
+     * @throws IOException 创建失败
+     */
+    Output create(String name) throws IOException;
+
+    /**
+     * 获取内容的大小
+     *
+     * @param name 名称
+     * @return 大小, 单位: 字节, 不存在时返回 -1
+     * @throws IOException 读取失败
+     */
+    long size(String name) throws IOException;
+
+    /**
+     * 读取内容
+     *
+     * @param name 名称
+     * @return 输入流, 调用方负责关闭
+     * @throws java.nio.file.NoSuchFileException 不存在
+     * @throws IOException                       读取失败
+     */
+    InputStream open(String name) throws IOException;
+
+    /**
+     * 删除内容
+     *
+     * @param name 名称
+     * @return 是否存在并已删除
+     * @throws IOException 删除失败
+     */
+    boolean delete(String name) throws IOException;
+
+    /**
+     * 内容的位置, 用于日志, 如: 文件路径
+     *
+     * @param name 名称
+     */
+    String describe(String name);
+
+    /**
+     * 将内容写入目标通道, 实现可以使用零拷贝的方式传输
+     *
+     * @param name   名称
+     * @param target 目标通道, 调用方负责关闭
+     * @throws java.nio.file.NoSuchFileException 不存在
+     * @throws IOException                       读取或写入失败
+     */
+    default void transferTo(String name, WritableByteChannel target) throws IOException {
+        try (ReadableByteChannel source = Channels.newChannel(open(name))) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            while (source.read(buffer) >= 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+                buffer.clear();
+            }
+        }
+    }
+
+    /**
+     * 检查名称, 不允许越出存储的根目录
+     *
+     * @param name 名称
+     * @return 名称
+     * @throws IllegalArgumentException 名称不合法
+     */
+    static String checkName(String name) {
+        if (name == null || !NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid output name: " + name);
+        }
+        return name;
+    }
+
+    /**
+     * 将文件名转换为合法的单层名称: 替换路径分隔符与控制字符, 以 . 开头时在前面加 _
+     *
+     * @param fileName 文件名, 如: 二维码的文件名
+     * @return 名称
+     */
+    static String safeName(String fileName) {
+        String name = fileName.replaceAll("[\\\\/\\x00-\\x1f]", "_");
+        return name.isEmpty() || name.startsWith(".") ? "_" + name : name;
+    }
+
+    /**
+     * 存储的输出, 写完后调用 {@link #commit()} 使内容可见; 未提交就关闭时丢弃已写入的内容
+     */
+    abstract class Output extends OutputStream {
+        /**
+         * 提交已写入的内容, 提交后不能再写入
+         *
+         * @throws IOException 提交失败
+         */
+        public abstract void commit() throws IOException;
+    }
+}
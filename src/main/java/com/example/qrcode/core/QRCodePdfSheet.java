@@ -0,0 +1,300 @@
+package com.example.qrcode.core;
+
+import com.example.qrcode.core.QRCodeFontRegistry.TextLine;
+import com.example.qrcode.util.PdfWriter;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+
+import java.awt.*;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.*;
+
+/**
+ * 二维码打印页 PDF
+ * <p>
+ * 每页按行列排列多张二维码, 页面排满后立即写入输出流, 内存中只保留当前页面的内容与每个对象的偏移量,
+ * 一个充电站有上千把充电枪时内存占用也保持不变。
+ * 二维码模块输出为合并后的矩形; 文字转换为字形轮廓, 不依赖打印设备上的字体;
+ * 图标与重复出现的文字 (站点名称、底部文字的前缀等) 作为共享对象只写入一次, 各页面直接引用。
+ * <pre>{@code
+ * try (QRCodePdfSheet sheet = new QRCodePdfSheet(output, 3, 4, margin, gap)) {
+ *     for (QRCodeExtraData extraData : extraDataList) {
+ *         QRCodeGenerator.drawQRCodeWithExtraData(text, options, extraData, sheet);
+ *     }
+ * }
+ * }</pre>
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+public final class QRCodePdfSheet implements QRCodeVectorCanvas, AutoCloseable {
+    /**
+     * A4 纸宽度, 单位: 点
+     */
+    public static final float A4_WIDTH = 595.28f;
+    /**
+     * A4 纸高度, 单位: 点
+     */
+    public static final float A4_HEIGHT = 841.89f;
+    /**
+     * 每毫米的点数
+     */
+    public static final float POINTS_PER_MM = 72 / 25.4f;
+    /**
+     * 共享文字对象的数量上限, 超出时最久未使用的文字不再复用, 每把枪都不同的枪码很快会被淘汰
+     */
+    private static final int MAX_SHARED_TEXTS = 512;
+
+    private final PdfWriter pdf;
+    private final int pagesId;
+    private final List<Integer> pageIds = new ArrayList<>();
+    private final int columns;
+    private final int rows;
+    private final float margin;
+    private final float gap;
+    private final Map<BufferedImage, Integer> images = new IdentityHashMap<>();
+    private final Map<String, Integer> texts = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+            return size() > MAX_SHARED_TEXTS;
+        }
+    };
+    /**
+     * 当前页面的内容流与引用的共享对象
+     */
+    private final StringBuilder content = new StringBuilder(64 * 1024);
+    private final Set<Integer> pageObjects = new LinkedHashSet<>();
+    private int pageLabels;
+    private int labelStart = -1;
+    private int labelCount;
+
+    /**
+     * A4 纵向打印页
+     *
+     * @param output  输出流, 关闭打印页时不会关闭输出流
+     * @param columns 每页的列数
+     * @param rows    每页的行数
+     * @param margin  页边距, 单位: 点
+     * @param gap     二维码之间的间距, 单位: 点
+     * @throws IOException 写入失败
+     */
+    public QRCodePdfSheet(OutputStream output, int columns, int rows, float margin, float gap) throws IOException {
+        if (columns <= 0 || rows <= 0) {
+            throw new IllegalArgumentException("Sheet grid must be positive: " + columns + "x" + rows);
+        }
+        this.pdf = new PdfWriter(output);
+        this.pagesId = pdf.reserve();
+        this.columns = columns;
+        this.rows = rows;
+        this.margin = margin;
+        this.gap = gap;
+    }
+
+    /**
+     * 二维码等比缩放到所在的格子中并居中
+     */
+    @Override
+    public void beginLabel(int width, int height) {
+        if (labelStart >= 0) {
+            // 上一张二维码输出失败, 丢弃未完成的内容
+            content.setLength(labelStart);
+        }
+        labelStart = content.length();
+        int column = pageLabels % columns;
+        int row = pageLabels / columns;
+        float cellWidth = (A4_WIDTH - margin * 2 - gap * (columns - 1)) / columns;
+        float cellHeight = (A4_HEIGHT - margin * 2 - gap * (rows - 1)) / rows;
+        float scale = Math.min(cellWidth / width, cellHeight / height);
+        float x = margin + column * (cellWidth + gap) + (cellWidth - width * scale) / 2;
+        float top = A4_HEIGHT - margin - row * (cellHeight + gap) - (cellHeight - height * scale) / 2;
+        // 翻转纵轴, 之后的坐标与图片一致: 以像素为单位, 原点在左上角
+        content.append("q ").append(PdfWriter.number(scale)).append(" 0 0 ").append(PdfWriter.number(-scale)).append(' ')
+                .append(PdfWriter.number(x)).append(' ').append(PdfWriter.number(top)).append(" cm\n");
+    }
+
+    @Override
+    public void modules(ByteMatrix modules, int moduleSize, int offsetX, int offsetY) {
+        content.append("q ").append(moduleSize).append(" 0 0 ").append(moduleSize).append(' ')
+                .append(offsetX).append(' ').append(offsetY).append(" cm\n");
+        QRCodeVectorCanvas.forEachModuleRect(modules, (x, y, width, height) ->
+                content.append(x).append(' ').append(y).append(' ').append(width).append(' ').append(height).append(" re\n"));
+        content.append("f Q\n");
+    }
+
+    /**
+     * 同一图片实例只写入一次, 透明通道作为软蒙版
+     */
+    @Override
+    public void image(BufferedImage image, int x, int y) throws IOException {
+        Integer id = images.get(image);
+        if (id == null) {
+            id = writeImage(image);
+            images.put(image, id);
+        }
+        pageObjects.add(id);
+        // 图片绘制在单位正方形中, 第一行像素在上方, 纵轴已翻转, 需要再翻转回来
+        content.append("q ").append(image.getWidth()).append(" 0 0 ").append(-image.getHeight()).append(' ')
+                .append(x).append(' ').append(y + image.getHeight()).append(" cm /X").append(id).append(" Do Q\n");
+    }
+
+    /**
+     * 文字转换为字形轮廓, 相同字体与内容的文字共享同一个对象
+     */
+    @Override
+    public void text(String text, TextLine line, Font font, float x, float y) throws IOException {
+        String key = font.getFontName() + '\0' + font.getStyle() + '\0' + font.getSize2D() + '\0' + text;
+        Integer id = texts.get(key);
+        if (id == null) {
+            id = writeText(line);
+            texts.put(key, id);
+        }
+        pageObjects.add(id);
+        content.append("q 1 0 0 1 ").append(PdfWriter.number(x)).append(' ').append(PdfWriter.number(y))
+                .append(" cm /X").append(id).append(" Do Q\n");
+    }
+
+    /**
+     * 当前页面排满时立即写入输出流
+     */
+    @Override
+    public void endLabel() throws IOException {
+        content.append("Q\n");
+        labelStart = -1;
+        labelCount++;
+        if (++pageLabels == columns * rows) {
+            finishPage();
+        }
+    }
+
+    /**
+     * 已输出的二维码数量
+     */
+    public int getLabelCount() {
+        return labelCount;
+    }
+
+    /**
+     * 写入最后一页与文档结构, 不关闭输出流
+     *
+     * @throws IOException 写入失败
+     */
+    @Override
+    public void close() throws IOException {
+        if (labelStart >= 0) {
+            content.setLength(labelStart);
+            labelStart = -1;
+        }
+        if (pageLabels > 0 || pageIds.isEmpty()) {
+            finishPage();
+        }
+        StringBuilder kids = new StringBuilder(pageIds.size() * 8);
+        for (int pageId : pageIds) {
+            kids.append(PdfWriter.ref(pageId)).append(' ');
+        }
+        pdf.writeObject(pagesId, "<< /Type /Pages /Kids [" + kids + "] /Count " + pageIds.size() + " >>");
+        pdf.setRoot(pdf.writeObject("<< /Type /Catalog /Pages " + PdfWriter.ref(pagesId) + " >>"));
+        pdf.close();
+    }
+
+    private void finishPage() throws IOException {
+        int contentId = pdf.writeStream("", content.toString().getBytes(StandardCharsets.ISO_8859_1), true);
+        StringBuilder resources = new StringBuilder("<< /XObject << ");
+        for (int id : pageObjects) {
+            resources.append("/X").append(id).append(' ').append(PdfWriter.ref(id)).append(' ');
+        }
+        resources.append(">> >>");
+        pageIds.add(pdf.writeObject("<< /Type /Page /Parent " + PdfWriter.ref(pagesId)
+                + " /MediaBox [0 0 " + PdfWriter.number(A4_WIDTH) + " " + PdfWriter.number(A4_HEIGHT) + "]"
+                + " /Resources " + resources + " /Contents " + PdfWriter.ref(contentId) + " >>"));
+        content.setLength(0);
+        pageObjects.clear();
+        pageLabels = 0;
+        pdf.flush();
+    }
+
+    private int writeImage(BufferedImage image) throws IOException {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] argb = image.getRGB(0, 0, width, height, null, 0, width);
+        byte[] rgb = new byte[argb.length * 3];
+        byte[] alpha = new byte[argb.length];
+        boolean opaque = true;
+        for (int i = 0; i < argb.length; i++) {
+            rgb[i * 3] = (byte) (argb[i] >> 16);
+            rgb[i * 3 + 1] = (byte) (argb[i] >> 8);
+            rgb[i * 3 + 2] = (byte) argb[i];
+            alpha[i] = (byte) (argb[i] >>> 24);
+            opaque &= alpha[i] == (byte) 0xFF;
+        }
+        String size = " /Width " + width + " /Height " + height + " /BitsPerComponent 8";
+        String mask = "";
+        if (!opaque) {
+            int maskId = pdf.writeStream("/Type /XObject /Subtype /Image /ColorSpace /DeviceGray" + size, alpha, true);
+            mask = " /SMask " + PdfWriter.ref(maskId);
+        }
+        return pdf.writeStream("/Type /XObject /Subtype /Image /ColorSpace /DeviceRGB" + size + mask, rgb, true);
+    }
+
+    /**
+     * 文字轮廓写入为表单对象, 以基线起点为原点
+     */
+    private int writeText(TextLine line) throws IOException {
+        Shape outline = line.glyphs().getOutline(0, 0);
+        Rectangle2D bounds = outline.getBounds2D();
+        StringBuilder path = new StringBuilder(4096);
+        float[] coords = new float[6];
+        float currentX = 0;
+        float currentY = 0;
+        for (PathIterator iterator = outline.getPathIterator(null); !iterator.isDone(); iterator.next()) {
+            switch (iterator.currentSegment(coords)) {
+                case PathIterator.SEG_MOVETO -> {
+                    appendPoints(path, coords, 1).append(" m\n");
+                    currentX = coords[0];
+                    currentY = coords[1];
+                }
+                case PathIterator.SEG_LINETO -> {
+                    appendPoints(path, coords, 1).append(" l\n");
+                    currentX = coords[0];
+                    currentY = coords[1];
+                }
+                case PathIterator.SEG_QUADTO -> {
+                    // PDF 没有二次贝塞尔曲线, 转换为等价的三次曲线
+                    float[] cubic = {
+                            currentX + 2 * (coords[0] - currentX) / 3, currentY + 2 * (coords[1] - currentY) / 3,
+                            coords[2] + 2 * (coords[0] - coords[2]) / 3, coords[3] + 2 * (coords[1] - coords[3]) / 3,
+                            coords[2], coords[3]};
+                    appendPoints(path, cubic, 3).append(" c\n");
+                    currentX = coords[2];
+                    currentY = coords[3];
+                }
+                case PathIterator.SEG_CUBICTO -> {
+                    appendPoints(path, coords, 3).append(" c\n");
+                    currentX = coords[4];
+                    currentY = coords[5];
+                }
+                case PathIterator.SEG_CLOSE -> path.append("h\n");
+                default -> throw new IllegalStateException("Unknown path segment");
+            }
+        }
+        path.append(outline.getPathIterator(null).getWindingRule() == PathIterator.WIND_EVEN_ODD ? "f*" : "f");
+        String bbox = "[" + PdfWriter.number(bounds.getMinX()) + " " + PdfWriter.number(bounds.getMinY()) + " "
+                + PdfWriter.number(bounds.getMaxX()) + " " + PdfWriter.number(bounds.getMaxY()) + "]";
+        return pdf.writeStream("/Type /XObject /Subtype /Form /BBox " + bbox,
+                path.toString().getBytes(StandardCharsets.ISO_8859_1), true);
+    }
+
+    private static StringBuilder appendPoints(StringBuilder path, float[] coords, int points) {
+        for (int i = 0; i < points * 2; i++) {
+            if (i > 0) {
+                path.append(' ');
+            }
+            path.append(PdfWriter.number(coords[i]));
+        }
+        return path;
+    }
+}
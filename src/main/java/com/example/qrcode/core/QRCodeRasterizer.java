@@ -0,0 +1,299 @@
+package com.example.qrcode.core;
+
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+
+import java.awt.image.*;
+import java.util.Arrays;
+
+/**
+ * 二维码矩阵光栅化工具
+ * <p>
+ * 按行、按连续色段直接写入图片的 {@link DataBuffer}, 相同的行直接整行复制,
+ * 避免逐像素调用 {@link BufferedImage#setRGB(int, int, int)} 经过 ColorModel 转换。
+ * 支持 {@code TYPE_INT_RGB}/{@code TYPE_INT_ARGB}/{@code TYPE_BYTE_GRAY}/{@code TYPE_BYTE_BINARY},
+ * 其他类型退化为按行调用 {@code setRGB}。
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+public final class QRCodeRasterizer {
+    private static final int BLACK = 0xFF000000;
+    private static final int WHITE = 0xFFFFFFFF;
+
+    private QRCodeRasterizer() {
+    }
+
+    /**
+     * 将二维码矩阵转换为图片
+     *
+     * @param matrix    二维码矩阵
+     * @param imageType 图片类型, 如: {@link BufferedImage#TYPE_BYTE_GRAY}
+     * @return 二维码图片
+     */
+    public static BufferedImage toBufferedImage(BitMatrix matrix, int imageType) {
+        BufferedImage image = new BufferedImage(matrix.getWidth(), matrix.getHeight(), imageType);
+        rasterize(matrix, image, 0, 0);
+        return image;
+    }
+
+    /**
+     * 将二维码矩阵绘制到图片的指定位置
+     *
+     * @param matrix  二维码矩阵
+     * @param image   目标图片
+     * @param offsetX 横向偏移
+     * @param offsetY 纵向偏移
+     */
+    public static void rasterize(BitMatrix matrix, BufferedImage image, int offsetX, int offsetY) {
+        rasterize(new PixelRows(matrix), image, offsetX, offsetY);
+    }
+
+    /**
+     * 将二维码模块矩阵按整数倍放大后绘制到图片的指定位置
+     *
+     * @param modules    二维码模块矩阵, 如: {@code Encoder.encode(...).getMatrix()}
+     * @param moduleSize 每个模块的像素边长
+     * @param image      目标图片
+     * @param offsetX    横向偏移
+     * @param offsetY    纵向偏移
+     * @apiNote 只绘制模块区域, 静默区由调用方填充
+     */
+    public static void rasterize(ByteMatrix modules, int moduleSize, BufferedImage image, int offsetX, int offsetY) {
+        if (moduleSize < 1) {
+            throw new IllegalArgumentException("Module size must be positive: " + moduleSize);
+        }
+        rasterize(new ModuleRows(modules, moduleSize), image, offsetX, offsetY);
+    }
+
+    private static void rasterize(Rows rows, BufferedImage image, int offsetX, int offsetY) {
+        int width = rows.width();
+        int height = rows.height();
+        if (offsetX < 0 || offsetY < 0 || offsetX + width > image.getWidth() || offsetY + height > image.getHeight()) {
+            throw new IllegalArgumentException("QR matrix " + width + "x" + height + " does not fit image "
+                    + image.getWidth() + "x" + image.getHeight() + " at (" + offsetX + ", " + offsetY + ")");
+        }
+        switch (image.getType()) {
+            case BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB -> rasterizeInt(rows, image.getRaster(), offsetX, offsetY);
+            case BufferedImage.TYPE_BYTE_GRAY -> rasterizeByte(rows, image.getRaster(), offsetX, offsetY);
+            case BufferedImage.TYPE_BYTE_BINARY -> {
+                if (image.getColorModel().getPixelSize() != 1) {
+                    rasterizeGeneric(rows, image, offsetX, offsetY);
+                } else {
+                    rasterizeBinary(rows, image.getRaster(), offsetX, offsetY);
+                }
+            }
+            default -> rasterizeGeneric(rows, image, offsetX, offsetY);
+        }
+    }
+
+    private static void rasterizeInt(Rows rows, WritableRaster raster, int offsetX, int offsetY) {
+        int width = rows.width();
+        int[] data = ((DataBufferInt) raster.getDataBuffer()).getData();
+        int stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+        int base = raster.getDataBuffer().getOffset();
+        for (int y = 0; y < rows.height(); y++) {
+            int rowStart = base + (offsetY + y) * stride + offsetX;
+            if (rows.next(y)) {
+                System.arraycopy(data, rowStart - stride, data, rowStart, width);
+                continue;
+            }
+            Arrays.fill(data, rowStart, rowStart + width, WHITE);
+            BitArray row = rows.current();
+            for (int start = row.getNextSet(0); start < width; ) {
+                int end = row.getNextUnset(start);
+                Arrays.fill(data, rowStart + start, rowStart + end, BLACK);
+                start = row.getNextSet(end);
+            }
+        }
+    }
+
+    private static void rasterizeByte(Rows rows, WritableRaster raster, int offsetX, int offsetY) {
+        int width = rows.width();
+        byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+        int stride = ((ComponentSampleModel) raster.getSampleModel()).getScanlineStride();
+        int base = raster.getDataBuffer().getOffset();
+        for (int y = 0; y < rows.height(); y++) {
+            int rowStart = base + (offsetY + y) * stride + offsetX;
+            if (rows.next(y)) {
+                System.arraycopy(data, rowStart - stride, data, rowStart, width);
+                continue;
+            }
+            Arrays.fill(data, rowStart, rowStart + width, (byte) 0xFF);
+            BitArray row = rows.current();
+            for (int start = row.getNextSet(0); start < width; ) {
+                int end = row.getNextUnset(start);
+                Arrays.fill(data, rowStart + start, rowStart + end, (byte) 0);
+                start = row.getNextSet(end);
+            }
+        }
+    }
+
+    /**
+     * 1 位深度图片, 默认调色板中 0 为黑色, 1 为白色
+     */
+    private static void rasterizeBinary(Rows rows, WritableRaster raster, int offsetX, int offsetY) {
+        int width = rows.width();
+        byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+        MultiPixelPackedSampleModel sampleModel = (MultiPixelPackedSampleModel) raster.getSampleModel();
+        int stride = sampleModel.getScanlineStride();
+        int baseBit = raster.getDataBuffer().getOffset() * 8 + sampleModel.getDataBitOffset();
+        for (int y = 0; y < rows.height(); y++) {
+            int rowBit = baseBit + (offsetY + y) * stride * 8 + offsetX;
+            if (rows.next(y) && rowBit % 8 == 0 && width % 8 == 0) {
+                System.arraycopy(data, rowBit / 8 - stride, data, rowBit / 8, width / 8);
+                continue;
+            }
+            fillBits(data, rowBit, width, true);
+            BitArray row = rows.current();
+            for (int start = row.getNextSet(0); start < width; ) {
+                int end = row.getNextUnset(start);
+                fillBits(data, rowBit + start, end - start, false);
+                start = row.getNextSet(end);
+            }
+        }
+    }
+
+    private static void rasterizeGeneric(Rows rows, BufferedImage image, int offsetX, int offsetY) {
+        int width = rows.width();
+        int[] pixels = new int[width];
+        for (int y = 0; y < rows.height(); y++) {
+            if (!rows.next(y)) {
+                Arrays.fill(pixels, WHITE);
+                BitArray row = rows.current();
+                for (int start = row.getNextSet(0); start < width; ) {
+                    int end = row.getNextUnset(start);
+                    Arrays.fill(pixels, start, end, BLACK);
+                    start = row.getNextSet(end);
+                }
+            }
+            image.setRGB(offsetX, offsetY + y, width, 1, pixels, 0, width);
+        }
+    }
+
+    /**
+     * 以 MSB 优先的顺序设置连续的位
+     */
+    private static void fillBits(byte[] data, int bitStart, int length, boolean value) {
+        int bitEnd = bitStart + length;
+        int bit = bitStart;
+        while (bit < bitEnd && (bit & 7) != 0) {
+            setBit(data, bit++, value);
+        }
+        int byteEnd = bitEnd >> 3;
+        if ((bit >> 3) < byteEnd) {
+            Arrays.fill(data, bit >> 3, byteEnd, value ? (byte) 0xFF : 0);
+            bit = byteEnd << 3;
+        }
+        while (bit < bitEnd) {
+            setBit(data, bit++, value);
+        }
+    }
+
+    private static void setBit(byte[] data, int bit, boolean value) {
+        int mask = 0x80 >>> (bit & 7);
+        if (value) {
+            data[bit >> 3] |= (byte) mask;
+        } else {
+            data[bit >> 3] &= (byte) ~mask;
+        }
+    }
+
+    /**
+     * 逐行读取像素行, 并判断当前行是否与上一行相同
+     */
+    private abstract static class Rows {
+        protected BitArray current;
+
+        abstract int width();
+
+        abstract int height();
+
+        /**
+         * 读取第 y 行, 行号必须从 0 开始依次递增
+         *
+         * @return 与上一行完全相同时返回 true, 此时 {@link #current()} 仍为上一行的内容
+         */
+        abstract boolean next(int y);
+
+        BitArray current() {
+            return current;
+        }
+    }
+
+    /**
+     * 按像素存储的矩阵, 如 {@code QRCodeWriter} 的输出
+     */
+    private static final class PixelRows extends Rows {
+        private final BitMatrix matrix;
+        private BitArray previous;
+
+        private PixelRows(BitMatrix matrix) {
+            this.matrix = matrix;
+            this.current = new BitArray(matrix.getWidth());
+            this.previous = new BitArray(matrix.getWidth());
+        }
+
+        @Override
+        int width() {
+            return matrix.getWidth();
+        }
+
+        @Override
+        int height() {
+            return matrix.getHeight();
+        }
+
+        @Override
+        boolean next(int y) {
+            BitArray swap = previous;
+            previous = current;
+            current = matrix.getRow(y, swap);
+            return y > 0 && Arrays.equals(current.getBitArray(), previous.getBitArray());
+        }
+    }
+
+    /**
+     * 按模块存储的矩阵, 每个模块放大为 moduleSize x moduleSize 像素
+     */
+    private static final class ModuleRows extends Rows {
+        private final ByteMatrix modules;
+        private final int moduleSize;
+
+        private ModuleRows(ByteMatrix modules, int moduleSize) {
+            this.modules = modules;
+            this.moduleSize = moduleSize;
+            this.current = new BitArray(modules.getWidth() * moduleSize);
+        }
+
+        @Override
+        int width() {
+            return modules.getWidth() * moduleSize;
+        }
+
+        @Override
+        int height() {
+            return modules.getHeight() * moduleSize;
+        }
+
+        @Override
+        boolean next(int y) {
+            if (y % moduleSize != 0) {
+                return true;
+            }
+            current.clear();
+            byte[] row = modules.getArray()[y / moduleSize];
+            for (int x = 0; x < row.length; x++) {
+                if (row[x] == 1) {
+                    int start = x;
+                    while (x + 1 < row.length && row[x + 1] == 1) {
+                        x++;
+                    }
+                    current.setRange(start * moduleSize, (x + 1) * moduleSize);
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.qrcode.core;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 二维码渲染的准入控制
+ * <p>
+ * 同时渲染的数量受许可数限制, 许可用完时请求在有界队列中等待; 队列已满或等待超时时立即拒绝,
+ * 由调用方返回 429 让客户端稍后重试, 避免突发的批量请求占满 CPU 导致所有请求一起超时。
+ * 单个二维码与批量请求使用各自的准入控制, 批量请求向慢速客户端输出时不会占用单个二维码的许可。
+ * <pre>{@code
+ * try (QRCodeRenderLimiter.Permit permit = limiter.acquire()) {
+ *     render();
+ * }
+ * }</pre>
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+public final class QRCodeRenderLimiter {
+    private final String name;
+    private final int maxConcurrent;
+    private final int queueCapacity;
+    private final long maxWaitNanos;
+    private final int retryAfterSeconds;
+    private final Semaphore permits;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param name              名称, 用于区分监控指标, 如: render、batch
+     * @param maxConcurrent     同时渲染的数量上限
+     * @param queueCapacity     等待队列长度, 为 0 时许可用完立即拒绝
+     * @param maxWaitMillis     在队列中等待的最长时间, 单位: 毫秒
+     * @param retryAfterSeconds 拒绝时建议客户端等待的时间, 单位: 秒
+     */
+    public QRCodeRenderLimiter(String name, int maxConcurrent, int queueCapacity, long maxWaitMillis, int retryAfterSeconds) {
+        if (maxConcurrent <= 0) {
+            throw new IllegalArgumentException("maxConcurrent must be positive: " + maxConcurrent);
+        }
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.queueCapacity = Math.max(0, queueCapacity);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxWaitMillis));
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.permits = new Semaphore(maxConcurrent, true);
+    }
+
+    /**
+     * 获取渲染许可, 用完后调用 {@link Permit#close()} 归还
+     *
+     * @return 渲染许可
+     * @throws RejectedException 等待队列已满、等待超时或线程被中断
+     */
+    public Permit acquire() {
+        long start = System.nanoTime();
+        if (!permits.tryAcquire()) {
+            if (waiting.incrementAndGet() > queueCapacity) {
+                waiting.decrementAndGet();
+                reject(start);
+            }
+            try {
+                if (!permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS)) {
+                    reject(start);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                reject(start);
+            } finally {
+                waiting.decrementAndGet();
+            }
+        }
+        admitted.increment();
+        QRCodeMetrics.recordAdmission(name, start, true);
+        return new Permit(this);
+    }
+
+    /**
+     * 获取准入控制统计信息
+     */
+    public Stats getStats() {
+        return new Stats(maxConcurrent - permits.availablePermits(), waiting.get(), admitted.sum(), rejected.sum());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    private void reject(long start) {
+        rejected.increment();
+        QRCodeMetrics.recordAdmission(name, start, false);
+        throw new RejectedException(retryAfterSeconds);
+    }
+
+    /**
+     * 渲染许可, 同一许可只归还一次
+     */
+    public static final class Permit implements AutoCloseable {
+        private QRCodeRenderLimiter limiter;
+
+        private Permit(QRCodeRenderLimiter limiter) {
+            this.limiter = limiter;
+        }
+
+        @Override
+        public void close() {
+            if (limiter != null) {
+                limiter.permits.release();
+                limiter = null;
+            }
+        }
+    }
+
+    /**
+     * 渲染请求被拒绝
+     */
+    public static final class RejectedException extends RuntimeException {
+        private final int retryAfterSeconds;
+
+        public RejectedException(int retryAfterSeconds) {
+            super("QR code rendering is saturated, retry after " + retryAfterSeconds + "s");
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        /**
+         * 建议客户端等待的时间, 单位: 秒
+         */
+        public int getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+
+    /**
+     * 准入控制统计信息
+     *
+     * @param active   正在渲染的数量
+     * @param waiting  正在等待的数量
+     * @param admitted 获得许可的次数
+     * @param rejected 被拒绝的次数
+     */
+    public record Stats(int active, int waiting, long admitted, long rejected) {
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.qrcode.core;
+
+import com.example.qrcode.util.PngEncoder;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+/**
+ * 二维码图片渲染参数
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+@Getter
+@Setter
+@Accessors(chain = true)
+public class QRCodeRenderOptions {
+    /**
+     * 默认静默区宽度, 单位: 模块
+     */
+    public static final int DEFAULT_QUIET_ZONE = 2;
+
+    /**
+     * 二维码尺寸, 如: 400
+     */
+    private int size;
+    /**
+     * 二维码图标路径, 如: classpath:qr-code-icon/icon_right_angle_1280x1280.png
+     */
+    private String iconPath;
+    /**
+     * 静默区宽度, 单位: 模块
+     */
+    private int quietZone = DEFAULT_QUIET_ZONE;
+    /**
+     * PNG 编码器
+     */
+    private PngEncoder pngEncoder = PngEncoder.DEFAULT;
+    /**
+     * 输出格式
+     */
+    private OutputFormat format = OutputFormat.PNG;
+    /**
+     * SVG 中的文字是否转换为字形轮廓, 转换后不依赖打印设备上的字体, 但文件更大
+     */
+    private boolean outlineText;
+
+    /**
+     * 获取渲染参数实例
+     *
+     * @param size     二维码尺寸
+     * @param iconPath 二维码图标路径
+     */
+    public static QRCodeRenderOptions of(int size, String iconPath) {
+        return new QRCodeRenderOptions().setSize(size).setIconPath(iconPath);
+    }
+
+    /**
+     * 输出格式
+     */
+    @Getter
+    @AllArgsConstructor
+    public enum OutputFormat {
+        /**
+         * PNG 位图
+         */
+        PNG("png", "image/png"),
+        /**
+         * SVG 矢量图, 不经过光栅化与 PNG 压缩, 适合印刷与大幅面标牌
+         */
+        SVG("svg", "image/svg+xml");
+
+        private final String extension;
+        private final String contentType;
+    }
+}
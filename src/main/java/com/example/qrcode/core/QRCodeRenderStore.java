@@ -0,0 +1,364 @@
+package com.example.qrcode.core;
+
+import com.example.qrcode.core.QRCodeRenderOptions.OutputFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * 按内容寻址的二维码图片磁盘存储
+ * <p>
+ * 以渲染输入的摘要为键, 图片保存在 {@code objects/ab/abcdef....png}, 扩展名由图片格式决定, 如: SVG 为 .svg;
+ * 索引保存在内存映射文件 {@code index.bin} 中, 服务重启后可以直接使用之前生成的图片。
+ * <ul>
+ *     <li>写入: 先写入 {@code tmp} 目录并刷盘, 再原子重命名到目标位置, 最后登记索引, 崩溃时不会留下不完整的图片</li>
+ *     <li>淘汰: 总大小或条目数超出上限时, 按最近最少使用淘汰</li>
+ *     <li>恢复: 启动时丢弃图片已不存在的索引, 并收录已重命名但未登记索引的图片; 索引文件损坏或版本不同时按图片文件重建</li>
+ * </ul>
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+public class QRCodeRenderStore implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(QRCodeRenderStore.class);
+
+    private static final int MAGIC = 0x51524958; // QRIX
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 32;
+    private static final int DIGEST_SIZE = 32;
+    /**
+     * 索引槽位: 摘要(32) + 图片大小(8) + 最近访问时间(8) + 图片格式(1) + 填充(7), 图片大小为 0 表示空槽位
+     */
+    private static final int SLOT_SIZE = DIGEST_SIZE + 24;
+    private static final int FORMAT_OFFSET = DIGEST_SIZE + 16;
+
+    private final Path objectsDir;
+    private final Path tmpDir;
+    private final long maxBytes;
+    private final int capacity;
+    private final FileChannel indexChannel;
+    private final MappedByteBuffer index;
+    /**
+     * 按访问顺序排列的条目, 最久未使用的在最前
+     */
+    private final LinkedHashMap<String, Slot> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private long currentBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * 打开或创建存储
+     *
+     * @param root       存储根目录
+     * @param maxBytes   图片总大小上限, 单位: 字节
+     * @param maxEntries 图片数量上限, 决定索引文件大小
+     * @throws IOException 无法创建目录或索引文件
+     */
+    public QRCodeRenderStore(Path root, long maxBytes, int maxEntries) throws IOException {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Max entries must be positive: " + maxEntries);
+        }
+        this.objectsDir = root.resolve("objects");
+        this.tmpDir = root.resolve("tmp");
+        this.maxBytes = maxBytes;
+        Files.createDirectories(objectsDir);
+        Files.createDirectories(tmpDir);
+        cleanTmp();
+
+        Path indexPath = root.resolve("index.bin");
+        this.indexChannel = FileChannel.open(indexPath, CREATE, READ, WRITE);
+        int storedCapacity = readCapacity(indexChannel);
+        if (storedCapacity > 0 && storedCapacity != maxEntries) {
+            log.warn("二维码存储索引容量 {} 与配置 {} 不一致, 沿用索引容量", storedCapacity, maxEntries);
+        }
+        this.capacity = storedCapacity > 0 ? storedCapacity : maxEntries;
+        this.index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * SLOT_SIZE);
+        if (storedCapacity <= 0) {
+            index.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, capacity);
+        }
+        load();
+        log.info("二维码存储已打开: {}, 图片数: {}, 大小: {} 字节", root, entries.size(), currentBytes);
+    }
+
+    /**
+     * 读取图片
+     *
+     * @param key 渲染输入的摘要, 64 位十六进制字符串
+     * @return 图片内容, 不存在时返回 null
+     */
+    public byte[] get(String key) {
+        Slot slot;
+        synchronized (this) {
+            slot = entries.get(key);
+            if (slot == null) {
+                misses++;
+                return null;
+            }
+            slot.lastAccess = System.currentTimeMillis();
+            index.putLong(slotOffset(slot.index) + DIGEST_SIZE + 8, slot.lastAccess);
+            hits++;
+        }
+        long start = System.nanoTime();
+        try {
+            byte[] content = Files.readAllBytes(objectPath(key, slot.format));
+            QRCodeMetrics.record(QRCodeMetrics.Stage.STORE_READ, start);
+            return content;
+        } catch (NoSuchFileException e) {
+            // 读取前刚好被淘汰
+            return null;
+        } catch (IOException e) {
+            log.warn("读取二维码存储失败: {}", key, e);
+            return null;
+        }
+    }
+
+    /**
+     * 保存图片, 已存在时忽略
+     *
+     * @param key     渲染输入的摘要, 64 位十六进制字符串
+     * @param content 图片内容
+     * @param format  图片格式, 决定文件的扩展名
+     * @throws IOException 写入失败
+     */
+    public void put(String key, byte[] content, OutputFormat format) throws IOException {
+        HexFormat.of().parseHex(key); // 校验键的格式, 防止路径穿越
+        if (key.length() != DIGEST_SIZE * 2 || content.length == 0 || content.length > maxBytes) {
+            return;
+        }
+        synchronized (this) {
+            if (entries.containsKey(key)) {
+                return;
+            }
+        }
+        long start = System.nanoTime();
+        Path target = objectPath(key, format);
+        Files.createDirectories(target.getParent());
+        Path tmp = Files.createTempFile(tmpDir, key, ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(content);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        QRCodeMetrics.record(QRCodeMetrics.Stage.STORE_WRITE, start);
+        synchronized (this) {
+            if (!entries.containsKey(key)) {
+                register(key, content.length, System.currentTimeMillis(), format);
+            }
+        }
+    }
+
+    /**
+     * 删除图片, 如: 解码校验失败
+     *
+     * @param key 渲染输入的摘要, 64 位十六进制字符串
+     * @return 是否存在并已删除
+     */
+    public synchronized boolean remove(String key) {
+        Slot slot = entries.remove(key);
+        if (slot == null) {
+            return false;
+        }
+        release(key, slot);
+        return true;
+    }
+
+    /**
+     * 获取存储统计信息
+     */
+    public synchronized Stats getStats() {
+        return new Stats(entries.size(), capacity, currentBytes, maxBytes, hits, misses, evictions);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        index.force();
+        indexChannel.close();
+    }
+
+    /**
+     * 登记索引, 必要时先淘汰最久未使用的图片
+     */
+    private void register(String key, long size, long lastAccess, OutputFormat format) {
+        while (!entries.isEmpty() && (freeSlots.isEmpty() || currentBytes + size > maxBytes)) {
+            evictEldest();
+        }
+        int slotIndex = freeSlots.pop();
+        int offset = slotOffset(slotIndex);
+        index.put(offset, HexFormat.of().parseHex(key));
+        index.putLong(offset + DIGEST_SIZE + 8, lastAccess);
+        index.put(offset + FORMAT_OFFSET, (byte) format.ordinal());
+        // 最后写入大小, 大小非 0 即表示槽位有效
+        index.putLong(offset + DIGEST_SIZE, size);
+        entries.put(key, new Slot(slotIndex, size, lastAccess, format));
+        currentBytes += size;
+    }
+
+    private void evictEldest() {
+        Iterator<Map.Entry<String, Slot>> iterator = entries.entrySet().iterator();
+        Map.Entry<String, Slot> eldest = iterator.next();
+        iterator.remove();
+        release(eldest.getKey(), eldest.getValue());
+        evictions++;
+    }
+
+    /**
+     * 释放已从 entries 中移除的图片的槽位与文件
+     */
+    private void release(String key, Slot slot) {
+        // 先作废索引再删除文件, 崩溃时最多留下一个会在启动时被重新收录的文件
+        index.putLong(slotOffset(slot.index) + DIGEST_SIZE, 0L);
+        freeSlots.push(slot.index);
+        currentBytes -= slot.size;
+        try {
+            Files.deleteIfExists(objectPath(key, slot.format));
+        } catch (IOException e) {
+            log.warn("删除二维码存储文件失败: {}", key, e);
+        }
+    }
+
+    private void load() throws IOException {
+        List<Map.Entry<String, Slot>> loaded = new ArrayList<>();
+        byte[] digest = new byte[DIGEST_SIZE];
+        for (int i = capacity - 1; i >= 0; i--) {
+            int offset = slotOffset(i);
+            long size = index.getLong(offset + DIGEST_SIZE);
+            if (size <= 0) {
+                freeSlots.push(i);
+                continue;
+            }
+            index.get(offset, digest);
+            String key = HexFormat.of().formatHex(digest);
+            int ordinal = index.get(offset + FORMAT_OFFSET);
+            OutputFormat format = ordinal >= 0 && ordinal < OutputFormat.values().length ? OutputFormat.values()[ordinal] : null;
+            if (format == null || !Files.exists(objectPath(key, format))) {
+                index.putLong(offset + DIGEST_SIZE, 0L);
+                freeSlots.push(i);
+                continue;
+            }
+            loaded.add(Map.entry(key, new Slot(i, size, index.getLong(offset + DIGEST_SIZE + 8), format)));
+        }
+        loaded.sort(Comparator.comparingLong(entry -> entry.getValue().lastAccess));
+        for (Map.Entry<String, Slot> entry : loaded) {
+            entries.put(entry.getKey(), entry.getValue());
+            currentBytes += entry.getValue().size;
+        }
+        adoptOrphans();
+        while (currentBytes > maxBytes && !entries.isEmpty()) {
+            evictEldest();
+        }
+    }
+
+    /**
+     * 收录已重命名到目标位置、但崩溃前未登记索引的图片
+     */
+    private void adoptOrphans() throws IOException {
+        try (Stream<Path> files = Files.walk(objectsDir, 2)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                String name = file.getFileName().toString();
+                int dot = name.lastIndexOf('.');
+                String key = dot < 0 ? name : name.substring(0, dot);
+                OutputFormat format = dot < 0 ? null : formatOf(name.substring(dot + 1));
+                if (format != null && entries.containsKey(key) && entries.get(key).format == format) {
+                    continue;
+                }
+                if (format == null || entries.containsKey(key) || key.length() != DIGEST_SIZE * 2
+                        || !key.chars().allMatch(ch -> Character.digit(ch, 16) >= 0)) {
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                register(key, Files.size(file), Files.getLastModifiedTime(file).toMillis(), format);
+            }
+        }
+    }
+
+    private void cleanTmp() throws IOException {
+        try (Stream<Path> files = Files.list(tmpDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private static int readCapacity(FileChannel channel) throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            return 0;
+        }
+        ByteBuffer header = ByteBuffer.allocate(12);
+        channel.read(header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Unrecognized QR code store index format");
+        }
+        if (header.getInt() != VERSION) {
+            // 旧版本的索引: 清空后由 adoptOrphans 按图片文件重建
+            log.info("二维码存储索引版本不同, 按图片文件重建索引");
+            channel.truncate(0);
+            return 0;
+        }
+        return header.getInt();
+    }
+
+    private Path objectPath(String key, OutputFormat format) {
+        return objectsDir.resolve(key.substring(0, 2)).resolve(key + "." + format.getExtension());
+    }
+
+    private static OutputFormat formatOf(String extension) {
+        for (OutputFormat format : OutputFormat.values()) {
+            if (format.getExtension().equals(extension)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    private static int slotOffset(int slotIndex) {
+        return HEADER_SIZE + slotIndex * SLOT_SIZE;
+    }
+
+    private static final class Slot {
+        private final int index;
+        private final long size;
+        private final OutputFormat format;
+        private long lastAccess;
+
+        private Slot(int index, long size, long lastAccess, OutputFormat format) {
+            this.index = index;
+            this.size = size;
+            this.lastAccess = lastAccess;
+            this.format = format;
+        }
+    }
+
+    /**
+     * 存储统计信息
+     *
+     * @param size      图片数
+     * @param capacity  图片数量上限
+     * @param bytes     已使用的容量, 单位: 字节
+     * @param maxBytes  容量上限, 单位: 字节
+     * @param hits      命中次数
+     * @param misses    未命中次数
+     * @param evictions 淘汰次数
+     */
+    public record Stats(int size, int capacity, long bytes, long maxBytes, long hits, long misses, long evictions) {
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.qrcode.core;
+
+import com.example.qrcode.core.QRCodeFontRegistry.TextLine;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+/**
+ * 按比例绘制到位图画布, 用于从同一份布局生成不同分辨率的图片
+ * <p>
+ * 二维码模块的边缘对齐到像素, 不产生灰边; 文字按字形轮廓缩放, 不重新排版; 图标以双三次插值缩放。
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+final class QRCodeScaledCanvas implements QRCodeVectorCanvas {
+    private final Graphics2D g2d;
+    private final double scale;
+
+    /**
+     * @param g2d   画布的 Graphics2D, 变换需为单位矩阵, 画布尺寸为布局尺寸乘以 scale
+     * @param scale 缩放比例
+     */
+    QRCodeScaledCanvas(Graphics2D g2d, double scale) {
+        this.g2d = g2d;
+        this.scale = scale;
+    }
+
+    /**
+     * 画布尺寸, 与 {@link #beginLabel} 使用相同的取整方式
+     */
+    static int scaledSize(int size, double scale) {
+        return Math.max(1, (int) Math.round(size * scale));
+    }
+
+    @Override
+    public void beginLabel(int width, int height) {
+        g2d.setColor(Color.WHITE);
+        g2d.fillRect(0, 0, scaledSize(width, scale), scaledSize(height, scale));
+    }
+
+    /**
+     * 每个矩形的边缘单独取整, 相邻矩形的公共边取整结果相同, 不会出现缝隙或重叠
+     */
+    @Override
+    public void modules(ByteMatrix modules, int moduleSize, int offsetX, int offsetY) {
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+        g2d.setColor(Color.BLACK);
+        QRCodeVectorCanvas.forEachModuleRect(modules, (x, y, width, height) -> {
+            int left = snap(offsetX + x * moduleSize);
+            int top = snap(offsetY + y * moduleSize);
+            int right = snap(offsetX + (x + width) * moduleSize);
+            int bottom = snap(offsetY + (y + height) * moduleSize);
+            g2d.fillRect(left, top, right - left, bottom - top);
+        });
+    }
+
+    @Override
+    public void image(BufferedImage image, int x, int y) {
+        int left = snap(x);
+        int top = snap(y);
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g2d.drawImage(image, left, top, snap(x + image.getWidth()) - left, snap(y + image.getHeight()) - top, null);
+    }
+
+    @Override
+    public void text(String text, TextLine line, Font font, float x, float y) {
+        AffineTransform transform = g2d.getTransform();
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g2d.setColor(Color.BLACK);
+        try {
+            g2d.scale(scale, scale);
+            line.draw(g2d, x, y);
+        } finally {
+            g2d.setTransform(transform);
+        }
+    }
+
+    @Override
+    public void endLabel() {
+    }
+
+    private int snap(int value) {
+        return (int) Math.round(value * scale);
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.qrcode.core;
+
+import com.example.qrcode.core.QRCodeFontRegistry.TextLine;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.geom.PathIterator;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * 二维码 SVG 矢量图输出
+ * <p>
+ * 二维码模块按行合并为连续色段, 内容相同的相邻行再合并为一个矩形, 整个二维码只输出一个 path;
+ * 文字输出为 text 元素, 或转换为字形轮廓, 不依赖打印设备上的字体; 图标以 PNG 格式内嵌一次。
+ * 输出的大小只取决于二维码内容, 与打印尺寸无关, 任意缩放都不会失真。
+ * <pre>{@code
+ * QRCodeSvgWriter svg = new QRCodeSvgWriter(false);
+ * QRCodeGenerator.drawQRCodeWithExtraData(text, options, extraData, svg);
+ * svg.writeTo(output);
+ * }</pre>
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+public final class QRCodeSvgWriter implements QRCodeVectorCanvas {
+    /**
+     * 图标编码后的 data URI, 图标来自 {@link QRCodeIconCache} 的共享实例, 以图片实例为键
+     */
+    private static final Map<BufferedImage, String> IMAGE_DATA = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final StringBuilder body = new StringBuilder(4096);
+    private final boolean outlineText;
+    private int width;
+    private int height;
+
+    /**
+     * @param outlineText 是否将文字转换为字形轮廓
+     */
+    public QRCodeSvgWriter(boolean outlineText) {
+        this.outlineText = outlineText;
+    }
+
+    /**
+     * 一个 SVG 文档只包含一张二维码
+     */
+    @Override
+    public void beginLabel(int width, int height) {
+        if (this.width > 0) {
+            throw new IllegalStateException("SVG document already contains a label");
+        }
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * 二维码模块的坐标以模块为单位, 再整体缩放到像素尺寸
+     */
+    @Override
+    public void modules(ByteMatrix modules, int moduleSize, int offsetX, int offsetY) {
+        body.append("<path transform=\"translate(").append(offsetX).append(' ').append(offsetY)
+                .append(") scale(").append(moduleSize).append(")\" d=\"");
+        QRCodeVectorCanvas.forEachModuleRect(modules, (x, y, width, height) -> body.append('M').append(x).append(' ').append(y)
+                .append('h').append(width).append('v').append(height).append('h').append(-width).append('z'));
+        body.append("\"/>\n");
+    }
+
+    /**
+     * 同一图片实例只编码一次
+     */
+    @Override
+    public void image(BufferedImage image, int x, int y) throws IOException {
+        String data;
+        try {
+            data = IMAGE_DATA.computeIfAbsent(image, QRCodeSvgWriter::toDataUri);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        body.append("<image x=\"").append(x).append("\" y=\"").append(y)
+                .append("\" width=\"").append(image.getWidth()).append("\" height=\"").append(image.getHeight())
+                .append("\" href=\"").append(data).append("\"/>\n");
+    }
+
+    /**
+     * 输出为 text 元素时以 textLength 固定文字宽度, 客户端缺少对应字体时排版也不会错位
+     */
+    @Override
+    public void text(String text, TextLine line, Font font, float x, float y) {
+        if (outlineText) {
+            body.append("<path d=\"");
+            appendPath(line.glyphs().getOutline(x, y).getPathIterator(null));
+            body.append("\"/>\n");
+            return;
+        }
+        body.append("<text x=\"").append(format(x)).append("\" y=\"").append(format(y))
+                .append("\" font-family=\"");
+        escape(font.getFamily());
+        body.append(", sans-serif\" font-size=\"").append(format(font.getSize2D())).append('"');
+        if (font.isBold()) {
+            body.append(" font-weight=\"bold\"");
+        }
+        body.append(" textLength=\"").append(line.width()).append("\">");
+        escape(text);
+        body.append("</text>\n");
+    }
+
+    @Override
+    public void endLabel() {
+    }
+
+    /**
+     * 写入完整的 SVG 文档
+     *
+     * @param output 输出流, 调用方负责关闭
+     * @throws IOException 写入失败
+     */
+    public void writeTo(OutputStream output) throws IOException {
+        writeTo(output, 1);
+    }
+
+    /**
+     * 写入完整的 SVG 文档, 只有 width 与 height 按比例缩放, 内容与 viewBox 不变
+     *
+     * @param output 输出流, 调用方负责关闭
+     * @param scale  缩放比例
+     * @throws IOException 写入失败
+     */
+    public void writeTo(OutputStream output, double scale) throws IOException {
+        String header = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"" + format((float) (width * scale))
+                + "\" height=\"" + format((float) (height * scale)) + "\" viewBox=\"0 0 " + width + " " + height + "\" shape-rendering=\"crispEdges\">\n"
+                + "<rect width=\"100%\" height=\"100%\" fill=\"#fff\"/>\n"
+                + "<g fill=\"#000\" xml:space=\"preserve\">\n";
+        output.write(header.getBytes(StandardCharsets.UTF_8));
+        output.write(body.toString().getBytes(StandardCharsets.UTF_8));
+        output.write("</g>\n</svg>\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 文字轮廓的路径, 坐标保留两位小数
+     */
+    private void appendPath(PathIterator path) {
+        float[] coords = new float[6];
+        for (; !path.isDone(); path.next()) {
+            switch (path.currentSegment(coords)) {
+                case PathIterator.SEG_MOVETO -> appendPoints('M', coords, 1);
+                case PathIterator.SEG_LINETO -> appendPoints('L', coords, 1);
+                case PathIterator.SEG_QUADTO -> appendPoints('Q', coords, 2);
+                case PathIterator.SEG_CUBICTO -> appendPoints('C', coords, 3);
+                case PathIterator.SEG_CLOSE -> body.append('Z');
+                default -> throw new IllegalStateException("Unknown path segment");
+            }
+        }
+    }
+
+    private void appendPoints(char command, float[] coords, int points) {
+        body.append(command);
+        for (int i = 0; i < points * 2; i++) {
+            if (i > 0) {
+                body.append(' ');
+            }
+            body.append(format(coords[i]));
+        }
+    }
+
+    private void escape(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<' -> body.append("&lt;");
+                case '>' -> body.append("&gt;");
+                case '&' -> body.append("&amp;");
+                case '"' -> body.append("&quot;");
+                default -> {
+                    // XML 1.0 不允许的控制字符直接丢弃
+                    if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') {
+                        body.append(c);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 保留两位小数并去掉末尾的 0
+     */
+    private static String format(float value) {
+        long hundredths = Math.round(value * 100.0);
+        if (hundredths % 100 == 0) {
+            return Long.toString(hundredths / 100);
+        }
+        String text = String.valueOf(hundredths / 100.0);
+        return text.endsWith("0") ? text.substring(0, text.length() - 1) : text;
+    }
+
+    private static String toDataUri(BufferedImage image) {
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream(8 * 1024);
+            ImageIO.write(image, "png", output);
+            return "data:image/png;base64," + Base64.getEncoder().encodeToString(output.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
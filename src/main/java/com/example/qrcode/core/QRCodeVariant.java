@@ -0,0 +1,41 @@
+package com.example.qrcode.core;
+
+import com.example.qrcode.core.QRCodeRenderOptions.OutputFormat;
+
+/**
+ * 二维码图片的一种输出规格, 如: 门户缩略图、接口使用的 400 像素图片、打印使用的高分辨率图片
+ *
+ * @param size   二维码尺寸, 整张图片按 {@link QRCodeRenderOptions#getSize()} 的布局等比缩放
+ * @param format 输出格式
+ * @author weasley
+ * @version 1.0.0
+ */
+public record QRCodeVariant(int size, OutputFormat format) {
+
+    public QRCodeVariant {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Variant size must be positive: " + size);
+        }
+        if (format == null) {
+            throw new IllegalArgumentException("Variant format must not be null");
+        }
+    }
+
+    /**
+     * PNG 格式的输出规格
+     *
+     * @param size 二维码尺寸
+     */
+    public static QRCodeVariant png(int size) {
+        return new QRCodeVariant(size, OutputFormat.PNG);
+    }
+
+    /**
+     * SVG 格式的输出规格
+     *
+     * @param size 二维码尺寸, 只影响 SVG 的 width 与 height
+     */
+    public static QRCodeVariant svg(int size) {
+        return new QRCodeVariant(size, OutputFormat.SVG);
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.qrcode.core;
+
+import com.example.qrcode.core.QRCodeFontRegistry.TextLine;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 二维码图片的矢量输出目标, 坐标以像素为单位, 原点在左上角
+ * <p>
+ * {@link QRCodeGenerator#drawQRCodeWithExtraData} 按背景、二维码模块、图标、文字的顺序输出一张二维码,
+ * 实现类决定输出格式, 如: {@link QRCodeSvgWriter}、{@link QRCodePdfSheet}。
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+public interface QRCodeVectorCanvas {
+    /**
+     * 开始输出一张二维码, 背景为白色
+     *
+     * @param width  宽度
+     * @param height 高度
+     * @throws IOException 写入失败
+     */
+    void beginLabel(int width, int height) throws IOException;
+
+    /**
+     * 输出二维码模块
+     *
+     * @param modules    二维码模块矩阵
+     * @param moduleSize 每个模块的像素边长
+     * @param offsetX    横向偏移
+     * @param offsetY    纵向偏移
+     * @throws IOException 写入失败
+     */
+    void modules(ByteMatrix modules, int moduleSize, int offsetX, int offsetY) throws IOException;
+
+    /**
+     * 输出图片, 如: {@link QRCodeIconCache#getIcon} 返回的图标
+     *
+     * @param image 图片, 同一实例可以只内嵌一次
+     * @param x     左上角横坐标
+     * @param y     左上角纵坐标
+     * @throws IOException 写入失败
+     */
+    void image(BufferedImage image, int x, int y) throws IOException;
+
+    /**
+     * 输出一行文字, 与 {@link TextLine#draw} 的位置一致
+     *
+     * @param text 文字内容
+     * @param line 文字排版的结果, 决定文字宽度与轮廓
+     * @param font 文字的字体
+     * @param x    基线起点横坐标
+     * @param y    基线纵坐标
+     * @throws IOException 写入失败
+     */
+    void text(String text, TextLine line, Font font, float x, float y) throws IOException;
+
+    /**
+     * 结束输出一张二维码
+     *
+     * @throws IOException 写入失败
+     */
+    void endLabel() throws IOException;
+
+    /**
+     * 将二维码模块合并为矩形: 每行按连续色段合并, 内容相同的相邻行再合并为一个矩形
+     *
+     * @param modules  二维码模块矩阵
+     * @param consumer 矩形的处理逻辑, 坐标与尺寸以模块为单位
+     */
+    static void forEachModuleRect(ByteMatrix modules, ModuleRectConsumer consumer) {
+        byte[][] rows = modules.getArray();
+        for (int y = 0; y < rows.length; ) {
+            int rowsHigh = 1;
+            while (y + rowsHigh < rows.length && Arrays.equals(rows[y], rows[y + rowsHigh])) {
+                rowsHigh++;
+            }
+            byte[] row = rows[y];
+            for (int x = 0; x < row.length; x++) {
+                if (row[x] != 1) {
+                    continue;
+                }
+                int start = x;
+                while (x + 1 < row.length && row[x + 1] == 1) {
+                    x++;
+                }
+                consumer.accept(start, y, x + 1 - start, rowsHigh);
+            }
+            y += rowsHigh;
+        }
+    }
+
+    /**
+     * 二维码模块矩形的处理逻辑
+     */
+    @FunctionalInterface
+    interface ModuleRectConsumer {
+        void accept(int x, int y, int width, int height);
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.qrcode.core;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeReader;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 二维码图片的解码校验
+ * <p>
+ * 用 ZXing 的 {@link QRCodeReader} 解码生成的图片, 并与编码的内容比较, 发现图标遮挡过多模块等无法扫描的二维码。
+ * 解码不使用 TRY_HARDER, 与手机扫码的条件接近。
+ * 交互请求按较低的比例抽样, 在独立的校验线程池中异步执行, 不影响响应时间; 队列已满时直接丢弃, 只记录指标。
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+public final class QRCodeVerifier implements AutoCloseable {
+    private static final Map<DecodeHintType, Object> HINTS = Map.of(DecodeHintType.CHARACTER_SET, StandardCharsets.UTF_8.name());
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param threads       校验线程数
+     * @param queueCapacity 等待校验的队列长度
+     */
+    public QRCodeVerifier(int threads, int queueCapacity) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "qrcode-verify-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 按比例抽样
+     *
+     * @param rate 抽样比例, 0 ~ 1, 大于等于 1 时全部校验
+     * @return 是否需要校验
+     */
+    public static boolean sample(double rate) {
+        return rate >= 1 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    /**
+     * 解码校验二维码图片
+     *
+     * @param image        二维码图片
+     * @param expectedText 编码的内容
+     * @return 校验结果
+     */
+    public static Outcome verify(BufferedImage image, String expectedText) {
+        long start = System.nanoTime();
+        Outcome outcome;
+        try {
+            BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(new BufferedImageLuminanceSource(image)));
+            Result result = new QRCodeReader().decode(bitmap, HINTS);
+            outcome = expectedText.equals(result.getText()) ? Outcome.OK : Outcome.MISMATCH;
+        } catch (ReaderException e) {
+            outcome = Outcome.UNREADABLE;
+        }
+        QRCodeMetrics.recordVerify(start, outcome);
+        return outcome;
+    }
+
+    /**
+     * 解码校验 PNG 图片, 同时校验 PNG 编码
+     *
+     * @param png          PNG 图片内容
+     * @param expectedText 编码的内容
+     * @return 校验结果
+     * @throws IOException 图片读取失败
+     */
+    public static Outcome verify(byte[] png, String expectedText) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        if (image == null) {
+            throw new IOException("Unsupported image format");
+        }
+        return verify(image, expectedText);
+    }
+
+    /**
+     * 在校验线程池中异步校验 PNG 图片
+     *
+     * @param png          PNG 图片内容, 校验完成前不得修改
+     * @param expectedText 编码的内容
+     * @param callback     校验结果的处理逻辑, 在校验线程中执行
+     * @return 是否已提交, 队列已满时返回 false
+     */
+    public boolean verifyAsync(byte[] png, String expectedText, Consumer<Outcome> callback) {
+        try {
+            executor.execute(() -> {
+                Outcome outcome;
+                try {
+                    outcome = verify(png, expectedText);
+                } catch (IOException e) {
+                    outcome = Outcome.UNREADABLE;
+                    QRCodeMetrics.recordVerify(System.nanoTime(), outcome);
+                }
+                callback.accept(outcome);
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            QRCodeMetrics.recordVerifyDropped();
+            return false;
+        }
+    }
+
+    /**
+     * 等待校验的数量
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * 关闭校验线程池, 不再等待队列中的校验
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 校验结果
+     */
+    @Getter
+    @AllArgsConstructor
+    public enum Outcome {
+        /**
+         * 解码成功且内容一致
+         */
+        OK("ok"),
+        /**
+         * 解码成功但内容不一致
+         */
+        MISMATCH("mismatch"),
+        /**
+         * 无法解码
+         */
+        UNREADABLE("unreadable");
+
+        private final String tag;
+    }
+}
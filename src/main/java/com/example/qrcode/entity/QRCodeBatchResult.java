@@ -0,0 +1,46 @@
+package com.example.qrcode.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+import java.io.Serializable;
+
+/**
+ * 批量生成二维码时单个二维码的处理结果
+ *
+ * @author weasley
+ */
+@Getter
+@Setter
+@Accessors(chain = true)
+public class QRCodeBatchResult implements Serializable {
+    /**
+     * 在请求列表中的下标, 从 0 开始
+     */
+    private int index;
+    /**
+     * 枪码，e.g: 202309-330102-100014-1003-01
+     */
+    private String gunCode;
+    /**
+     * 二维码文件名, 即压缩包中的条目名称
+     */
+    private String fileName;
+    /**
+     * 是否生成成功
+     */
+    private boolean success;
+    /**
+     * 图片大小, 单位: 字节
+     */
+    private long size;
+    /**
+     * 解码校验是否通过, 未抽中校验时为 null
+     */
+    private Boolean verified;
+    /**
+     * 失败原因
+     */
+    private String error;
+}
@@ -0,0 +1,34 @@
+package com.example.qrcode.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+import java.io.Serializable;
+
+/**
+ * 批量导入任务的请求
+ *
+ * @author weasley
+ */
+@Getter
+@Setter
+@Accessors(chain = true)
+public class QRCodeImportRequest implements Serializable {
+    /**
+     * 输入文件, 相对于导入根目录的路径, e.g: station-export.csv
+     */
+    private String input;
+    /**
+     * 输出目录, 输出存储中的名称, 同一输出目录再次提交时从检查点继续, e.g: station-export
+     */
+    private String output;
+    /**
+     * 输入文件格式, csv 或 jsonl, 为空时按扩展名推断
+     */
+    private String format;
+    /**
+     * 是否输出为 ZIP 分卷, 否则每个二维码输出为单独的图片文件
+     */
+    private boolean zip;
+}
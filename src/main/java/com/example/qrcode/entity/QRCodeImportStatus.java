@@ -0,0 +1,62 @@
+package com.example.qrcode.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+import java.io.Serializable;
+
+/**
+ * 批量导入任务的进度
+ *
+ * @author weasley
+ */
+@Getter
+@Setter
+@Accessors(chain = true)
+public class QRCodeImportStatus implements Serializable {
+    /**
+     * 任务编号
+     */
+    private String jobId;
+    /**
+     * 任务状态: RUNNING、COMPLETED、FAILED、CANCELLED
+     */
+    private String state;
+    /**
+     * 输入文件
+     */
+    private String input;
+    /**
+     * 输出目录, 输出存储中的名称
+     */
+    private String output;
+    /**
+     * 已处理的记录数, 包括之前中断前已完成的部分
+     */
+    private long records;
+    /**
+     * 生成失败的记录数
+     */
+    private long failed;
+    /**
+     * 已读取的字节数
+     */
+    private long bytesRead;
+    /**
+     * 输入文件的字节数
+     */
+    private long totalBytes;
+    /**
+     * 本次运行的吞吐量, 单位: 张/秒
+     */
+    private double labelsPerSecond;
+    /**
+     * 按本次运行的读取速度估算的剩余时间, 单位: 秒, 无法估算时为 null
+     */
+    private Long etaSeconds;
+    /**
+     * 失败原因
+     */
+    private String error;
+}
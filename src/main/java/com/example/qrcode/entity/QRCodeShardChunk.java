@@ -0,0 +1,84 @@
+package com.example.qrcode.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+import java.io.Serializable;
+
+/**
+ * 分片批量任务中的一个分片, 即输入文件中一段连续的记录
+ *
+ * @author weasley
+ */
+@Getter
+@Setter
+@Accessors(chain = true)
+public class QRCodeShardChunk implements Serializable {
+    /**
+     * 所属任务编号
+     */
+    private String jobId;
+    /**
+     * 分片序号, 从 0 开始
+     */
+    private int index;
+    /**
+     * 第一条记录在输入文件中的字节偏移量
+     */
+    private long startOffset;
+    /**
+     * 最后一条记录结束时的字节偏移量
+     */
+    private long endOffset;
+    /**
+     * 第一条记录在输入文件中的序号
+     */
+    private long firstRecord;
+    /**
+     * 记录数量
+     */
+    private int records;
+    /**
+     * 分片状态
+     */
+    private State state = State.PENDING;
+    /**
+     * 持有租约的实例
+     */
+    private String owner;
+    /**
+     * 租约到期时间, 单位: 毫秒
+     */
+    private long leaseExpiresAt;
+    /**
+     * 领取次数, 每次领取加 1, 与 owner 一起标识一次租约; 达到上限后分片标记为失败, 不再领取
+     */
+    private int attempts;
+    /**
+     * 生成失败的记录数, 完成后记录
+     */
+    private long failed;
+
+    /**
+     * 分片状态
+     */
+    public enum State {
+        /**
+         * 等待领取
+         */
+        PENDING,
+        /**
+         * 已被实例领取, 租约到期未续约时可以被其他实例重新领取
+         */
+        LEASED,
+        /**
+         * 已完成
+         */
+        DONE,
+        /**
+         * 领取次数达到上限仍未完成, 不再领取
+         */
+        FAILED
+    }
+}
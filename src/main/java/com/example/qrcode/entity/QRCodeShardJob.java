@@ -0,0 +1,66 @@
+package com.example.qrcode.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+import java.io.Serializable;
+
+/**
+ * 分片批量任务, 保存在共享任务存储中, 由所有实例共同执行
+ *
+ * @author weasley
+ */
+@Getter
+@Setter
+@Accessors(chain = true)
+public class QRCodeShardJob implements Serializable {
+    /**
+     * 任务编号
+     */
+    private String jobId;
+    /**
+     * 输入文件的绝对路径, 所有实例都必须能够访问
+     */
+    private String input;
+    /**
+     * 输出在输出存储中的目录名称, e.g: station-export
+     */
+    private String output;
+    /**
+     * 输入文件格式, CSV 或 JSONL
+     */
+    private String format;
+    /**
+     * 记录总数, 切分期间随切分进度增加
+     */
+    private long records;
+    /**
+     * 分片数量, 切分期间随切分进度增加
+     */
+    private int chunks;
+    /**
+     * 创建时间, 单位: 毫秒
+     */
+    private long createdAt;
+    /**
+     * 是否正在切分输入文件; 切分由执行线程领取后进行, 已切分出的分片立即可以被领取
+     */
+    private boolean indexing;
+    /**
+     * 持有切分租约的实例
+     */
+    private String indexOwner;
+    /**
+     * 切分租约到期时间, 单位: 毫秒
+     */
+    private long indexLeaseExpiresAt;
+    /**
+     * 切分的领取次数, 与 indexOwner 一起标识一次租约
+     */
+    private int indexAttempts;
+    /**
+     * 切分失败的原因, 切分失败时只执行已切分出的分片
+     */
+    private String error;
+}
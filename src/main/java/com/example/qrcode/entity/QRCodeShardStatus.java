@@ -0,0 +1,75 @@
+package com.example.qrcode.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 分片批量任务的进度
+ *
+ * @author weasley
+ */
+@Getter
+@Setter
+@Accessors(chain = true)
+public class QRCodeShardStatus implements Serializable {
+    /**
+     * 任务编号
+     */
+    private String jobId;
+    /**
+     * 输入文件
+     */
+    private String input;
+    /**
+     * 输出目录
+     */
+    private String output;
+    /**
+     * 是否正在切分输入文件, 切分完成前记录总数与分片数量随切分进度增加
+     */
+    private boolean indexing;
+    /**
+     * 记录总数
+     */
+    private long records;
+    /**
+     * 已完成的记录数
+     */
+    private long completedRecords;
+    /**
+     * 生成失败的记录数, 包括失败分片中的全部记录
+     */
+    private long failed;
+    /**
+     * 分片数量
+     */
+    private int chunks;
+    /**
+     * 等待领取的分片数量
+     */
+    private int pendingChunks;
+    /**
+     * 执行中的分片数量
+     */
+    private int leasedChunks;
+    /**
+     * 已完成的分片数量
+     */
+    private int doneChunks;
+    /**
+     * 领取次数达到上限仍未完成的分片数量
+     */
+    private int failedChunks;
+    /**
+     * 当前持有租约的实例
+     */
+    private List<String> owners;
+    /**
+     * 切分输入文件失败的原因
+     */
+    private String error;
+}
@@ -0,0 +1,289 @@
+package com.example.qrcode.service;
+
+import com.example.qrcode.config.QRCodeProperties;
+import com.example.qrcode.core.QRCodeGenerator;
+import com.example.qrcode.core.QRCodeMetrics;
+import com.example.qrcode.core.QRCodePdfSheet;
+import com.example.qrcode.core.QRCodeRenderLimiter;
+import com.example.qrcode.core.QRCodeRenderOptions;
+import com.example.qrcode.core.QRCodeRenderOptions.OutputFormat;
+import com.example.qrcode.core.QRCodeVerifier;
+import com.example.qrcode.entity.QRCodeBatchResult;
+import com.example.qrcode.entity.QRCodeExtraData;
+import com.example.qrcode.util.ZipUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.zxing.WriterException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 批量生成二维码
+ * <p>
+ * 二维码在有界的渲染线程池中并行生成, 按请求顺序依次输出; 同时在途的二维码数量有上限, 内存占用与批量大小无关。
+ * 单个二维码失败只记录在结果中, 不影响其他二维码。
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+@Slf4j
+@Service
+public class QRCodeBatchService {
+    /**
+     * 压缩包中清单文件的名称
+     */
+    public static final String MANIFEST_ENTRY_NAME = "manifest.json";
+
+    @Autowired
+    private QRCodeProperties qrCodeProperties;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    @Qualifier("qrCodeRenderExecutor")
+    private ExecutorService renderExecutor;
+    @Autowired(required = false)
+    private QRCodeVerifier qrCodeVerifier;
+    @Autowired(required = false)
+    @Qualifier("qrCodeBatchLimiter")
+    private QRCodeRenderLimiter qrCodeBatchLimiter;
+
+    /**
+     * 获取批量请求的许可, 整个批量请求占用一个许可, 直到响应写完
+     *
+     * @return 批量请求的许可, 未开启准入控制时返回 null
+     * @throws QRCodeRenderLimiter.RejectedException 批量请求已饱和
+     */
+    public QRCodeRenderLimiter.Permit acquirePermit() {
+        return qrCodeBatchLimiter == null ? null : qrCodeBatchLimiter.acquire();
+    }
+
+    /**
+     * 批量生成二维码并写入 ZIP 输出流, 最后写入清单文件 {@value #MANIFEST_ENTRY_NAME}
+     *
+     * @param options       渲染参数
+     * @param extraDataList 二维码额外的信息列表
+     * @param zos           ZIP 输出流, 调用方负责关闭
+     * @return 每个二维码的处理结果
+     * @throws IOException 写入输出流失败
+     */
+    public List<QRCodeBatchResult> writeZip(QRCodeRenderOptions options, List<QRCodeExtraData> extraDataList, ZipOutputStream zos) throws IOException {
+        Set<String> entryNames = new HashSet<>();
+        List<QRCodeBatchResult> results = render(options, extraDataList, (result, content) -> {
+            String entryName = uniqueEntryName(result.getFileName(), entryNames);
+            result.setFileName(entryName);
+            ZipUtil.addToZip(zos, entryName, output -> output.write(content));
+        });
+        byte[] manifest = objectMapper.writeValueAsBytes(results);
+        ZipUtil.addToZip(zos, MANIFEST_ENTRY_NAME, output -> output.write(manifest));
+        return results;
+    }
+
+    /**
+     * 批量生成二维码, 只返回处理结果
+     *
+     * @param options       渲染参数
+     * @param extraDataList 二维码额外的信息列表
+     * @return 每个二维码的处理结果
+     */
+    public List<QRCodeBatchResult> manifest(QRCodeRenderOptions options, List<QRCodeExtraData> extraDataList) {
+        try {
+            return render(options, extraDataList, (result, content) -> {
+            });
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 批量生成二维码打印页 PDF, 每页排满后立即写入输出流
+     * <p>
+     * 二维码以矢量形式直接写入 PDF, 图标与重复的文字只写入一次; 内存中只保留当前页面, 与批量大小无关。
+     * 生成失败的二维码不占用格子, 只记录在返回的数量中
+     *
+     * @param options       渲染参数
+     * @param extraDataList 二维码额外的信息列表
+     * @param output        输出流, 调用方负责关闭
+     * @return 生成失败的二维码数量
+     * @throws IOException 写入输出流失败
+     */
+    public int writePdfSheet(QRCodeRenderOptions options, List<QRCodeExtraData> extraDataList, OutputStream output) throws IOException {
+        QRCodeProperties.QRCodeSheetProperties sheetProperties = qrCodeProperties.getSheet();
+        int failed = 0;
+        try (QRCodePdfSheet sheet = new QRCodePdfSheet(output, sheetProperties.getColumns(), sheetProperties.getRows(),
+                sheetProperties.getMargin() * QRCodePdfSheet.POINTS_PER_MM, sheetProperties.getGap() * QRCodePdfSheet.POINTS_PER_MM)) {
+            for (int index = 0; index < extraDataList.size(); index++) {
+                QRCodeExtraData extraData = extraDataList.get(index);
+                long start = System.nanoTime();
+                try {
+                    if (StringUtils.isBlank(extraData.getGunCode())) {
+                        throw new IllegalArgumentException("枪码不能为空");
+                    }
+                    QRCodeGenerator.drawQRCodeWithExtraData(qrCodeProperties.getBaseText(), options, extraData, sheet);
+                    QRCodeMetrics.recordRender(start, true);
+                } catch (WriterException | RuntimeException e) {
+                    // 写入输出流失败 (IOException) 时整体终止, 其余异常只影响当前二维码
+                    log.error("生成二维码失败, 下标: {}, 枪码: {}", index, extraData.getGunCode(), e);
+                    QRCodeMetrics.recordRender(start, false);
+                    failed++;
+                }
+            }
+        }
+        QRCodeMetrics.recordBatch(extraDataList.size(), failed);
+        log.info("批量生成二维码打印页完成, 总数: {}, 失败: {}", extraDataList.size(), failed);
+        return failed;
+    }
+
+    /**
+     * 并行生成二维码, 并按请求顺序交给 consumer 处理
+     *
+     * @param options       渲染参数
+     * @param extraDataList 二维码额外的信息列表
+     * @param consumer      成功生成的二维码的处理逻辑
+     * @return 每个二维码的处理结果
+     * @throws IOException consumer 处理失败
+     */
+    public List<QRCodeBatchResult> render(QRCodeRenderOptions options, List<QRCodeExtraData> extraDataList, LabelConsumer consumer) throws IOException {
+        List<QRCodeBatchResult> results = new ArrayList<>(extraDataList.size());
+        long failed = renderEach(options, extraDataList.iterator(), (result, content) -> {
+            if (content != null) {
+                consumer.accept(result, content);
+            }
+            results.add(result);
+        });
+        QRCodeMetrics.recordBatch(results.size(), failed);
+        log.info("批量生成二维码完成, 总数: {}, 失败: {}", results.size(), failed);
+        return results;
+    }
+
+    /**
+     * 并行生成二维码, 并按输入顺序交给 consumer 处理; 逐个读取输入, 不保留处理结果, 内存占用与输入数量无关
+     *
+     * @param options   渲染参数
+     * @param extraData 二维码额外的信息, 在调用线程中按需读取
+     * @param consumer  每个二维码的处理逻辑, 生成失败时图片内容为 null
+     * @return 生成失败的数量
+     * @throws IOException consumer 处理失败, 或等待渲染时线程被中断
+     */
+    public long renderEach(QRCodeRenderOptions options, Iterator<QRCodeExtraData> extraData, LabelConsumer consumer) throws IOException {
+        int window = Math.max(1, qrCodeProperties.getBatch().getThreads() * 2);
+        Deque<Future<RenderedLabel>> pending = new ArrayDeque<>(window);
+        int next = 0;
+        long failed = 0;
+        try {
+            while (extraData.hasNext() || !pending.isEmpty()) {
+                while (pending.size() < window && extraData.hasNext()) {
+                    int index = next++;
+                    QRCodeExtraData item = extraData.next();
+                    pending.add(renderExecutor.submit(() -> renderLabel(index, options, item)));
+                }
+                RenderedLabel label = await(pending.poll());
+                if (!label.result().isSuccess()) {
+                    failed++;
+                }
+                consumer.accept(label.result(), label.content());
+            }
+        } finally {
+            pending.forEach(future -> future.cancel(true));
+        }
+        return failed;
+    }
+
+    private RenderedLabel renderLabel(int index, QRCodeRenderOptions options, QRCodeExtraData extraData) {
+        QRCodeBatchResult result = new QRCodeBatchResult()
+                .setIndex(index)
+                .setGunCode(extraData.getGunCode())
+                .setFileName(extraData.getFileName());
+        try {
+            if (StringUtils.isBlank(extraData.getGunCode())) {
+                throw new IllegalArgumentException("枪码不能为空");
+            }
+            ByteArrayOutputStream output = new ByteArrayOutputStream(32 * 1024);
+            QRCodeGenerator.writeQRCodeWithExtraData(qrCodeProperties.getBaseText(), options, extraData, output);
+            result.setSize(output.size());
+            QRCodeMetrics.recordLabelBytes(output.size());
+            byte[] content = output.toByteArray();
+            if (!verify(options, extraData, content, result)) {
+                return new RenderedLabel(result, null);
+            }
+            return new RenderedLabel(result.setSuccess(true), content);
+        } catch (Exception e) {
+            log.error("生成二维码失败, 下标: {}, 枪码: {}", index, extraData.getGunCode(), e);
+            result.setSuccess(false).setError(e.getClass().getSimpleName() + ": " + e.getMessage());
+            return new RenderedLabel(result, null);
+        }
+    }
+
+    /**
+     * 按批量抽样比例解码校验, 在渲染线程中执行, 与其他二维码的渲染并行
+     *
+     * @return 未抽中或校验通过时返回 true
+     */
+    private boolean verify(QRCodeRenderOptions options, QRCodeExtraData extraData, byte[] content, QRCodeBatchResult result) throws IOException {
+        if (qrCodeVerifier == null || options.getFormat() != OutputFormat.PNG
+                || !QRCodeVerifier.sample(qrCodeProperties.getVerify().getBatchRate())) {
+            return true;
+        }
+        String expectedText = qrCodeProperties.getBaseText().replace("${GunCode}", extraData.getGunCode());
+        QRCodeVerifier.Outcome outcome = QRCodeVerifier.verify(content, expectedText);
+        result.setVerified(outcome == QRCodeVerifier.Outcome.OK);
+        if (outcome != QRCodeVerifier.Outcome.OK) {
+            log.error("二维码校验失败, 下标: {}, 枪码: {}, 结果: {}", result.getIndex(), extraData.getGunCode(), outcome.getTag());
+            result.setSuccess(false).setError("二维码校验失败: " + outcome.getTag());
+            return false;
+        }
+        return true;
+    }
+
+    private static RenderedLabel await(Future<RenderedLabel> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("批量生成二维码被中断", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * 去除路径分隔符, 同名文件追加序号, 如: name(1).png
+     */
+    static String uniqueEntryName(String fileName, Set<String> entryNames) {
+        fileName = fileName.replaceAll("[\\\\/]", "_");
+        String entryName = fileName;
+        for (int i = 1; !entryNames.add(entryName); i++) {
+            entryName = FilenameUtils.getBaseName(fileName) + "(" + i + ")." + FilenameUtils.getExtension(fileName);
+        }
+        return entryName;
+    }
+
+    /**
+     * 生成的二维码的处理逻辑
+     */
+    @FunctionalInterface
+    public interface LabelConsumer {
+        /**
+         * 处理生成的二维码
+         *
+         * @param result  处理结果, 可以修改文件名等信息
+         * @param content PNG 图片内容, 由 {@link #renderEach} 调用时生成失败为 null
+         * @throws IOException 处理失败
+         */
+        void accept(QRCodeBatchResult result, byte[] content) throws IOException;
+    }
+
+    private record RenderedLabel(QRCodeBatchResult result, byte[] content) {
+    }
+}
@@ -0,0 +1,312 @@
+package com.example.qrcode.service;
+
+import com.example.qrcode.entity.QRCodeShardChunk;
+import com.example.qrcode.entity.QRCodeShardChunk.State;
+import com.example.qrcode.entity.QRCodeShardJob;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * 基于文件的分片任务存储
+ * <p>
+ * 每个任务及其分片保存为 {@code jobs/<jobId>.json}, 每次修改先写入临时文件再原子替换。
+ * 所有读写都持有 {@code .lock} 文件上的排他锁, 多个进程可以共享同一目录,
+ * 适用于单机多实例、测试, 以及支持文件锁的共享文件系统。
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+public class QRCodeFileShardStore implements QRCodeShardStore, Closeable {
+    private static final String EXTENSION = ".json";
+    private static final Pattern JOB_ID = Pattern.compile("[0-9A-Za-z_-]+");
+
+    private final Path jobsDir;
+    private final FileChannel lockChannel;
+    private final ObjectMapper objectMapper;
+    /**
+     * 切分完成且所有分片都已完成或失败的任务, 领取分片时不再读取
+     */
+    private final Set<String> doneJobs = new HashSet<>();
+
+    /**
+     * 打开或创建存储
+     *
+     * @param root         存储根目录
+     * @param objectMapper 任务文件的序列化
+     * @throws IOException 无法创建目录或锁文件
+     */
+    public QRCodeFileShardStore(Path root, ObjectMapper objectMapper) throws IOException {
+        this.jobsDir = root.resolve("jobs");
+        this.objectMapper = objectMapper;
+        Files.createDirectories(jobsDir);
+        this.lockChannel = FileChannel.open(root.resolve(".lock"), CREATE, WRITE);
+    }
+
+    @Override
+    public synchronized void create(QRCodeShardJob job, List<QRCodeShardChunk> chunks) throws IOException {
+        try (FileLock lock = lockChannel.lock()) {
+            Path path = jobPath(job.getJobId());
+            if (Files.exists(path)) {
+                throw new IllegalStateException("Job already exists: " + job.getJobId());
+            }
+            write(path, new JobFile(job, chunks));
+        }
+    }
+
+    @Override
+    public synchronized QRCodeShardJob getJob(String jobId) throws IOException {
+        try (FileLock lock = lockChannel.lock()) {
+            JobFile file = read(jobId);
+            return file == null ? null : file.job();
+        }
+    }
+
+    @Override
+    public synchronized List<QRCodeShardJob> getJobs() throws IOException {
+        try (FileLock lock = lockChannel.lock()) {
+            List<QRCodeShardJob> jobs = new ArrayList<>();
+            for (String jobId : jobIds()) {
+                JobFile file = read(jobId);
+                if (file != null) {
+                    jobs.add(file.job());
+                }
+            }
+            jobs.sort(Comparator.comparingLong(QRCodeShardJob::getCreatedAt));
+            return jobs;
+        }
+    }
+
+    @Override
+    public synchronized List<QRCodeShardChunk> getChunks(String jobId) throws IOException {
+        try (FileLock lock = lockChannel.lock()) {
+            JobFile file = read(jobId);
+            return file == null ? List.of() : file.chunks();
+        }
+    }
+
+    @Override
+    public synchronized QRCodeShardChunk claim(String owner, long leaseMillis, int maxAttempts) throws IOException {
+        try (FileLock lock = lockChannel.lock()) {
+            long now = System.currentTimeMillis();
+            for (JobFile file : activeJobs()) {
+                boolean done = !file.job().isIndexing();
+                boolean changed = false;
+                QRCodeShardChunk claimed = null;
+                for (QRCodeShardChunk chunk : file.chunks()) {
+                    if (chunk.getState() == State.LEASED && chunk.getLeaseExpiresAt() < now && chunk.getAttempts() >= maxAttempts) {
+                        chunk.setState(State.FAILED).setLeaseExpiresAt(0);
+                        changed = true;
+                    }
+                    done &= chunk.getState() == State.DONE || chunk.getState() == State.FAILED;
+                    if (chunk.getState() == State.PENDING || chunk.getState() == State.LEASED && chunk.getLeaseExpiresAt() < now) {
+                        claimed = chunk.setState(State.LEASED)
+                                .setOwner(owner)
+                                .setAttempts(chunk.getAttempts() + 1)
+                                .setLeaseExpiresAt(now + leaseMillis);
+                        changed = true;
+                        break;
+                    }
+                }
+                if (changed) {
+                    write(jobPath(file.job().getJobId()), file);
+                }
+                if (claimed != null) {
+                    return claimed;
+                }
+                if (done) {
+                    doneJobs.add(file.job().getJobId());
+                }
+            }
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized QRCodeShardJob claimIndexing(String owner, long leaseMillis, int maxAttempts) throws IOException {
+        try (FileLock lock = lockChannel.lock()) {
+            long now = System.currentTimeMillis();
+            for (JobFile file : activeJobs()) {
+                QRCodeShardJob job = file.job();
+                if (!job.isIndexing() || job.getIndexLeaseExpiresAt() >= now) {
+                    continue;
+                }
+                if (job.getIndexAttempts() >= maxAttempts) {
+                    job.setIndexing(false).setIndexOwner(null).setIndexLeaseExpiresAt(0)
+                            .setError("切分输入文件 " + job.getIndexAttempts() + " 次未完成");
+                } else {
+                    job.setIndexOwner(owner).setIndexAttempts(job.getIndexAttempts() + 1).setIndexLeaseExpiresAt(now + leaseMillis);
+                }
+                write(jobPath(job.getJobId()), file);
+                if (job.isIndexing()) {
+                    return job;
+                }
+            }
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized boolean appendChunks(QRCodeShardJob job, List<QRCodeShardChunk> chunks, boolean last, long leaseMillis) throws IOException {
+        return updateIndexing(job, file -> {
+            QRCodeShardJob current = file.job();
+            for (QRCodeShardChunk chunk : chunks) {
+                if (chunk.getIndex() != file.chunks().size()) {
+                    throw new IllegalArgumentException("Chunk " + chunk.getIndex() + " does not follow chunk " + (file.chunks().size() - 1));
+                }
+                file.chunks().add(chunk);
+                current.setRecords(current.getRecords() + chunk.getRecords());
+            }
+            current.setChunks(file.chunks().size())
+                    .setIndexLeaseExpiresAt(last || leaseMillis <= 0 ? 0 : System.currentTimeMillis() + leaseMillis);
+            if (last) {
+                current.setIndexing(false).setIndexOwner(null);
+            }
+        });
+    }
+
+    @Override
+    public synchronized boolean failIndexing(QRCodeShardJob job, String error) throws IOException {
+        return updateIndexing(job, file -> file.job().setIndexing(false).setIndexOwner(null).setIndexLeaseExpiresAt(0).setError(error));
+    }
+
+    @Override
+    public synchronized boolean renew(QRCodeShardChunk chunk, long leaseMillis) throws IOException {
+        return update(chunk, current -> current.setLeaseExpiresAt(System.currentTimeMillis() + leaseMillis));
+    }
+
+    @Override
+    public synchronized boolean complete(QRCodeShardChunk chunk, long failed) throws IOException {
+        return update(chunk, current -> current.setState(State.DONE).setFailed(failed).setLeaseExpiresAt(0));
+    }
+
+    @Override
+    public synchronized boolean fail(QRCodeShardChunk chunk) throws IOException {
+        return update(chunk, current -> current.setState(State.FAILED).setLeaseExpiresAt(0));
+    }
+
+    @Override
+    public synchronized void release(QRCodeShardChunk chunk) throws IOException {
+        update(chunk, current -> current.setState(State.PENDING).setOwner(null).setLeaseExpiresAt(0));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        lockChannel.close();
+    }
+
+    /**
+     * 租约仍属于调用方时修改分片
+     */
+    private boolean update(QRCodeShardChunk chunk, Consumer<QRCodeShardChunk> change) throws IOException {
+        try (FileLock lock = lockChannel.lock()) {
+            JobFile file = read(chunk.getJobId());
+            if (file == null || chunk.getIndex() >= file.chunks().size()) {
+                return false;
+            }
+            QRCodeShardChunk current = file.chunks().get(chunk.getIndex());
+            if (current.getState() != State.LEASED || !Objects.equals(current.getOwner(), chunk.getOwner())
+                    || current.getAttempts() != chunk.getAttempts()) {
+                return false;
+            }
+            change.accept(current);
+            write(jobPath(chunk.getJobId()), file);
+            chunk.setState(current.getState()).setLeaseExpiresAt(current.getLeaseExpiresAt());
+            return true;
+        }
+    }
+
+    /**
+     * 切分租约仍属于调用方时修改任务
+     */
+    private boolean updateIndexing(QRCodeShardJob job, Consumer<JobFile> change) throws IOException {
+        try (FileLock lock = lockChannel.lock()) {
+            JobFile file = read(job.getJobId());
+            if (file == null) {
+                return false;
+            }
+            QRCodeShardJob current = file.job();
+            if (!current.isIndexing() || !Objects.equals(current.getIndexOwner(), job.getIndexOwner())
+                    || current.getIndexAttempts() != job.getIndexAttempts()) {
+                return false;
+            }
+            change.accept(file);
+            write(jobPath(job.getJobId()), file);
+            job.setIndexing(current.isIndexing()).setIndexLeaseExpiresAt(current.getIndexLeaseExpiresAt())
+                    .setRecords(current.getRecords()).setChunks(current.getChunks());
+            return true;
+        }
+    }
+
+    /**
+     * 读取未完成的任务, 按创建时间排列
+     */
+    private List<JobFile> activeJobs() throws IOException {
+        List<JobFile> files = new ArrayList<>();
+        for (String jobId : jobIds()) {
+            JobFile file = doneJobs.contains(jobId) ? null : read(jobId);
+            if (file != null) {
+                files.add(file);
+            }
+        }
+        files.sort(Comparator.comparingLong(file -> file.job().getCreatedAt()));
+        return files;
+    }
+
+    private List<String> jobIds() throws IOException {
+        List<String> jobIds = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(jobsDir, "*" + EXTENSION)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                jobIds.add(name.substring(0, name.length() - EXTENSION.length()));
+            }
+        }
+        return jobIds;
+    }
+
+    private JobFile read(String jobId) throws IOException {
+        if (jobId == null || !JOB_ID.matcher(jobId).matches()) {
+            return null;
+        }
+        Path path = jobPath(jobId);
+        return Files.exists(path) ? objectMapper.readValue(path.toFile(), JobFile.class) : null;
+    }
+
+    /**
+     * 先写入临时文件再原子替换, 其他进程不会读到不完整的任务文件
+     */
+    private void write(Path path, JobFile file) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(objectMapper.writeValueAsBytes(file));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path jobPath(String jobId) {
+        if (!JOB_ID.matcher(jobId).matches()) {
+            throw new IllegalArgumentException("Invalid job id: " + jobId);
+        }
+        return jobsDir.resolve(jobId + EXTENSION);
+    }
+
+    private record JobFile(QRCodeShardJob job, List<QRCodeShardChunk> chunks) {
+    }
+}
@@ -0,0 +1,613 @@
+package com.example.qrcode.service;
+
+import com.example.qrcode.config.QRCodeProperties;
+import com.example.qrcode.config.QRCodeProperties.QRCodeImportProperties;
+import com.example.qrcode.core.QRCodeOutputSink;
+import com.example.qrcode.core.QRCodeRenderLimiter;
+import com.example.qrcode.entity.QRCodeBatchResult;
+import com.example.qrcode.entity.QRCodeExtraData;
+import com.example.qrcode.entity.QRCodeImportRequest;
+import com.example.qrcode.entity.QRCodeImportStatus;
+import com.example.qrcode.util.ZipUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 批量导入任务
+ * <p>
+ * 从导入根目录中的 CSV 或 JSONL 文件逐条读取充电枪数据, 并行生成二维码并按输入顺序写入 {@link QRCodeOutputSink} 中的输出目录,
+ * 内存占用与文件大小无关。输出目录中的所有内容都以提交后才可见的方式写入, 不需要追加或重命名, 适用于任何输出存储:
+ * <ul>
+ *     <li>二维码图片, 或每 {@code checkpoint-interval} 张一个的 ZIP 分卷 labels-00001.zip</li>
+ *     <li>results-00001.jsonl: 处理结果分卷, 与 ZIP 分卷一一对应, 每行一个 {@link QRCodeBatchResult}, index 为记录在文件中的序号</li>
+ *     <li>{@value #CHECKPOINT_NAME}: 检查点, 记录已完成部分在输入文件中的偏移量与已提交的分卷数量</li>
+ * </ul>
+ * 检查点在分卷提交之后写入, 与其记录的输出保存在同一存储中: 输出存储丢失内容时检查点一起丢失, 任务从头开始, 不会跳过丢失的二维码。
+ * 任务中断后以相同的输入与输出再次提交, 从最近的检查点继续, 检查点之后已提交的分卷会被覆盖。
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+@Slf4j
+@Service
+public class QRCodeImportService {
+    /**
+     * 检查点在输出目录中的名称
+     */
+    public static final String CHECKPOINT_NAME = "checkpoint.json";
+
+    @Autowired
+    private QRCodeProperties qrCodeProperties;
+    @Autowired
+    private QRCodeBatchService qrCodeBatchService;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private QRCodeOutputSink qrCodeOutputSink;
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * 提交导入任务, 在后台线程中执行
+     *
+     * @param request 导入请求
+     * @return 任务进度
+     * @throws IllegalArgumentException 输入文件不存在, 路径不在导入根目录中, 或输出目录名称不合法
+     * @throws IllegalStateException    同一输出目录已有正在执行的任务
+     * @throws QRCodeRenderLimiter.RejectedException 正在执行的任务已达到上限
+     */
+    public QRCodeImportStatus start(QRCodeImportRequest request) {
+        Path root = Path.of(qrCodeProperties.getImporting().getPath()).toAbsolutePath().normalize();
+        Path input = resolve(root, request.getInput());
+        // 输出目录只是输出存储中的名称, 借助导入根目录规范化, 不允许越出根目录
+        Path output = resolve(root, request.getOutput());
+        if (!Files.isRegularFile(input)) {
+            throw new IllegalArgumentException("输入文件不存在: " + request.getInput());
+        }
+        QRCodeRecordReader.Format format = StringUtils.isBlank(request.getFormat())
+                ? QRCodeRecordReader.Format.of(input)
+                : QRCodeRecordReader.Format.valueOf(request.getFormat().trim().toUpperCase(Locale.ROOT));
+        String outputName = QRCodeOutputSink.checkName(root.relativize(output).toString().replace(File.separatorChar, '/'));
+        QRCodeImportProperties importing = qrCodeProperties.getImporting();
+        ImportJob job = new ImportJob(UUID.randomUUID().toString().replace("-", ""), input, outputName, format, request.isZip());
+        synchronized (jobs) {
+            int running = 0;
+            for (ImportJob other : jobs.values()) {
+                if (!other.isRunning()) {
+                    continue;
+                }
+                if (other.output.equals(job.output)) {
+                    throw new IllegalStateException("输出目录已有正在执行的任务: " + other.id);
+                }
+                running++;
+            }
+            if (running >= importing.getMaxRunning()) {
+                throw new QRCodeRenderLimiter.RejectedException(qrCodeProperties.getAdmission().getRetryAfter());
+            }
+            evictFinished(importing.getMaxFinished());
+            jobs.put(job.id, job);
+        }
+        job.thread.start();
+        return job.getStatus();
+    }
+
+    /**
+     * 只保留最近结束的 maxFinished 个任务, 调用方持有 jobs 的锁
+     */
+    private void evictFinished(int maxFinished) {
+        List<ImportJob> finished = jobs.values().stream()
+                .filter(job -> !job.isRunning())
+                .sorted(Comparator.comparingLong(job -> job.finishedNanos))
+                .toList();
+        for (int i = 0; i < finished.size() - maxFinished; i++) {
+            jobs.remove(finished.get(i).id);
+        }
+    }
+
+    /**
+     * 获取任务进度
+     *
+     * @param jobId 任务编号
+     * @return 任务进度, 任务不存在时返回 null
+     */
+    public QRCodeImportStatus getStatus(String jobId) {
+        ImportJob job = jobs.get(jobId);
+        return job == null ? null : job.getStatus();
+    }
+
+    /**
+     * 获取所有任务的进度
+     */
+    public List<QRCodeImportStatus> getStatuses() {
+        return jobs.values().stream().map(ImportJob::getStatus).toList();
+    }
+
+    /**
+     * 取消任务, 已保存的检查点保留, 再次提交时继续
+     *
+     * @param jobId 任务编号
+     * @return 任务进度, 任务不存在时返回 null
+     */
+    public QRCodeImportStatus cancel(String jobId) {
+        ImportJob job = jobs.get(jobId);
+        if (job == null) {
+            return null;
+        }
+        job.cancel();
+        return job.getStatus();
+    }
+
+    /**
+     * 服务停止时中断所有任务, 重启后从检查点继续
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (ImportJob job : jobs.values()) {
+            job.cancel();
+        }
+        for (ImportJob job : jobs.values()) {
+            job.thread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    /**
+     * 解析导入根目录中的路径, 不允许越出根目录
+     */
+    static Path resolve(Path root, String path) {
+        if (StringUtils.isBlank(path)) {
+            throw new IllegalArgumentException("输入文件与输出目录不能为空");
+        }
+        Path resolved = root.resolve(path).normalize();
+        if (!resolved.startsWith(root) || resolved.equals(root)) {
+            throw new IllegalArgumentException("路径必须位于导入根目录中: " + path);
+        }
+        return resolved;
+    }
+
+    /**
+     * 一次导入任务的执行过程与进度
+     */
+    private final class ImportJob {
+        private final String id;
+        private final Path input;
+        /**
+         * 输出在输出存储中的目录名称
+         */
+        private final String output;
+        private final QRCodeRecordReader.Format format;
+        private final boolean zip;
+        private final long totalBytes;
+        private volatile String state = "RUNNING";
+        private volatile String error;
+        private volatile boolean cancelled;
+        private volatile long records;
+        private volatile long failed;
+        private volatile long bytesRead;
+        private volatile long runStartNanos = System.nanoTime();
+        private volatile long runStartRecords;
+        private volatile long runStartBytes;
+        private volatile long finishedNanos;
+        /**
+         * 执行任务的后台线程, 创建任务时创建, 放入 jobs 之后才启动
+         */
+        private final Thread thread;
+
+        private ImportJob(String id, Path input, String output, QRCodeRecordReader.Format format, boolean zip) {
+            this.id = id;
+            this.input = input;
+            this.output = output;
+            this.format = format;
+            this.zip = zip;
+            this.totalBytes = input.toFile().length();
+            this.thread = Thread.ofPlatform().name("qrcode-import-" + id.substring(0, 8)).unstarted(this::run);
+        }
+
+        private boolean isRunning() {
+            return "RUNNING".equals(state);
+        }
+
+        private void cancel() {
+            cancelled = true;
+            thread.interrupt();
+        }
+
+        private void run() {
+            try {
+                execute();
+                state = "COMPLETED";
+            } catch (Exception e) {
+                if (cancelled) {
+                    state = "CANCELLED";
+                    log.info("导入任务已取消: {}, 已处理: {}", id, records);
+                } else {
+                    state = "FAILED";
+                    error = e.getClass().getSimpleName() + ": " + e.getMessage();
+                    log.error("导入任务失败: {}, 已处理: {}", id, records, e);
+                }
+            } finally {
+                finishedNanos = System.nanoTime();
+            }
+        }
+
+        private void execute() throws IOException {
+            Checkpoint checkpoint = readCheckpoint();
+            records = checkpoint.records();
+            failed = checkpoint.failed();
+            bytesRead = checkpoint.offset();
+            runStartRecords = records;
+            runStartBytes = bytesRead;
+            runStartNanos = System.nanoTime();
+            if (checkpoint.completed()) {
+                log.info("导入任务已完成, 无需重新生成: {}", output);
+                return;
+            }
+            log.info("开始导入: {}, 输出: {}, 从第 {} 条记录继续", input, output, records);
+
+            QRCodeImportProperties importing = qrCodeProperties.getImporting();
+            int interval = Math.max(1, importing.getCheckpointInterval());
+            try (QRCodeRecordReader reader = new QRCodeRecordReader(input, format, objectMapper, checkpoint.offset());
+                 ResultPartWriter results = new ResultPartWriter(qrCodeOutputSink, output + "/", checkpoint.resultParts());
+                 LabelWriter writer = zip ? new ZipPartWriter(qrCodeOutputSink, output + "/", checkpoint.parts())
+                         : new DirectoryWriter(qrCodeOutputSink, output + "/", readFileNames(checkpoint.resultParts()))) {
+                // 记录已提交渲染的记录结束时的偏移量, 按顺序与处理结果对应, 数量不超过渲染窗口
+                Deque<Long> offsets = new ArrayDeque<>();
+                Iterator<QRCodeExtraData> source = new Iterator<>() {
+                    private QRCodeExtraData next;
+
+                    @Override
+                    public boolean hasNext() {
+                        if (next == null && !cancelled) {
+                            try {
+                                next = reader.next();
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                            if (next != null) {
+                                offsets.add(reader.getOffset());
+                            }
+                        }
+                        return next != null;
+                    }
+
+                    @Override
+                    public QRCodeExtraData next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        QRCodeExtraData current = next;
+                        next = null;
+                        return current;
+                    }
+                };
+                long firstIndex = records;
+                long[] sinceCheckpoint = {0};
+                long[] lastProgress = {System.nanoTime()};
+                long progressNanos = TimeUnit.MILLISECONDS.toNanos(importing.getProgressInterval());
+                try {
+                    qrCodeBatchService.renderEach(qrCodeProperties.toRenderOptions(400), source, (result, content) -> {
+                        long offset = offsets.remove();
+                        result.setIndex((int) (firstIndex + result.getIndex()));
+                        if (content != null) {
+                            writer.write(result, content);
+                        }
+                        results.write(objectMapper.writeValueAsString(result));
+                        records++;
+                        if (!result.isSuccess()) {
+                            failed++;
+                        }
+                        bytesRead = offset;
+                        if (++sinceCheckpoint[0] >= interval) {
+                            sinceCheckpoint[0] = 0;
+                            writer.commit();
+                            results.commit();
+                            writeCheckpoint(new Checkpoint(checkpoint.input(), checkpoint.inputSize(), checkpoint.inputModified(),
+                                    offset, records, failed, results.getParts(), writer.getParts(), false));
+                        }
+                        if (System.nanoTime() - lastProgress[0] >= progressNanos) {
+                            lastProgress[0] = System.nanoTime();
+                            QRCodeImportStatus status = getStatus();
+                            log.info("导入进度: {}, 已处理: {}, 失败: {}, 速率: {} 张/秒, 预计剩余: {} 秒",
+                                    id, status.getRecords(), status.getFailed(), String.format("%.1f", status.getLabelsPerSecond()), status.getEtaSeconds());
+                        }
+                    });
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                if (cancelled) {
+                    throw new IOException("导入任务已取消");
+                }
+                writer.commit();
+                results.commit();
+                writeCheckpoint(new Checkpoint(checkpoint.input(), checkpoint.inputSize(), checkpoint.inputModified(),
+                        reader.getOffset(), records, failed, results.getParts(), writer.getParts(), true));
+            }
+            log.info("导入完成: {}, 总数: {}, 失败: {}", output, records, failed);
+        }
+
+        /**
+         * 读取检查点, 输入文件变化或没有检查点时从头开始
+         */
+        private Checkpoint readCheckpoint() throws IOException {
+            String name = output + "/" + CHECKPOINT_NAME;
+            Checkpoint initial = new Checkpoint(input.toString(), Files.size(input), Files.getLastModifiedTime(input).toMillis(),
+                    0, 0, 0, 0, 0, false);
+            if (qrCodeOutputSink.size(name) >= 0) {
+                Checkpoint checkpoint;
+                try (InputStream stream = qrCodeOutputSink.open(name)) {
+                    checkpoint = objectMapper.readValue(stream, Checkpoint.class);
+                }
+                if (checkpoint.input().equals(initial.input()) && checkpoint.inputSize() == initial.inputSize()
+                        && checkpoint.inputModified() == initial.inputModified()) {
+                    return checkpoint;
+                }
+                log.warn("输入文件已变化, 忽略检查点并从头导入: {}", input);
+            }
+            return initial;
+        }
+
+        /**
+         * 读取已提交的处理结果分卷中生成成功的文件名, 继续执行时同名的二维码接着追加序号, 不覆盖之前生成的文件
+         */
+        private Set<String> readFileNames(int resultParts) throws IOException {
+            Set<String> fileNames = new HashSet<>();
+            for (int part = 1; part <= resultParts; part++) {
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                        qrCodeOutputSink.open(output + "/" + ResultPartWriter.partName(part)), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        QRCodeBatchResult result = objectMapper.readValue(line, QRCodeBatchResult.class);
+                        if (result.isSuccess() && result.getFileName() != null) {
+                            fileNames.add(result.getFileName());
+                        }
+                    }
+                }
+            }
+            return fileNames;
+        }
+
+        /**
+         * 提交后整体替换, 中断时不会留下不完整的检查点
+         */
+        private void writeCheckpoint(Checkpoint checkpoint) throws IOException {
+            try (QRCodeOutputSink.Output stream = qrCodeOutputSink.create(output + "/" + CHECKPOINT_NAME)) {
+                stream.write(objectMapper.writeValueAsBytes(checkpoint));
+                stream.commit();
+            }
+        }
+
+        private QRCodeImportStatus getStatus() {
+            long elapsedNanos = Math.max(1, System.nanoTime() - runStartNanos);
+            double seconds = elapsedNanos / 1e9;
+            long runBytes = bytesRead - runStartBytes;
+            Long eta = null;
+            if ("RUNNING".equals(state) && runBytes > 0) {
+                eta = (long) Math.ceil((totalBytes - bytesRead) * seconds / runBytes);
+            }
+            return new QRCodeImportStatus()
+                    .setJobId(id)
+                    .setState(state)
+                    .setInput(input.toString())
+                    .setOutput(output)
+                    .setRecords(records)
+                    .setFailed(failed)
+                    .setBytesRead(bytesRead)
+                    .setTotalBytes(totalBytes)
+                    .setLabelsPerSecond((records - runStartRecords) / seconds)
+                    .setEtaSeconds(eta)
+                    .setError(error);
+        }
+    }
+
+    /**
+     * 检查点
+     *
+     * @param input         输入文件
+     * @param inputSize     输入文件的大小, 与修改时间一起判断输入文件是否变化
+     * @param inputModified 输入文件的修改时间
+     * @param offset        已完成部分在输入文件中的偏移量
+     * @param records       已处理的记录数
+     * @param failed        生成失败的记录数
+     * @param resultParts   已提交的处理结果分卷数量
+     * @param parts         已提交的 ZIP 分卷数量
+     * @param completed     是否已全部完成
+     */
+    private record Checkpoint(String input, long inputSize, long inputModified, long offset, long records, long failed,
+                              int resultParts, int parts, boolean completed) {
+    }
+
+    /**
+     * 处理结果写入分卷 results-00001.jsonl, 每次保存检查点时提交当前分卷; 未提交的分卷在中断时被丢弃
+     */
+    private static final class ResultPartWriter implements Closeable {
+        private final QRCodeOutputSink sink;
+        private final String prefix;
+        private int parts;
+        private QRCodeOutputSink.Output output;
+        private Writer writer;
+
+        /**
+         * @param parts 已提交的分卷数量
+         */
+        private ResultPartWriter(QRCodeOutputSink sink, String prefix, int parts) {
+            this.sink = sink;
+            this.prefix = prefix;
+            this.parts = parts;
+        }
+
+        private void write(String line) throws IOException {
+            if (writer == null) {
+                output = sink.create(prefix + partName(parts + 1));
+                writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            }
+            writer.write(line);
+            writer.write('\n');
+        }
+
+        private void commit() throws IOException {
+            if (writer == null) {
+                return;
+            }
+            writer.flush();
+            output.commit();
+            close();
+            parts++;
+        }
+
+        private int getParts() {
+            return parts;
+        }
+
+        private static String partName(int part) {
+            return String.format("results-%05d.jsonl", part);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (writer != null) {
+                writer.close();
+                writer = null;
+                output = null;
+            }
+        }
+    }
+
+    /**
+     * 二维码图片的写入方式
+     */
+    private interface LabelWriter extends Closeable {
+        void write(QRCodeBatchResult result, byte[] content) throws IOException;
+
+        /**
+         * 保存检查点之前调用, 之前写入的内容必须已经完整
+         */
+        void commit() throws IOException;
+
+        int getParts();
+    }
+
+    /**
+     * 每个二维码写入为输出存储中单独的文件; 与 ZIP 分卷一样, 文件名相同时追加序号, 如: name(1).png
+     * <p>
+     * 记录整个任务已使用的文件名, 内存占用与生成成功的二维码数量成正比
+     */
+    private static final class DirectoryWriter implements LabelWriter {
+        private final QRCodeOutputSink sink;
+        private final String prefix;
+        private final Set<String> fileNames;
+
+        /**
+         * @param fileNames 之前已生成的文件名
+         */
+        private DirectoryWriter(QRCodeOutputSink sink, String prefix, Set<String> fileNames) {
+            this.sink = sink;
+            this.prefix = prefix;
+            this.fileNames = fileNames;
+        }
+
+        @Override
+        public void write(QRCodeBatchResult result, byte[] content) throws IOException {
+            String fileName = QRCodeBatchService.uniqueEntryName(QRCodeOutputSink.safeName(result.getFileName()), fileNames);
+            try (QRCodeOutputSink.Output output = sink.create(prefix + fileName)) {
+                output.write(content);
+                output.commit();
+            }
+            result.setFileName(fileName);
+        }
+
+        @Override
+        public void commit() {
+        }
+
+        @Override
+        public int getParts() {
+            return 0;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * 二维码写入 ZIP 分卷, 每次保存检查点时提交当前分卷 labels-00001.zip; 未提交的分卷在中断时被丢弃
+     */
+    private static final class ZipPartWriter implements LabelWriter {
+        private final QRCodeOutputSink sink;
+        private final String prefix;
+        private final Set<String> entryNames = new HashSet<>();
+        private int parts;
+        private QRCodeOutputSink.Output output;
+        private ZipOutputStream zos;
+
+        /**
+         * @param parts 已完成的分卷数量
+         */
+        private ZipPartWriter(QRCodeOutputSink sink, String prefix, int parts) {
+            this.sink = sink;
+            this.prefix = prefix;
+            this.parts = parts;
+        }
+
+        @Override
+        public void write(QRCodeBatchResult result, byte[] content) throws IOException {
+            if (zos == null) {
+                output = sink.create(prefix + partName(parts + 1));
+                zos = new ZipOutputStream(output);
+                entryNames.clear();
+            }
+            String entryName = QRCodeBatchService.uniqueEntryName(result.getFileName(), entryNames);
+            ZipUtil.addToZip(zos, entryName, entry -> entry.write(content));
+            result.setFileName(partName(parts + 1) + "!/" + entryName);
+        }
+
+        @Override
+        public void commit() throws IOException {
+            if (zos == null) {
+                return;
+            }
+            zos.finish();
+            output.commit();
+            close();
+            parts++;
+        }
+
+        @Override
+        public int getParts() {
+            return parts;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (zos != null) {
+                zos.close();
+                zos = null;
+                output = null;
+            }
+        }
+
+        private static String partName(int part) {
+            return String.format("labels-%05d.zip", part);
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package com.example.qrcode.service;
+
+import com.example.qrcode.config.QRCodeProperties;
+import com.example.qrcode.config.QRCodeProperties.QRCodeFontProperties;
+import com.example.qrcode.core.QRCodeGenerator;
+import com.example.qrcode.core.QRCodeIconCache;
+import com.example.qrcode.core.QRCodeLabelCache;
+import com.example.qrcode.core.QRCodeMetrics;
+import com.example.qrcode.core.QRCodeRenderLimiter;
+import com.example.qrcode.core.QRCodeRenderOptions;
+import com.example.qrcode.core.QRCodeRenderOptions.OutputFormat;
+import com.example.qrcode.core.QRCodeRenderStore;
+import com.example.qrcode.core.QRCodeVariant;
+import com.example.qrcode.core.QRCodeVerifier;
+import com.example.qrcode.entity.QRCodeExtraData;
+import com.google.zxing.WriterException;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 单个二维码图片的生成服务
+ * <p>
+ * 以渲染输入的摘要为键缓存编码后的图片, 同一把充电枪的二维码被重复请求时只需一次摘要计算与缓存查找。
+ * 开启磁盘存储时, 内存缓存未命中会再查找磁盘存储, 服务重启后不必重新生成。
+ * <p>
+ * 开启虚拟线程 ({@code spring.threads.virtual.enabled=true}) 时, 请求在虚拟线程中处理, 缓存查找、磁盘存储等阻塞操作不占用平台线程,
+ * 渲染则交给与 CPU 核数相同的 qrCodeInteractiveExecutor 执行, 虚拟线程只是等待结果。该线程池与批量生成使用的 qrCodeRenderExecutor 分开,
+ * 队列已满时拒绝渲染并返回 429, 不会排在批量任务之后。
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+@Slf4j
+@Service
+public class QRCodeLabelService {
+    /**
+     * 渲染逻辑的版本, 绘制方式变化导致输出变化时递增, 使旧的缓存与 ETag 失效
+     */
+    private static final String RENDER_VERSION = "1";
+
+    @Autowired
+    private QRCodeProperties qrCodeProperties;
+    @Autowired
+    private QRCodeLabelCache qrCodeLabelCache;
+    @Autowired(required = false)
+    private QRCodeRenderStore qrCodeRenderStore;
+    @Autowired(required = false)
+    @Qualifier("qrCodeRenderLimiter")
+    private QRCodeRenderLimiter qrCodeRenderLimiter;
+    @Autowired(required = false)
+    private QRCodeVerifier qrCodeVerifier;
+    @Autowired
+    @Qualifier("qrCodeInteractiveExecutor")
+    private ExecutorService renderExecutor;
+    @Autowired
+    private Environment environment;
+    /**
+     * 是否把渲染交给 qrCodeInteractiveExecutor 执行
+     */
+    private boolean offloadRendering;
+
+    @PostConstruct
+    public void init() {
+        offloadRendering = Threading.VIRTUAL.isActive(environment);
+        log.info("二维码渲染模式: {}", offloadRendering ? "虚拟线程处理请求, 渲染线程池执行渲染" : "请求线程直接渲染");
+    }
+
+    /**
+     * 生成二维码图片, 优先使用缓存
+     *
+     * @param options   渲染参数
+     * @param extraData 二维码额外的信息
+     * @return PNG 图片内容
+     * @throws WriterException 二维码编码失败
+     * @throws IOException     图片编码失败
+     * @throws QRCodeRenderLimiter.RejectedException 未命中缓存且渲染已饱和
+     * @apiNote 返回的数组可能为缓存中的共享实例, 调用方不得修改; 只有未命中缓存时才需要获取渲染许可
+     */
+    public byte[] render(QRCodeRenderOptions options, QRCodeExtraData extraData) throws WriterException, IOException {
+        return render(options, extraData, true);
+    }
+
+    /**
+     * 在调用方已持有的批量许可内生成二维码图片, 优先使用缓存, 不再获取渲染许可
+     * <p>
+     * 用于一个请求依次生成并输出多张二维码, 整个请求只占用一个批量许可, 见 {@link QRCodeBatchService#acquirePermit()}
+     *
+     * @param options   渲染参数
+     * @param extraData 二维码额外的信息
+     * @return PNG 图片内容
+     * @throws WriterException 二维码编码失败
+     * @throws IOException     图片编码失败
+     * @apiNote 返回的数组可能为缓存中的共享实例, 调用方不得修改
+     */
+    public byte[] renderWithinPermit(QRCodeRenderOptions options, QRCodeExtraData extraData) throws WriterException, IOException {
+        return render(options, extraData, false);
+    }
+
+    private byte[] render(QRCodeRenderOptions options, QRCodeExtraData extraData, boolean acquire) throws WriterException, IOException {
+        String key = renderKey(options, extraData);
+        byte[] content = qrCodeLabelCache.get(key);
+        if (content != null) {
+            return content;
+        }
+        if (qrCodeRenderStore != null) {
+            content = qrCodeRenderStore.get(key);
+            if (content != null) {
+                qrCodeLabelCache.put(key, content);
+                return content;
+            }
+        }
+        try (QRCodeRenderLimiter.Permit permit = acquire ? acquirePermit() : null) {
+            content = offloadRendering ? awaitRender(() -> renderLabel(options, extraData)) : renderLabel(options, extraData);
+        }
+        QRCodeMetrics.recordLabelBytes(content.length);
+        qrCodeLabelCache.put(key, content);
+        if (qrCodeRenderStore != null) {
+            try {
+                qrCodeRenderStore.put(key, content, options.getFormat());
+            } catch (IOException e) {
+                log.warn("保存二维码到磁盘存储失败: {}", key, e);
+            }
+        }
+        // 写入缓存之后再提交校验, 校验很快失败时也不会在移除之后才写入
+        verifyAsync(options, extraData, content, key);
+        return content;
+    }
+
+    /**
+     * 一次编码与排版, 生成多种分辨率与格式的二维码图片, 不使用缓存
+     *
+     * @param options   渲染参数, 决定布局的基准尺寸
+     * @param extraData 二维码额外的信息
+     * @param variants  输出规格
+     * @return 每种规格的图片内容, 按 variants 的顺序排列
+     * @throws WriterException 二维码编码失败
+     * @throws IOException     图片编码失败
+     * @throws QRCodeRenderLimiter.RejectedException 渲染已饱和
+     * @see QRCodeGenerator#renderVariants
+     */
+    public Map<QRCodeVariant, byte[]> renderVariants(QRCodeRenderOptions options, QRCodeExtraData extraData, List<QRCodeVariant> variants) throws WriterException, IOException {
+        Map<QRCodeVariant, byte[]> contents;
+        try (QRCodeRenderLimiter.Permit permit = acquirePermit()) {
+            RenderTask<Map<QRCodeVariant, byte[]>> task = () -> QRCodeGenerator.renderVariants(qrCodeProperties.getBaseText(), options, extraData, variants);
+            contents = offloadRendering ? awaitRender(task) : task.call();
+        }
+        contents.values().forEach(content -> QRCodeMetrics.recordLabelBytes(content.length));
+        return contents;
+    }
+
+    /**
+     * 按交互请求的抽样比例异步解码校验, 校验失败时从内存缓存与磁盘存储中移除, 下次请求重新渲染
+     */
+    private void verifyAsync(QRCodeRenderOptions options, QRCodeExtraData extraData, byte[] content, String key) {
+        if (qrCodeVerifier == null || options.getFormat() != OutputFormat.PNG
+                || !QRCodeVerifier.sample(qrCodeProperties.getVerify().getInteractiveRate())) {
+            return;
+        }
+        String expectedText = qrCodeProperties.getBaseText().replace("${GunCode}", extraData.getGunCode());
+        qrCodeVerifier.verifyAsync(content, expectedText, outcome -> {
+            if (outcome != QRCodeVerifier.Outcome.OK) {
+                log.error("二维码校验失败, 枪码: {}, 尺寸: {}, 结果: {}, 摘要: {}", extraData.getGunCode(), options.getSize(), outcome.getTag(), key);
+                qrCodeLabelCache.invalidate(key);
+                if (qrCodeRenderStore != null) {
+                    qrCodeRenderStore.remove(key);
+                }
+                QRCodeMetrics.recordVerifyInvalidated(outcome);
+            }
+        });
+    }
+
+    private byte[] renderLabel(QRCodeRenderOptions options, QRCodeExtraData extraData) throws WriterException, IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(32 * 1024);
+        QRCodeGenerator.writeQRCodeWithExtraData(qrCodeProperties.getBaseText(), options, extraData, output);
+        return output.toByteArray();
+    }
+
+    /**
+     * 在渲染线程池中渲染并等待结果, 调用方为虚拟线程时等待不占用平台线程
+     *
+     * @throws QRCodeRenderLimiter.RejectedException 渲染线程池的队列已满
+     */
+    private <T> T awaitRender(RenderTask<T> task) throws WriterException, IOException {
+        Future<T> future;
+        try {
+            future = renderExecutor.submit(task::call);
+        } catch (RejectedExecutionException e) {
+            QRCodeMetrics.recordAdmission("interactive-executor", System.nanoTime(), false);
+            throw new QRCodeRenderLimiter.RejectedException(qrCodeProperties.getAdmission().getRetryAfter());
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("生成二维码被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof WriterException writerException) {
+                throw writerException;
+            }
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * 获取渲染许可
+     *
+     * @return 渲染许可, 未开启准入控制时返回 null
+     * @throws QRCodeRenderLimiter.RejectedException 渲染已饱和
+     */
+    public QRCodeRenderLimiter.Permit acquirePermit() {
+        return qrCodeRenderLimiter == null ? null : qrCodeRenderLimiter.acquire();
+    }
+
+    /**
+     * 计算渲染输入的摘要, 输入相同则输出的图片相同
+     *
+     * @param options   渲染参数
+     * @param extraData 二维码额外的信息
+     * @return SHA-256 摘要的十六进制字符串
+     */
+    public String renderKey(QRCodeRenderOptions options, QRCodeExtraData extraData) {
+        MessageDigest digest = newDigest();
+        QRCodeFontProperties font = qrCodeProperties.getFont();
+        update(digest, RENDER_VERSION,
+                qrCodeProperties.getBaseText().replace("${GunCode}", String.valueOf(extraData.getGunCode())),
+                extraData.getStationName(), extraData.getArea(), extraData.getPileName(),
+                extraData.getGunNo(), extraData.getGunCode(),
+                String.valueOf(options.getSize()), String.valueOf(options.getQuietZone()),
+                options.getIconPath(), String.valueOf(QRCodeIconCache.sourceStamp(options.getIconPath())),
+                String.valueOf(options.getPngEncoder()), String.valueOf(options.getFormat()), String.valueOf(options.isOutlineText()),
+                font.getDefaultFont(), font.getMiSansMediumFont(), font.getMiSansNormalFont());
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * 计算一组二维码渲染输入的摘要
+     *
+     * @param options       渲染参数
+     * @param extraDataList 二维码额外的信息列表
+     * @return SHA-256 摘要的十六进制字符串
+     */
+    public String renderKey(QRCodeRenderOptions options, List<QRCodeExtraData> extraDataList) {
+        MessageDigest digest = newDigest();
+        for (QRCodeExtraData extraData : extraDataList) {
+            update(digest, renderKey(options, extraData));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * 获取缓存统计信息
+     */
+    public QRCodeLabelCache.Stats getCacheStats() {
+        return qrCodeLabelCache.getStats();
+    }
+
+    /**
+     * 获取磁盘存储统计信息
+     *
+     * @return 统计信息, 未开启磁盘存储时返回 null
+     */
+    public QRCodeRenderStore.Stats getStoreStats() {
+        return qrCodeRenderStore == null ? null : qrCodeRenderStore.getStats();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String... values) {
+        for (String value : values) {
+            // 以 \0 分隔各个字段, null 与空字符串区分开
+            digest.update(value == null ? new byte[]{1} : value.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+    }
+
+    /**
+     * 渲染逻辑, 可以在渲染线程池中执行
+     */
+    @FunctionalInterface
+    private interface RenderTask<T> {
+        T call() throws WriterException, IOException;
+    }
+}
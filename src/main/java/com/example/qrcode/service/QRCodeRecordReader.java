@@ -0,0 +1,323 @@
+package com.example.qrcode.service;
+
+import com.example.qrcode.entity.QRCodeExtraData;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FilenameUtils;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.BiConsumer;
+
+/**
+ * 逐条读取 CSV 或 JSONL 格式的充电枪数据
+ * <p>
+ * 每次只读取一条记录, 并记录下一条记录在文件中的字节偏移量, 中断的导入任务可以从偏移量处继续读取。
+ * <ul>
+ *     <li>CSV: 第一行为表头, 列名为 {@link QRCodeExtraData} 的字段名, 不区分大小写与下划线, 如: gunCode、gun_code;
+ *     以双引号开头的字段可以包含逗号、换行, 其中的双引号写作两个双引号; 字段中间的双引号按普通字符处理 (RFC 4180)</li>
+ *     <li>JSONL: 每行一个 {@link QRCodeExtraData} 对象</li>
+ * </ul>
+ * 空行跳过; 无法解析或超过 {@value #MAX_RECORD_BYTES} 字节的记录返回空的 {@link QRCodeExtraData}, 生成时按枪码为空处理。
+ * 超长的记录从下一个换行处继续读取。引号跨行的记录超过长度上限或到文件末尾仍未闭合时, 视为引号未闭合,
+ * 只把引号所在的一行作为无法解析的记录, 从该行之后继续读取, 后面的记录不会被吞掉。
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+@Slf4j
+public final class QRCodeRecordReader implements Closeable {
+    /**
+     * 单条记录的字节数上限
+     */
+    static final int MAX_RECORD_BYTES = 64 * 1024;
+    private static final int LOGGED_RECORD_CHARS = 200;
+    private static final String[] COLUMNS = {"stationname", "area", "pilename", "gunno", "guncode", "filename"};
+    private static final List<BiConsumer<QRCodeExtraData, String>> SETTERS = List.of(
+            QRCodeExtraData::setStationName, QRCodeExtraData::setArea, QRCodeExtraData::setPileName,
+            QRCodeExtraData::setGunNo, QRCodeExtraData::setGunCode, QRCodeExtraData::setFileName);
+
+    private final Format format;
+    private final ObjectMapper objectMapper;
+    private InputStream input;
+    private final ByteArrayOutputStream lineBuffer = new ByteArrayOutputStream(256);
+    /**
+     * CSV 每一列对应的字段下标, -1 表示忽略该列
+     */
+    private int[] columnFields;
+    private long offset;
+    /**
+     * 上一条记录被跳过的原因, 如: 超过长度上限; 为 null 时记录完整
+     */
+    private String skipped;
+
+    /**
+     * @param path         文件路径
+     * @param format       文件格式
+     * @param objectMapper JSONL 的解析器
+     * @param startOffset  开始读取的字节偏移量, 为 0 时从头读取; CSV 的表头总是从文件开头读取
+     * @throws IOException 读取失败, 或 CSV 表头缺少 gunCode 列
+     */
+    public QRCodeRecordReader(Path path, Format format, ObjectMapper objectMapper, long startOffset) throws IOException {
+        this.format = format;
+        this.objectMapper = objectMapper;
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            this.input = new BufferedInputStream(Channels.newInputStream(channel), 64 * 1024);
+            if (format == Format.CSV) {
+                readHeader();
+            }
+            if (startOffset > offset) {
+                // 读取表头时缓冲区已预读了后面的内容, 定位后重新创建缓冲流
+                channel.position(startOffset);
+                this.input = new BufferedInputStream(Channels.newInputStream(channel), 64 * 1024);
+                offset = startOffset;
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 读取下一条记录
+     *
+     * @return 记录, 读到文件末尾时返回 null
+     * @throws IOException 读取失败
+     */
+    public QRCodeExtraData next() throws IOException {
+        String record;
+        do {
+            record = readRecord();
+            if (record == null) {
+                return null;
+            }
+        } while (record.isBlank() && skipped == null);
+        if (skipped != null) {
+            log.warn("偏移量 {} 之前的记录{}, 已跳过: {}", offset, skipped, record);
+            return QRCodeExtraData.getInstance();
+        }
+        try {
+            return format == Format.CSV ? parseCsv(record) : objectMapper.readValue(record, QRCodeExtraData.class);
+        } catch (IOException | RuntimeException e) {
+            log.warn("无法解析偏移量 {} 之前的记录: {}", offset, e.getMessage());
+            return QRCodeExtraData.getInstance();
+        }
+    }
+
+    /**
+     * 下一条记录的字节偏移量, 即已读取的字节数
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    private void readHeader() throws IOException {
+        String header = readRecord();
+        if (header == null) {
+            throw new IOException("CSV 文件为空");
+        }
+        if (skipped != null) {
+            throw new IOException("CSV 表头" + skipped);
+        }
+        if (header.startsWith("\uFEFF")) {
+            header = header.substring(1);
+        }
+        List<String> names = splitCsv(header);
+        columnFields = new int[names.size()];
+        boolean hasGunCode = false;
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i).replace("_", "").trim().toLowerCase(Locale.ROOT);
+            columnFields[i] = -1;
+            for (int field = 0; field < COLUMNS.length; field++) {
+                if (COLUMNS[field].equals(name)) {
+                    columnFields[i] = field;
+                    hasGunCode |= "guncode".equals(name);
+                }
+            }
+        }
+        if (!hasGunCode) {
+            throw new IOException("CSV 表头缺少 gunCode 列: " + header);
+        }
+    }
+
+    private QRCodeExtraData parseCsv(String record) {
+        List<String> values = splitCsv(record);
+        QRCodeExtraData extraData = QRCodeExtraData.getInstance();
+        for (int i = 0; i < values.size() && i < columnFields.length; i++) {
+            String value = values.get(i).trim();
+            if (columnFields[i] >= 0 && !value.isEmpty()) {
+                SETTERS.get(columnFields[i]).accept(extraData, value);
+            }
+        }
+        return extraData;
+    }
+
+    /**
+     * 读取一条记录, CSV 中引号内的换行属于同一条记录; 文件末尾返回 null
+     * <p>
+     * 记录超过 {@value #MAX_RECORD_BYTES} 字节时丢弃后面的内容直到下一个换行, 设置 {@link #skipped} 并返回记录的开头部分。
+     * 跨行的记录超过长度上限或到文件末尾时引号仍未闭合, 则回到记录中第一个换行之后, 只跳过第一行
+     */
+    private String readRecord() throws IOException {
+        lineBuffer.reset();
+        skipped = null;
+        long start = offset;
+        // 记录开头做标记, 引号未闭合时回到第一个换行之后; 标记在读取超过长度上限之前一直有效
+        input.mark(MAX_RECORD_BYTES + 2);
+        int firstBreak = -1;
+        CsvState state = CsvState.FIELD_START;
+        int b;
+        while ((b = input.read()) != -1) {
+            offset++;
+            if (skipped != null) {
+                if (b == '\n') {
+                    return truncatedLine(lineBuffer.size());
+                }
+                continue;
+            }
+            if (b == '\n' && state != CsvState.QUOTED) {
+                return decodeLine();
+            }
+            if (b == '\n' && firstBreak < 0) {
+                firstBreak = lineBuffer.size();
+            }
+            if (format == Format.CSV) {
+                state = state.next(b);
+            }
+            if (lineBuffer.size() >= MAX_RECORD_BYTES) {
+                if (firstBreak >= 0) {
+                    return unterminatedQuote(start, firstBreak);
+                }
+                skipped = "超过 " + MAX_RECORD_BYTES + " 字节";
+                continue;
+            }
+            lineBuffer.write(b);
+        }
+        if (skipped != null) {
+            return truncatedLine(lineBuffer.size());
+        }
+        if (state == CsvState.QUOTED && firstBreak >= 0) {
+            return unterminatedQuote(start, firstBreak);
+        }
+        return lineBuffer.size() == 0 ? null : decodeLine();
+    }
+
+    /**
+     * 引号未闭合: 回到记录开头, 跳过第一行并返回第一行的内容
+     *
+     * @param start      记录开头的偏移量
+     * @param firstBreak 记录中第一个换行之前的字节数
+     */
+    private String unterminatedQuote(long start, int firstBreak) throws IOException {
+        input.reset();
+        for (long remaining = firstBreak + 1; remaining > 0; remaining--) {
+            input.read();
+        }
+        offset = start + firstBreak + 1;
+        skipped = "引号未闭合";
+        return truncatedLine(firstBreak);
+    }
+
+    /**
+     * 记录开头的 length 个字节, 用于日志, 最多 {@value #LOGGED_RECORD_CHARS} 个字符
+     */
+    private String truncatedLine(int length) {
+        String line = new String(lineBuffer.toByteArray(), 0, length, StandardCharsets.UTF_8);
+        return line.length() > LOGGED_RECORD_CHARS ? line.substring(0, LOGGED_RECORD_CHARS) + "..." : line;
+    }
+
+    private String decodeLine() {
+        String line = lineBuffer.toString(StandardCharsets.UTF_8);
+        return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+    }
+
+    /**
+     * 按逗号拆分字段, 双引号只在字段开头时表示引用
+     */
+    private static List<String> splitCsv(String record) {
+        List<String> values = new ArrayList<>(COLUMNS.length);
+        StringBuilder value = new StringBuilder();
+        CsvState state = CsvState.FIELD_START;
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            CsvState next = state.next(c);
+            if (next == CsvState.FIELD_START) {
+                values.add(value.toString());
+                value.setLength(0);
+            } else if (c != '"' || state == CsvState.UNQUOTED || next == CsvState.UNQUOTED
+                    || state == CsvState.QUOTE && next == CsvState.QUOTED) {
+                // 引用字段的开始与结束引号不属于字段内容, 两个连续的双引号保留一个
+                value.append(c);
+            }
+            state = next;
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    /**
+     * CSV 的解析状态
+     */
+    private enum CsvState {
+        /**
+         * 字段开头
+         */
+        FIELD_START,
+        /**
+         * 不以双引号开头的字段, 其中的双引号按普通字符处理
+         */
+        UNQUOTED,
+        /**
+         * 引用字段内, 换行与逗号属于字段内容
+         */
+        QUOTED,
+        /**
+         * 引用字段内的双引号之后: 再一个双引号表示转义, 否则引用结束
+         */
+        QUOTE;
+
+        CsvState next(int c) {
+            return switch (this) {
+                case FIELD_START -> c == ',' ? FIELD_START : c == '"' ? QUOTED : UNQUOTED;
+                case UNQUOTED -> c == ',' ? FIELD_START : UNQUOTED;
+                case QUOTED -> c == '"' ? QUOTE : QUOTED;
+                case QUOTE -> c == '"' ? QUOTED : c == ',' ? FIELD_START : UNQUOTED;
+            };
+        }
+    }
+
+    /**
+     * 文件格式
+     */
+    public enum Format {
+        /**
+         * 逗号分隔, 第一行为表头
+         */
+        CSV,
+        /**
+         * 每行一个 JSON 对象
+         */
+        JSONL;
+
+        /**
+         * 按扩展名推断文件格式, .jsonl 与 .ndjson 为 JSONL, 其余为 CSV
+         */
+        public static Format of(Path path) {
+            String extension = FilenameUtils.getExtension(path.getFileName().toString()).toLowerCase(Locale.ROOT);
+            return "jsonl".equals(extension) || "ndjson".equals(extension) ? JSONL : CSV;
+        }
+    }
+}
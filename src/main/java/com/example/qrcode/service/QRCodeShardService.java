@@ -0,0 +1,448 @@
+package com.example.qrcode.service;
+
+import com.example.qrcode.config.QRCodeProperties;
+import com.example.qrcode.config.QRCodeProperties.QRCodeShardProperties;
+import com.example.qrcode.core.QRCodeMetrics;
+import com.example.qrcode.core.QRCodeOutputSink;
+import com.example.qrcode.entity.QRCodeExtraData;
+import com.example.qrcode.entity.QRCodeImportRequest;
+import com.example.qrcode.entity.QRCodeShardChunk;
+import com.example.qrcode.entity.QRCodeShardJob;
+import com.example.qrcode.entity.QRCodeShardStatus;
+import com.example.qrcode.util.ZipUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 多实例分片批量任务
+ * <p>
+ * 创建任务时只保存任务, 由领取到切分的执行线程将输入文件按 {@code chunk-size} 条记录切分为分片, 只记录每个分片在文件中的偏移量,
+ * 分批追加到共享的 {@link QRCodeShardStore}, 已追加的分片不必等切分完成即可被领取; 切分的实例宕机后由其他实例从最后一个分片处继续。
+ * 启用分片任务的每个实例运行 {@code workers} 个执行线程, 循环领取分片、生成二维码并标记完成, 各实例之间只在领取与续约时访问存储,
+ * 吞吐量随实例数量线性增长。
+ * <p>
+ * 每个分片在 {@link QRCodeOutputSink} 中输出为 chunk-00001.zip 与 chunk-00001.jsonl, 分片完成时才提交。
+ * 实例宕机后租约到期, 分片由其他实例重新领取并完整重新生成; 原实例若仍在运行, 续约失败后放弃该分片, 未提交的输出被丢弃。
+ * 执行失败的分片保留租约直到到期, 再由任一实例重试; 领取次数达到 {@code max-attempts} 后标记为失败, 任务不会因此永远无法结束。
+ * 输入文件必须位于所有实例都能访问的共享存储上, 输出存储使用共享目录或对象存储。
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+@Slf4j
+@Service
+public class QRCodeShardService {
+    /**
+     * 切分时追加分片的最短间隔, 单位: 毫秒; 第一个分片立即追加
+     */
+    private static final long APPEND_INTERVAL_MILLIS = 1000;
+    @Autowired
+    private QRCodeProperties qrCodeProperties;
+    @Autowired
+    private QRCodeBatchService qrCodeBatchService;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private QRCodeOutputSink qrCodeOutputSink;
+    @Autowired(required = false)
+    private QRCodeShardStore qrCodeShardStore;
+    private final List<Thread> workers = new ArrayList<>();
+    /**
+     * 执行线程空闲等待时使用的监视器, 停止时唤醒
+     */
+    private final Object idle = new Object();
+    private volatile boolean stopped;
+    private String instanceId;
+
+    /**
+     * 是否启用分片批量任务
+     */
+    public boolean isEnabled() {
+        return qrCodeShardStore != null;
+    }
+
+    /**
+     * 创建任务, 不读取输入文件; 由领取到切分的执行线程确定分片边界
+     *
+     * @param request 任务请求, 输入文件相对于导入根目录, 输出目录为输出存储中的名称
+     * @return 任务进度, 切分尚未开始
+     * @throws IOException              保存任务失败
+     * @throws IllegalArgumentException 输入文件不存在, 路径不在导入根目录中, 或输出目录名称不合法
+     */
+    public QRCodeShardStatus create(QRCodeImportRequest request) throws IOException {
+        Path root = Path.of(qrCodeProperties.getImporting().getPath()).toAbsolutePath().normalize();
+        Path input = QRCodeImportService.resolve(root, request.getInput());
+        Path output = QRCodeImportService.resolve(root, request.getOutput());
+        if (!Files.isRegularFile(input)) {
+            throw new IllegalArgumentException("输入文件不存在: " + request.getInput());
+        }
+        String outputName = QRCodeOutputSink.checkName(root.relativize(output).toString().replace(File.separatorChar, '/'));
+        QRCodeRecordReader.Format format = StringUtils.isBlank(request.getFormat())
+                ? QRCodeRecordReader.Format.of(input)
+                : QRCodeRecordReader.Format.valueOf(request.getFormat().trim().toUpperCase(Locale.ROOT));
+        QRCodeShardJob job = new QRCodeShardJob()
+                .setJobId(UUID.randomUUID().toString().replace("-", ""))
+                .setInput(input.toString())
+                .setOutput(outputName)
+                .setFormat(format.name())
+                .setIndexing(true)
+                .setCreatedAt(System.currentTimeMillis());
+        qrCodeShardStore.create(job, List.of());
+        synchronized (idle) {
+            idle.notifyAll();
+        }
+        log.info("创建分片批量任务: {}, 输入: {}", job.getJobId(), input);
+        return toStatus(job, List.of());
+    }
+
+    /**
+     * 获取任务进度
+     *
+     * @param jobId 任务编号
+     * @return 任务进度, 任务不存在时返回 null
+     * @throws IOException 读取任务存储失败
+     */
+    public QRCodeShardStatus getStatus(String jobId) throws IOException {
+        QRCodeShardJob job = qrCodeShardStore.getJob(jobId);
+        return job == null ? null : toStatus(job, qrCodeShardStore.getChunks(jobId));
+    }
+
+    /**
+     * 获取所有任务的进度
+     *
+     * @throws IOException 读取任务存储失败
+     */
+    public List<QRCodeShardStatus> getStatuses() throws IOException {
+        List<QRCodeShardStatus> statuses = new ArrayList<>();
+        for (QRCodeShardJob job : qrCodeShardStore.getJobs()) {
+            statuses.add(toStatus(job, qrCodeShardStore.getChunks(job.getJobId())));
+        }
+        return statuses;
+    }
+
+    /**
+     * 启动执行线程
+     */
+    public synchronized void startWorkers() {
+        QRCodeShardProperties shard = qrCodeProperties.getShard();
+        instanceId = StringUtils.defaultIfBlank(shard.getInstanceId(), defaultInstanceId());
+        for (int i = 0; i < Math.max(1, shard.getWorkers()); i++) {
+            workers.add(Thread.ofPlatform().name("qrcode-shard-" + i).start(this::work));
+        }
+        log.info("分片批量任务执行线程已启动, 实例: {}, 线程数: {}", instanceId, workers.size());
+    }
+
+    /**
+     * 服务停止时通知执行线程停止, 执行中的分片在当前记录处停止并放弃租约, 分片立即可以被其他实例领取
+     * <p>
+     * 不中断执行线程: 线程在文件存储的读写中被中断时, 共享的锁文件通道会被关闭, 其他执行线程无法再放弃租约
+     */
+    @PreDestroy
+    public synchronized void shutdown() throws InterruptedException {
+        stopped = true;
+        synchronized (idle) {
+            idle.notifyAll();
+        }
+        for (Thread worker : workers) {
+            worker.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    private void work() {
+        QRCodeShardProperties shard = qrCodeProperties.getShard();
+        while (!stopped) {
+            QRCodeShardChunk chunk = null;
+            try {
+                chunk = qrCodeShardStore.claim(instanceId, shard.getLeaseTtl(), Math.max(1, shard.getMaxAttempts()));
+            } catch (IOException e) {
+                log.error("领取分片失败", e);
+            }
+            if (chunk != null) {
+                execute(chunk);
+                continue;
+            }
+            QRCodeShardJob job = null;
+            try {
+                job = qrCodeShardStore.claimIndexing(instanceId, shard.getLeaseTtl(), Math.max(1, shard.getMaxAttempts()));
+            } catch (IOException e) {
+                log.error("领取切分失败", e);
+            }
+            if (job != null) {
+                index(job);
+                continue;
+            }
+            synchronized (idle) {
+                if (stopped) {
+                    return;
+                }
+                try {
+                    idle.wait(shard.getPollInterval());
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 执行分片; 失败时不放弃租约, 租约到期后再由任一实例重试, 避免反复失败的分片占满执行线程;
+     * 领取次数已达上限时直接标记为失败
+     */
+    private void execute(QRCodeShardChunk chunk) {
+        long start = System.nanoTime();
+        boolean completed = false;
+        boolean lost = false;
+        try {
+            long failed = render(qrCodeShardStore.getJob(chunk.getJobId()), chunk);
+            completed = qrCodeShardStore.complete(chunk, failed);
+            lost = !completed;
+            if (completed) {
+                log.info("分片已完成: {}#{}, 记录数: {}, 失败: {}, 耗时: {} 毫秒", chunk.getJobId(), chunk.getIndex(),
+                        chunk.getRecords(), failed, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            } else {
+                log.warn("分片已被其他实例重新领取, 输出以最后完成的一次为准: {}#{}", chunk.getJobId(), chunk.getIndex());
+            }
+        } catch (LeaseLostException e) {
+            lost = true;
+            log.warn("租约已失效, 放弃分片: {}#{}", chunk.getJobId(), chunk.getIndex());
+        } catch (Exception e) {
+            if (stopped) {
+                log.info("实例停止, 放弃分片: {}#{}", chunk.getJobId(), chunk.getIndex());
+                try {
+                    qrCodeShardStore.release(chunk);
+                } catch (IOException ex) {
+                    log.warn("放弃租约失败, 分片将在租约到期后被重新领取: {}#{}", chunk.getJobId(), chunk.getIndex(), ex);
+                }
+            } else if (chunk.getAttempts() >= Math.max(1, qrCodeProperties.getShard().getMaxAttempts())) {
+                log.error("分片第 {} 次执行失败, 不再重试: {}#{}", chunk.getAttempts(), chunk.getJobId(), chunk.getIndex(), e);
+                try {
+                    qrCodeShardStore.fail(chunk);
+                } catch (IOException ex) {
+                    log.warn("标记分片失败时出错, 分片将在租约到期后被标记为失败: {}#{}", chunk.getJobId(), chunk.getIndex(), ex);
+                }
+            } else {
+                log.error("分片第 {} 次执行失败, 租约到期后重试: {}#{}", chunk.getAttempts(), chunk.getJobId(), chunk.getIndex(), e);
+            }
+        } finally {
+            QRCodeMetrics.recordShardChunk(start, completed, lost);
+        }
+    }
+
+    /**
+     * 切分输入文件, 从最后一个分片结束处继续; 完成的分片至多每 {@value #APPEND_INTERVAL_MILLIS} 毫秒追加一次,
+     * 每隔租约时长的三分之一续约一次。失败时与分片相同, 租约到期后重试, 领取次数已达上限时标记为切分失败
+     */
+    private void index(QRCodeShardJob job) {
+        QRCodeShardProperties shard = qrCodeProperties.getShard();
+        long leaseTtl = shard.getLeaseTtl();
+        int chunkSize = Math.max(1, shard.getChunkSize());
+        try {
+            List<QRCodeShardChunk> chunks = qrCodeShardStore.getChunks(job.getJobId());
+            QRCodeShardChunk last = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+            int nextIndex = chunks.size();
+            long records = last == null ? 0 : last.getFirstRecord() + last.getRecords();
+            log.info("开始切分: {}, 从第 {} 条记录继续", job.getJobId(), records);
+            List<QRCodeShardChunk> pending = new ArrayList<>();
+            try (QRCodeRecordReader reader = new QRCodeRecordReader(Path.of(job.getInput()),
+                    QRCodeRecordReader.Format.valueOf(job.getFormat()), objectMapper, last == null ? 0 : last.getEndOffset())) {
+                QRCodeShardChunk chunk = null;
+                long start = reader.getOffset();
+                long appendedAt = 0;
+                long renewAt = System.currentTimeMillis() + leaseTtl / 3;
+                while (!stopped && reader.next() != null) {
+                    if (chunk == null) {
+                        chunk = new QRCodeShardChunk().setJobId(job.getJobId()).setIndex(nextIndex++)
+                                .setStartOffset(start).setFirstRecord(records);
+                    }
+                    records++;
+                    chunk.setRecords(chunk.getRecords() + 1);
+                    start = reader.getOffset();
+                    if (chunk.getRecords() == chunkSize) {
+                        pending.add(chunk.setEndOffset(start));
+                        chunk = null;
+                    }
+                    long now = System.currentTimeMillis();
+                    if (now >= renewAt || !pending.isEmpty() && now - appendedAt >= APPEND_INTERVAL_MILLIS) {
+                        append(job, pending, false, leaseTtl);
+                        appendedAt = now;
+                        renewAt = now + leaseTtl / 3;
+                    }
+                }
+                if (stopped) {
+                    // 未满的分片丢弃, 其他实例从最后一个完整的分片处继续
+                    append(job, pending, false, 0);
+                    log.info("实例停止, 放弃切分: {}", job.getJobId());
+                    return;
+                }
+                if (chunk != null) {
+                    pending.add(chunk.setEndOffset(start));
+                }
+                append(job, pending, true, 0);
+            }
+            log.info("切分完成: {}, 记录数: {}, 分片数: {}", job.getJobId(), job.getRecords(), job.getChunks());
+        } catch (LeaseLostException e) {
+            log.warn("切分租约已失效, 放弃切分: {}", job.getJobId());
+        } catch (Exception e) {
+            if (job.getIndexAttempts() >= Math.max(1, shard.getMaxAttempts())) {
+                log.error("第 {} 次切分失败, 不再重试: {}", job.getIndexAttempts(), job.getJobId(), e);
+                try {
+                    qrCodeShardStore.failIndexing(job, e.getClass().getSimpleName() + ": " + e.getMessage());
+                } catch (IOException ex) {
+                    log.warn("标记切分失败时出错, 租约到期后标记为切分失败: {}", job.getJobId(), ex);
+                }
+            } else {
+                log.error("第 {} 次切分失败, 租约到期后重试: {}", job.getIndexAttempts(), job.getJobId(), e);
+            }
+        }
+    }
+
+    private void append(QRCodeShardJob job, List<QRCodeShardChunk> chunks, boolean last, long leaseMillis) throws IOException {
+        if (!qrCodeShardStore.appendChunks(job, chunks, last, leaseMillis)) {
+            throw new LeaseLostException();
+        }
+        chunks.clear();
+    }
+
+    /**
+     * 生成分片中的二维码, 每隔租约时长的三分之一续约一次
+     *
+     * @return 生成失败的记录数
+     */
+    private long render(QRCodeShardJob job, QRCodeShardChunk chunk) throws IOException {
+        if (job == null) {
+            throw new IOException("任务不存在: " + chunk.getJobId());
+        }
+        long leaseTtl = qrCodeProperties.getShard().getLeaseTtl();
+        String name = job.getOutput() + "/" + chunkName(chunk);
+        long failed;
+        try (QRCodeRecordReader reader = new QRCodeRecordReader(Path.of(job.getInput()),
+                QRCodeRecordReader.Format.valueOf(job.getFormat()), objectMapper, chunk.getStartOffset());
+             QRCodeOutputSink.Output zipOutput = qrCodeOutputSink.create(name + ".zip");
+             ZipOutputStream zos = new ZipOutputStream(zipOutput);
+             QRCodeOutputSink.Output resultsOutput = qrCodeOutputSink.create(name + ".jsonl");
+             Writer results = new OutputStreamWriter(resultsOutput, StandardCharsets.UTF_8)) {
+            Iterator<QRCodeExtraData> source = new Iterator<>() {
+                private QRCodeExtraData next;
+
+                @Override
+                public boolean hasNext() {
+                    if (next == null && !stopped && reader.getOffset() < chunk.getEndOffset()) {
+                        try {
+                            next = reader.next();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                    return next != null;
+                }
+
+                @Override
+                public QRCodeExtraData next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    QRCodeExtraData current = next;
+                    next = null;
+                    return current;
+                }
+            };
+            Set<String> entryNames = new HashSet<>();
+            long[] renewAt = {System.currentTimeMillis() + leaseTtl / 3};
+            try {
+                failed = qrCodeBatchService.renderEach(qrCodeProperties.toRenderOptions(400), source, (result, content) -> {
+                    result.setIndex((int) (chunk.getFirstRecord() + result.getIndex()));
+                    if (content != null) {
+                        String entryName = QRCodeBatchService.uniqueEntryName(result.getFileName(), entryNames);
+                        ZipUtil.addToZip(zos, entryName, entry -> entry.write(content));
+                        result.setFileName(chunkName(chunk) + ".zip!/" + entryName);
+                    }
+                    results.write(objectMapper.writeValueAsString(result));
+                    results.write('\n');
+                    if (System.currentTimeMillis() >= renewAt[0]) {
+                        if (!qrCodeShardStore.renew(chunk, leaseTtl)) {
+                            throw new LeaseLostException();
+                        }
+                        renewAt[0] = System.currentTimeMillis() + leaseTtl / 3;
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (stopped) {
+                throw new IOException("实例正在停止");
+            }
+            zos.finish();
+            zipOutput.commit();
+            results.flush();
+            resultsOutput.commit();
+        }
+        return failed;
+    }
+
+    private static String chunkName(QRCodeShardChunk chunk) {
+        return String.format("chunk-%05d", chunk.getIndex() + 1);
+    }
+
+    private static QRCodeShardStatus toStatus(QRCodeShardJob job, List<QRCodeShardChunk> chunks) {
+        QRCodeShardStatus status = new QRCodeShardStatus()
+                .setJobId(job.getJobId())
+                .setInput(job.getInput())
+                .setOutput(job.getOutput())
+                .setIndexing(job.isIndexing())
+                .setRecords(job.getRecords())
+                .setChunks(chunks.size())
+                .setError(job.getError());
+        long now = System.currentTimeMillis();
+        Set<String> owners = new TreeSet<>();
+        for (QRCodeShardChunk chunk : chunks) {
+            switch (chunk.getState()) {
+                case PENDING -> status.setPendingChunks(status.getPendingChunks() + 1);
+                case LEASED -> {
+                    status.setLeasedChunks(status.getLeasedChunks() + 1);
+                    if (chunk.getLeaseExpiresAt() >= now) {
+                        owners.add(chunk.getOwner());
+                    }
+                }
+                case DONE -> status.setDoneChunks(status.getDoneChunks() + 1)
+                        .setCompletedRecords(status.getCompletedRecords() + chunk.getRecords())
+                        .setFailed(status.getFailed() + chunk.getFailed());
+                case FAILED -> status.setFailedChunks(status.getFailedChunks() + 1)
+                        .setFailed(status.getFailed() + chunk.getRecords());
+            }
+        }
+        return status.setOwners(new ArrayList<>(owners));
+    }
+
+    private static String defaultInstanceId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            host = "localhost";
+        }
+        return host + "-" + ProcessHandle.current().pid();
+    }
+
+    /**
+     * 续约失败, 分片已被其他实例重新领取
+     */
+    private static class LeaseLostException extends IOException {
+    }
+}
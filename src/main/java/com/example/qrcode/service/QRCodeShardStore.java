@@ -0,0 +1,138 @@
+package com.example.qrcode.service;
+
+import com.example.qrcode.entity.QRCodeShardChunk;
+import com.example.qrcode.entity.QRCodeShardJob;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 分片批量任务的共享存储
+ * <p>
+ * 所有实例通过同一个存储领取分片: 领取时获得有期限的租约, 执行期间续约, 完成后标记为已完成;
+ * 实例宕机后租约到期, 分片由其他实例重新领取。租约以 owner 与 attempts 标识,
+ * 续约与完成时二者不一致说明分片已被重新领取, 操作返回 false。
+ * 领取次数达到上限的分片标记为失败, 不再领取, 反复失败的分片不会使任务永远无法结束。
+ * 输入文件的切分同样由实例领取后进行, 以任务上的切分租约保护, 切分出的分片分批追加, 不必等切分完成即可领取。
+ * 租约到期时间使用各实例的系统时间, 实例之间的时钟偏差应远小于租约时长。
+ *
+ * @author weasley
+ * @version 1.0.0
+ * @see QRCodeFileShardStore
+ */
+public interface QRCodeShardStore {
+    /**
+     * 保存任务与已有的分片
+     *
+     * @param job    任务, 需要切分时 {@link QRCodeShardJob#isIndexing()} 为 true
+     * @param chunks 分片
+     * @throws IOException 保存失败
+     */
+    void create(QRCodeShardJob job, List<QRCodeShardChunk> chunks) throws IOException;
+
+    /**
+     * 获取任务
+     *
+     * @param jobId 任务编号
+     * @return 任务, 不存在时返回 null
+     * @throws IOException 读取失败
+     */
+    QRCodeShardJob getJob(String jobId) throws IOException;
+
+    /**
+     * 获取所有任务, 按创建时间排列
+     *
+     * @throws IOException 读取失败
+     */
+    List<QRCodeShardJob> getJobs() throws IOException;
+
+    /**
+     * 获取任务的所有分片
+     *
+     * @param jobId 任务编号
+     * @return 分片, 任务不存在时返回空列表
+     * @throws IOException 读取失败
+     */
+    List<QRCodeShardChunk> getChunks(String jobId) throws IOException;
+
+    /**
+     * 领取一个等待中或租约已到期的分片, 先创建的任务优先; 租约已到期且领取次数已达上限的分片标记为失败
+     *
+     * @param owner       实例标识
+     * @param leaseMillis 租约时长, 单位: 毫秒
+     * @param maxAttempts 每个分片最多领取的次数
+     * @return 领取到的分片, 没有可领取的分片时返回 null
+     * @throws IOException 读写失败
+     */
+    QRCodeShardChunk claim(String owner, long leaseMillis, int maxAttempts) throws IOException;
+
+    /**
+     * 领取一个正在切分且切分租约空闲或已到期的任务, 先创建的任务优先; 切分租约已到期且领取次数已达上限的任务标记为切分失败
+     *
+     * @param owner       实例标识
+     * @param leaseMillis 租约时长, 单位: 毫秒
+     * @param maxAttempts 每个任务最多领取切分的次数
+     * @return 领取到的任务, 从最后一个分片结束处继续切分; 没有需要切分的任务时返回 null
+     * @throws IOException 读写失败
+     */
+    QRCodeShardJob claimIndexing(String owner, long leaseMillis, int maxAttempts) throws IOException;
+
+    /**
+     * 追加切分出的分片并续约切分租约
+     *
+     * @param job         领取到的任务
+     * @param chunks      新的分片, 序号紧接已有的分片
+     * @param last        是否已切分完成, 完成后释放切分租约
+     * @param leaseMillis 续约时长, 单位: 毫秒; 为 0 时放弃切分租约, 任务立即可以被重新领取继续切分
+     * @return 切分租约已被其他实例取得时返回 false, 分片不会追加
+     * @throws IOException 读写失败
+     */
+    boolean appendChunks(QRCodeShardJob job, List<QRCodeShardChunk> chunks, boolean last, long leaseMillis) throws IOException;
+
+    /**
+     * 标记切分失败, 不再切分, 只执行已切分出的分片
+     *
+     * @param job   领取到的任务
+     * @param error 失败原因
+     * @return 切分租约已被其他实例取得时返回 false
+     * @throws IOException 读写失败
+     */
+    boolean failIndexing(QRCodeShardJob job, String error) throws IOException;
+
+    /**
+     * 续约
+     *
+     * @param chunk       领取到的分片
+     * @param leaseMillis 租约时长, 单位: 毫秒
+     * @return 租约已被其他实例取得时返回 false
+     * @throws IOException 读写失败
+     */
+    boolean renew(QRCodeShardChunk chunk, long leaseMillis) throws IOException;
+
+    /**
+     * 标记分片已完成
+     *
+     * @param chunk  领取到的分片
+     * @param failed 生成失败的记录数
+     * @return 租约已被其他实例取得时返回 false
+     * @throws IOException 读写失败
+     */
+    boolean complete(QRCodeShardChunk chunk, long failed) throws IOException;
+
+    /**
+     * 标记分片失败, 不再领取
+     *
+     * @param chunk 领取到的分片
+     * @return 租约已被其他实例取得时返回 false
+     * @throws IOException 读写失败
+     */
+    boolean fail(QRCodeShardChunk chunk) throws IOException;
+
+    /**
+     * 放弃租约, 分片立即可以被重新领取
+     *
+     * @param chunk 领取到的分片
+     * @throws IOException 读写失败
+     */
+    void release(QRCodeShardChunk chunk) throws IOException;
+}
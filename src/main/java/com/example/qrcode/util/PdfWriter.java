@@ -0,0 +1,237 @@
+package com.example.qrcode.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * 最小化的 PDF 写入工具
+ * <p>
+ * 对象写入后立即输出, 只在内存中保留每个对象的偏移量, 用于最后写入交叉引用表。
+ * 对象编号可以先预留、后写入, 如: 页面树在所有页面写完后才写入, 页面先引用它的编号。
+ * <pre>{@code
+ * try (PdfWriter pdf = new PdfWriter(output)) {
+ *     int pages = pdf.reserve();
+ *     int page = pdf.writeObject("<< /Type /Page /Parent " + PdfWriter.ref(pages) + " ... >>");
+ *     pdf.writeObject(pages, "<< /Type /Pages /Kids [" + PdfWriter.ref(page) + "] /Count 1 >>");
+ *     pdf.setRoot(pdf.writeObject("<< /Type /Catalog /Pages " + PdfWriter.ref(pages) + " >>"));
+ * }
+ * }</pre>
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+public final class PdfWriter implements AutoCloseable {
+    private final CountingOutputStream output;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    private final byte[] deflateBuffer = new byte[16 * 1024];
+    /**
+     * 对象的偏移量, 下标为对象编号, 0 号对象不使用
+     */
+    private long[] offsets = new long[64];
+    private int objectCount;
+    private int root;
+    private boolean closed;
+
+    /**
+     * @param output 输出流, 关闭 PdfWriter 时不会关闭输出流
+     * @throws IOException 写入失败
+     */
+    public PdfWriter(OutputStream output) throws IOException {
+        this.output = new CountingOutputStream(output);
+        // 第二行的二进制注释提示传输工具按二进制处理
+        this.output.write("%PDF-1.4\n%âãÏÓ\n".getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * 预留对象编号, 之后通过 {@link #writeObject(int, String)} 或 {@link #writeStream(int, String, byte[], boolean)} 写入
+     *
+     * @return 对象编号
+     */
+    public int reserve() {
+        objectCount++;
+        if (objectCount >= offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[objectCount] = -1;
+        return objectCount;
+    }
+
+    /**
+     * 写入新的对象
+     *
+     * @param body 对象内容, 如: {@code << /Type /Page >>}
+     * @return 对象编号
+     * @throws IOException 写入失败
+     */
+    public int writeObject(String body) throws IOException {
+        int id = reserve();
+        writeObject(id, body);
+        return id;
+    }
+
+    /**
+     * 写入预留的对象
+     *
+     * @param id   预留的对象编号
+     * @param body 对象内容
+     * @throws IOException 写入失败
+     */
+    public void writeObject(int id, String body) throws IOException {
+        beginObject(id);
+        output.write(body.getBytes(StandardCharsets.ISO_8859_1));
+        output.write("\nendobj\n".getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * 写入新的流对象
+     *
+     * @param dictionary 流的字典中除 /Length 与 /Filter 以外的内容, 如: {@code /Type /XObject /Subtype /Form}
+     * @param data       流的内容
+     * @param compress   是否使用 FlateDecode 压缩
+     * @return 对象编号
+     * @throws IOException 写入失败
+     */
+    public int writeStream(String dictionary, byte[] data, boolean compress) throws IOException {
+        int id = reserve();
+        writeStream(id, dictionary, data, compress);
+        return id;
+    }
+
+    /**
+     * 写入预留的流对象
+     *
+     * @param id         预留的对象编号
+     * @param dictionary 流的字典中除 /Length 与 /Filter 以外的内容
+     * @param data       流的内容
+     * @param compress   是否使用 FlateDecode 压缩
+     * @throws IOException 写入失败
+     */
+    public void writeStream(int id, String dictionary, byte[] data, boolean compress) throws IOException {
+        byte[] content = compress ? deflate(data) : data;
+        beginObject(id);
+        String header = "<< " + dictionary + (compress ? " /Filter /FlateDecode" : "") + " /Length " + content.length + " >>\nstream\n";
+        output.write(header.getBytes(StandardCharsets.ISO_8859_1));
+        output.write(content);
+        output.write("\nendstream\nendobj\n".getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * 设置文档的根对象 (Catalog)
+     */
+    public void setRoot(int root) {
+        this.root = root;
+    }
+
+    /**
+     * 将已写入的内容推送到输出流
+     *
+     * @throws IOException 写入失败
+     */
+    public void flush() throws IOException {
+        output.flush();
+    }
+
+    /**
+     * 写入交叉引用表与文件尾, 不关闭输出流
+     *
+     * @throws IOException 写入失败, 或有预留的对象未写入
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        deflater.end();
+        if (root == 0) {
+            throw new IOException("PDF root object is not set");
+        }
+        long xref = output.count;
+        StringBuilder table = new StringBuilder(32 + objectCount * 20);
+        table.append("xref\n0 ").append(objectCount + 1).append("\n0000000000 65535 f \n");
+        for (int id = 1; id <= objectCount; id++) {
+            if (offsets[id] < 0) {
+                throw new IOException("PDF object " + id + " was reserved but never written");
+            }
+            table.append(String.format("%010d 00000 n \n", offsets[id]));
+        }
+        table.append("trailer\n<< /Size ").append(objectCount + 1).append(" /Root ").append(ref(root))
+                .append(" >>\nstartxref\n").append(xref).append("\n%%EOF\n");
+        output.write(table.toString().getBytes(StandardCharsets.ISO_8859_1));
+        output.flush();
+    }
+
+    /**
+     * 对象引用, 如: {@code 3 0 R}
+     */
+    public static String ref(int id) {
+        return id + " 0 R";
+    }
+
+    /**
+     * 数值保留两位小数并去掉末尾的 0, PDF 不支持科学计数法
+     */
+    public static String number(double value) {
+        long hundredths = Math.round(value * 100.0);
+        String sign = hundredths < 0 ? "-" : "";
+        hundredths = Math.abs(hundredths);
+        long fraction = hundredths % 100;
+        if (fraction == 0) {
+            return sign + hundredths / 100;
+        }
+        return sign + hundredths / 100 + (fraction % 10 == 0 ? "." + fraction / 10 : fraction < 10 ? ".0" + fraction : "." + fraction);
+    }
+
+    private void beginObject(int id) throws IOException {
+        if (id <= 0 || id > objectCount || offsets[id] >= 0) {
+            throw new IllegalStateException("PDF object " + id + " is not reserved or already written");
+        }
+        offsets[id] = output.count;
+        output.write((id + " 0 obj\n").getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private byte[] deflate(byte[] data) {
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+        while (!deflater.finished()) {
+            int length = deflater.deflate(deflateBuffer);
+            compressed.write(deflateBuffer, 0, length);
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * 记录已写入的字节数, 作为对象的偏移量
+     */
+    private static final class CountingOutputStream extends OutputStream {
+        private final OutputStream delegate;
+        private long count;
+
+        private CountingOutputStream(OutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            delegate.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+    }
+}
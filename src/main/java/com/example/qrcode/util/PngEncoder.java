@@ -0,0 +1,531 @@
+package com.example.qrcode.util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * PNG 编码器
+ * <p>
+ * 相比 {@code ImageIO.write(image, "png", ...)} 总是输出 24 位真彩色, 本编码器可以输出 8 位灰度或调色板图片,
+ * 并可以指定压缩级别与行过滤方式。二维码图片只有黑白两色加少量灰度文字与图标颜色, 输出调色板图片时
+ * 数据量约为真彩色的三分之一。
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+public final class PngEncoder {
+    /**
+     * 默认编码器: 自动选择颜色类型, 压缩级别 6, 自适应行过滤
+     */
+    public static final PngEncoder DEFAULT = new PngEncoder(ColorMode.AUTO, 6, FilterStrategy.ADAPTIVE);
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int MAX_PALETTE_SIZE = 256;
+    private static final int IDAT_CHUNK_SIZE = 64 * 1024;
+
+    private final ColorMode colorMode;
+    private final int compressionLevel;
+    private final FilterStrategy filterStrategy;
+
+    /**
+     * @param colorMode        颜色类型
+     * @param compressionLevel 压缩级别, 0 ~ 9
+     * @param filterStrategy   行过滤方式
+     */
+    public PngEncoder(ColorMode colorMode, int compressionLevel, FilterStrategy filterStrategy) {
+        if (compressionLevel < Deflater.NO_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Compression level must be between 0 and 9: " + compressionLevel);
+        }
+        this.colorMode = Objects.requireNonNull(colorMode, "colorMode");
+        this.compressionLevel = compressionLevel;
+        this.filterStrategy = Objects.requireNonNull(filterStrategy, "filterStrategy");
+    }
+
+    /**
+     * 将图片编码为 PNG 并写入输出流
+     *
+     * @param image  图片
+     * @param output 输出流, 调用方负责关闭
+     * @throws IOException 写入失败
+     */
+    public void encode(BufferedImage image, OutputStream output) throws IOException {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        PixelReader pixels = new PixelReader(image);
+        Layout layout = chooseLayout(pixels, image.getColorModel().hasAlpha());
+
+        DataOutputStream out = new DataOutputStream(output);
+        out.write(SIGNATURE);
+        ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+        DataOutputStream headerOut = new DataOutputStream(header);
+        headerOut.writeInt(width);
+        headerOut.writeInt(height);
+        headerOut.writeByte(8); // 位深度
+        headerOut.writeByte(layout.colorType());
+        headerOut.writeByte(0); // 压缩方式: deflate
+        headerOut.writeByte(0); // 过滤方式: 自适应
+        headerOut.writeByte(0); // 不隔行扫描
+        writeChunk(out, "IHDR", header.toByteArray(), 0, header.size());
+        if (layout.palette() != null) {
+            int[] palette = layout.palette();
+            byte[] plte = new byte[palette.length * 3];
+            for (int i = 0; i < palette.length; i++) {
+                plte[i * 3] = (byte) (palette[i] >> 16);
+                plte[i * 3 + 1] = (byte) (palette[i] >> 8);
+                plte[i * 3 + 2] = (byte) palette[i];
+            }
+            writeChunk(out, "PLTE", plte, 0, plte.length);
+        }
+
+        FilterStrategy filter = filterStrategy;
+        if (filter == FilterStrategy.ADAPTIVE && layout.palette() != null) {
+            // PNG 规范建议调色板图片不做行过滤
+            filter = FilterStrategy.NONE;
+        }
+        int bpp = layout.bytesPerPixel();
+        int rowBytes = width * bpp;
+        Scratch scratch = Scratch.acquire(compressionLevel, width, rowBytes);
+        try {
+            byte[] previous = scratch.previous;
+            byte[] current = scratch.current;
+            byte[] filtered = scratch.filtered;
+            byte[] candidate = scratch.candidate;
+            int[] argb = scratch.argb;
+            Arrays.fill(previous, (byte) 0);
+            IdatOutputStream idat = new IdatOutputStream(out);
+            for (int y = 0; y < height; y++) {
+                pixels.readRow(y, argb);
+                layout.pack(argb, current);
+                if (filter == FilterStrategy.ADAPTIVE) {
+                    long best = Long.MAX_VALUE;
+                    for (FilterStrategy type : FilterStrategy.FILTER_TYPES) {
+                        long score = applyFilter(type, current, previous, bpp, candidate);
+                        if (score < best) {
+                            best = score;
+                            byte[] swap = filtered;
+                            filtered = candidate;
+                            candidate = swap;
+                        }
+                    }
+                } else {
+                    applyFilter(filter, current, previous, bpp, filtered);
+                }
+                scratch.deflate(filtered, rowBytes + 1, idat);
+                byte[] swap = previous;
+                previous = current;
+                current = swap;
+            }
+            scratch.finish(idat);
+        } finally {
+            scratch.release();
+        }
+        writeChunk(out, "IEND", new byte[0], 0, 0);
+        out.flush();
+    }
+
+    private Layout chooseLayout(PixelReader pixels, boolean hasAlpha) {
+        if (colorMode == ColorMode.RGB) {
+            return hasAlpha ? Layout.RGBA : Layout.RGB;
+        }
+        // 统计颜色, 判断是否透明、是否全部为灰色
+        Map<Integer, Integer> counts = new HashMap<>();
+        boolean opaque = true;
+        boolean gray = true;
+        int[] row = new int[pixels.width];
+        int last = 0;
+        int run = 0;
+        for (int y = 0; y < pixels.height; y++) {
+            pixels.readRow(y, row);
+            for (int argb : row) {
+                if (run > 0 && argb == last) {
+                    run++;
+                    continue;
+                }
+                if (run > 0) {
+                    counts.merge(last, run, Integer::sum);
+                }
+                last = argb;
+                run = 1;
+                opaque &= (argb >>> 24) == 0xFF;
+                int r = (argb >> 16) & 0xFF;
+                gray &= r == ((argb >> 8) & 0xFF) && r == (argb & 0xFF);
+            }
+            if (!opaque) {
+                return Layout.RGBA;
+            }
+            if (!gray && colorMode == ColorMode.AUTO && counts.size() > MAX_PALETTE_SIZE) {
+                return Layout.RGB;
+            }
+        }
+        if (run > 0) {
+            counts.merge(last, run, Integer::sum);
+        }
+        if (colorMode == ColorMode.GRAY || gray) {
+            return Layout.GRAY;
+        }
+        if (counts.size() <= MAX_PALETTE_SIZE) {
+            return Layout.indexed(counts.keySet().stream().mapToInt(Integer::intValue).toArray());
+        }
+        if (colorMode == ColorMode.AUTO) {
+            return Layout.RGB;
+        }
+        // 颜色数超过调色板容量: 保留出现次数最多的颜色, 其余颜色映射到最接近的调色板颜色
+        int[] palette = counts.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Integer>comparingByValue().reversed())
+                .limit(MAX_PALETTE_SIZE)
+                .mapToInt(Map.Entry::getKey)
+                .toArray();
+        return Layout.indexed(palette);
+    }
+
+    /**
+     * 按 PNG 规范对一行数据做过滤, 返回过滤结果的绝对值之和, 用于自适应选择过滤方式
+     */
+    private static long applyFilter(FilterStrategy type, byte[] current, byte[] previous, int bpp, byte[] out) {
+        out[0] = (byte) type.code;
+        int length = current.length;
+        long sum = 0;
+        switch (type) {
+            case SUB -> {
+                for (int i = 0; i < length; i++) {
+                    byte value = (byte) (current[i] - (i >= bpp ? current[i - bpp] : 0));
+                    out[i + 1] = value;
+                    sum += Math.abs(value);
+                }
+            }
+            case UP -> {
+                for (int i = 0; i < length; i++) {
+                    byte value = (byte) (current[i] - previous[i]);
+                    out[i + 1] = value;
+                    sum += Math.abs(value);
+                }
+            }
+            case AVERAGE -> {
+                for (int i = 0; i < length; i++) {
+                    int a = i >= bpp ? current[i - bpp] & 0xFF : 0;
+                    byte value = (byte) (current[i] - ((a + (previous[i] & 0xFF)) >>> 1));
+                    out[i + 1] = value;
+                    sum += Math.abs(value);
+                }
+            }
+            case PAETH -> {
+                for (int i = 0; i < length; i++) {
+                    int a = i >= bpp ? current[i - bpp] & 0xFF : 0;
+                    int c = i >= bpp ? previous[i - bpp] & 0xFF : 0;
+                    byte value = (byte) (current[i] - paeth(a, previous[i] & 0xFF, c));
+                    out[i + 1] = value;
+                    sum += Math.abs(value);
+                }
+            }
+            default -> {
+                System.arraycopy(current, 0, out, 1, length);
+                for (byte value : current) {
+                    sum += Math.abs(value);
+                }
+            }
+        }
+        return sum;
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) {
+            return a;
+        }
+        return pb <= pc ? b : c;
+    }
+
+    private static void writeChunk(DataOutputStream out, String type, byte[] data, int offset, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, offset, length);
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, offset, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    @Override
+    public String toString() {
+        return "PngEncoder{colorMode=" + colorMode + ", compressionLevel=" + compressionLevel + ", filterStrategy=" + filterStrategy + '}';
+    }
+
+    /**
+     * 输出的颜色类型
+     */
+    public enum ColorMode {
+        /**
+         * 无损地选择最小的颜色类型: 全部为灰色时输出灰度图, 颜色数不超过 256 时输出调色板图片, 否则输出真彩色
+         */
+        AUTO,
+        /**
+         * 8 位灰度, 彩色像素会被转换为灰度
+         */
+        GRAY,
+        /**
+         * 调色板图片, 颜色数超过 256 时保留出现次数最多的颜色, 其余颜色映射到最接近的调色板颜色
+         */
+        INDEXED,
+        /**
+         * 24 位真彩色
+         */
+        RGB
+    }
+
+    /**
+     * 行过滤方式
+     */
+    public enum FilterStrategy {
+        NONE(0), SUB(1), UP(2), AVERAGE(3), PAETH(4),
+        /**
+         * 逐行选择过滤结果绝对值之和最小的方式, 调色板图片不过滤
+         */
+        ADAPTIVE(-1);
+
+        private static final FilterStrategy[] FILTER_TYPES = {NONE, SUB, UP, AVERAGE, PAETH};
+
+        private final int code;
+
+        FilterStrategy(int code) {
+            this.code = code;
+        }
+    }
+
+    /**
+     * 按行读取 ARGB 像素, {@code TYPE_INT_RGB}/{@code TYPE_INT_ARGB} 直接读取数据数组
+     */
+    private static final class PixelReader {
+        private final BufferedImage image;
+        private final int width;
+        private final int height;
+        private final int[] data;
+        private final int stride;
+        private final int offset;
+        private final boolean opaqueInt;
+
+        private PixelReader(BufferedImage image) {
+            this.image = image;
+            this.width = image.getWidth();
+            this.height = image.getHeight();
+            int type = image.getType();
+            if (type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB) {
+                this.data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+                this.stride = ((SinglePixelPackedSampleModel) image.getSampleModel()).getScanlineStride();
+                this.offset = image.getRaster().getDataBuffer().getOffset();
+                this.opaqueInt = type == BufferedImage.TYPE_INT_RGB;
+            } else {
+                this.data = null;
+                this.stride = 0;
+                this.offset = 0;
+                this.opaqueInt = false;
+            }
+        }
+
+        private void readRow(int y, int[] row) {
+            if (data == null) {
+                image.getRGB(0, y, width, 1, row, 0, width);
+                return;
+            }
+            System.arraycopy(data, offset + y * stride, row, 0, width);
+            if (opaqueInt) {
+                for (int x = 0; x < width; x++) {
+                    row[x] |= 0xFF000000;
+                }
+            }
+        }
+    }
+
+    /**
+     * 输出的像素格式
+     */
+    private record Layout(int colorType, int bytesPerPixel, int[] palette, Map<Integer, Integer> indexes) {
+        private static final Layout GRAY = new Layout(0, 1, null, null);
+        private static final Layout RGB = new Layout(2, 3, null, null);
+        private static final Layout RGBA = new Layout(6, 4, null, null);
+
+        private static Layout indexed(int[] palette) {
+            Map<Integer, Integer> indexes = new HashMap<>(palette.length * 2);
+            for (int i = 0; i < palette.length; i++) {
+                indexes.put(palette[i], i);
+            }
+            return new Layout(3, 1, palette, indexes);
+        }
+
+        private void pack(int[] argb, byte[] out) {
+            switch (colorType) {
+                case 0 -> {
+                    for (int x = 0; x < argb.length; x++) {
+                        int p = argb[x];
+                        // ITU-R BT.601 亮度
+                        out[x] = (byte) ((((p >> 16) & 0xFF) * 299 + ((p >> 8) & 0xFF) * 587 + (p & 0xFF) * 114 + 500) / 1000);
+                    }
+                }
+                case 2 -> {
+                    for (int x = 0, i = 0; x < argb.length; x++) {
+                        int p = argb[x];
+                        out[i++] = (byte) (p >> 16);
+                        out[i++] = (byte) (p >> 8);
+                        out[i++] = (byte) p;
+                    }
+                }
+                case 6 -> {
+                    for (int x = 0, i = 0; x < argb.length; x++) {
+                        int p = argb[x];
+                        out[i++] = (byte) (p >> 16);
+                        out[i++] = (byte) (p >> 8);
+                        out[i++] = (byte) p;
+                        out[i++] = (byte) (p >>> 24);
+                    }
+                }
+                default -> {
+                    int last = 0;
+                    int lastIndex = -1;
+                    for (int x = 0; x < argb.length; x++) {
+                        int p = argb[x];
+                        if (lastIndex < 0 || p != last) {
+                            last = p;
+                            lastIndex = indexes.computeIfAbsent(p, this::nearest);
+                        }
+                        out[x] = (byte) lastIndex;
+                    }
+                }
+            }
+        }
+
+        private int nearest(int argb) {
+            int best = 0;
+            long bestDistance = Long.MAX_VALUE;
+            for (int i = 0; i < palette.length; i++) {
+                int dr = ((argb >> 16) & 0xFF) - ((palette[i] >> 16) & 0xFF);
+                int dg = ((argb >> 8) & 0xFF) - ((palette[i] >> 8) & 0xFF);
+                int db = (argb & 0xFF) - (palette[i] & 0xFF);
+                long distance = (long) dr * dr + (long) dg * dg + (long) db * db;
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    best = i;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * 编码过程中的临时缓冲区与 {@link Deflater}, 用完后放回共享池复用, 图片尺寸不变时编码过程不再分配行缓冲区
+     */
+    private static final class Scratch {
+        private static final int MAX_POOLED = Runtime.getRuntime().availableProcessors() * 2;
+        private static final Queue<Scratch> POOL = new ConcurrentLinkedQueue<>();
+        private static final AtomicInteger POOLED = new AtomicInteger();
+
+        private final byte[] deflateBuffer = new byte[IDAT_CHUNK_SIZE];
+        private Deflater deflater;
+        private int compressionLevel = -1;
+        private byte[] previous;
+        private byte[] current;
+        private byte[] filtered;
+        private byte[] candidate;
+        private int[] argb;
+
+        private static Scratch acquire(int compressionLevel, int width, int rowBytes) {
+            Scratch scratch = POOL.poll();
+            if (scratch != null) {
+                POOLED.decrementAndGet();
+            } else {
+                scratch = new Scratch();
+            }
+            if (scratch.compressionLevel != compressionLevel) {
+                if (scratch.deflater != null) {
+                    scratch.deflater.end();
+                }
+                scratch.deflater = new Deflater(compressionLevel);
+                scratch.compressionLevel = compressionLevel;
+            }
+            // 行过滤与像素转换按数组长度处理, 尺寸变化时重新分配
+            if (scratch.current == null || scratch.current.length != rowBytes) {
+                scratch.previous = new byte[rowBytes];
+                scratch.current = new byte[rowBytes];
+                scratch.filtered = new byte[rowBytes + 1];
+                scratch.candidate = new byte[rowBytes + 1];
+            }
+            if (scratch.argb == null || scratch.argb.length != width) {
+                scratch.argb = new int[width];
+            }
+            return scratch;
+        }
+
+        private void deflate(byte[] data, int length, IdatOutputStream idat) throws IOException {
+            deflater.setInput(data, 0, length);
+            while (!deflater.needsInput()) {
+                int count = deflater.deflate(deflateBuffer, 0, deflateBuffer.length);
+                if (count > 0) {
+                    idat.write(deflateBuffer, 0, count);
+                }
+            }
+        }
+
+        private void finish(IdatOutputStream idat) throws IOException {
+            deflater.finish();
+            while (!deflater.finished()) {
+                int count = deflater.deflate(deflateBuffer, 0, deflateBuffer.length);
+                if (count > 0) {
+                    idat.write(deflateBuffer, 0, count);
+                }
+            }
+        }
+
+        private void release() {
+            deflater.reset();
+            if (POOLED.incrementAndGet() <= MAX_POOLED) {
+                POOL.offer(this);
+            } else {
+                POOLED.decrementAndGet();
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * 将写入的数据切分为 IDAT 数据块
+     */
+    private static final class IdatOutputStream extends OutputStream {
+        private final DataOutputStream out;
+
+        private IdatOutputStream(DataOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int length = Math.min(len, IDAT_CHUNK_SIZE);
+                writeChunk(out, "IDAT", b, off, length);
+                off += length;
+                len -= length;
+            }
+        }
+    }
+}
@@ -1,13 +1,7 @@
 package com.example.qrcode.util;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.List;
+import java.io.OutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -20,43 +14,32 @@ import java.util.zip.ZipOutputStream;
 public final class ZipUtil {
 
     /**
-     * 将文件列表添加到指定的 ZIP 包中
+     * 向 ZIP 输出流写入一个条目
      *
-     * @param zipFilePath 要生成的 ZIP 文件路径
-     * @param files       包含文件路径的列表
+     * @param zos       ZIP 输出流, 如直接包装 {@code HttpServletResponse#getOutputStream()}
+     * @param entryName 条目名称
+     * @param writer    条目内容的写入逻辑, 不得关闭传入的输出流
      * @throws IOException 当操作过程中发生 I/O 错误时抛出异常
+     * @apiNote 写完条目后立即 flush, 使已完成的条目尽快发送给客户端
      */
-    public static void addToZip(String zipFilePath, List<String> files) throws IOException {
-        Path path = Paths.get(zipFilePath);
-        Path parentDir = path.getParent();
-
-        // 确保父目录存在，如果不存在则创建
-        if (parentDir != null && !Files.exists(parentDir)) {
-            Files.createDirectories(parentDir);
-        }
-        try (FileOutputStream fos = new FileOutputStream(zipFilePath);
-             ZipOutputStream zos = new ZipOutputStream(fos)) {
-            for (String filePath : files) {
-                File file = new File(filePath);
-                if (file.exists()) {
-                    addToZipEntry(zos, file);
-                }
-            }
-        }
-    }
-
-    private static void addToZipEntry(ZipOutputStream zos, File file) throws IOException {
-        ZipEntry zipEntry = new ZipEntry(file.getName());
-        zos.putNextEntry(zipEntry);
-
-        FileInputStream fis = new FileInputStream(file);
-        byte[] buffer = new byte[1024];
-        int length;
-        while ((length = fis.read(buffer)) > 0) {
-            zos.write(buffer, 0, length);
-        }
-        fis.close();
+    public static void addToZip(ZipOutputStream zos, String entryName, EntryWriter writer) throws IOException {
+        zos.putNextEntry(new ZipEntry(entryName));
+        writer.write(zos);
         zos.closeEntry();
+        zos.flush();
     }
 
+    /**
+     * ZIP 条目内容的写入逻辑
+     */
+    @FunctionalInterface
+    public interface EntryWriter {
+        /**
+         * 写入条目内容
+         *
+         * @param output 条目输出流
+         * @throws IOException 当操作过程中发生 I/O 错误时抛出异常
+         */
+        void write(OutputStream output) throws IOException;
+    }
 }
@@ -0,0 +1,58 @@
+package com.example.qrcode.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.example.qrcode.core.QRCodeGenerator;
+import com.example.qrcode.core.QRCodeRenderOptions;
+import com.example.qrcode.entity.QRCodeExtraData;
+import com.google.zxing.WriterException;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * 基准测试共用的二维码内容与渲染参数
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+final class BenchmarkSupport {
+    /**
+     * 与 application.yml 中的 base-text 格式一致
+     */
+    static final String BASE_TEXT = "https://pile.example.com/qrcode?code=${GunCode}";
+    static final String ICON_PATH = "classpath:qr-code-icon/icon_right_angle_1280x1280.png";
+
+    static {
+        // 未启动 Spring 时 logback 默认输出 DEBUG 日志, 逐条打印会影响测试结果
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+    }
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * 第 index 把充电枪的额外信息, 枪码各不相同
+     */
+    static QRCodeExtraData extraData(long index) {
+        QRCodeExtraData extraData = QRCodeExtraData.getTestInstance();
+        extraData.setGunCode(String.format("GC%010d", index));
+        return extraData;
+    }
+
+    static String content(long index) {
+        return BASE_TEXT.replace("${GunCode}", extraData(index).getGunCode());
+    }
+
+    static QRCodeRenderOptions options(int size) {
+        return QRCodeRenderOptions.of(size, ICON_PATH);
+    }
+
+    /**
+     * 生成一张完整的二维码图片, 作为编码类基准测试的输入
+     */
+    static BufferedImage label(int size) throws WriterException, IOException {
+        return QRCodeGenerator.renderQRCodeWithExtraData(BASE_TEXT, options(size), extraData(0));
+    }
+}
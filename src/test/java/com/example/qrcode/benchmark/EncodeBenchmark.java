@@ -0,0 +1,49 @@
+package com.example.qrcode.benchmark;
+
+import com.example.qrcode.core.QRCodeGenerator;
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ZXing 编码: 模块矩阵与放大到像素尺寸的 BitMatrix
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EncodeBenchmark {
+    private static final Map<EncodeHintType, Object> HINTS = Map.of(
+            EncodeHintType.CHARACTER_SET, StandardCharsets.UTF_8.name(),
+            EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.H);
+
+    @Param({"200", "400", "800"})
+    private int size;
+
+    private final QRCodeWriter writer = new QRCodeWriter();
+    private long index;
+
+    @Benchmark
+    public ByteMatrix encodeModules() throws WriterException {
+        return QRCodeGenerator.encodeModules(BenchmarkSupport.content(index++));
+    }
+
+    @Benchmark
+    public BitMatrix encodeBitMatrix() throws WriterException {
+        return writer.encode(BenchmarkSupport.content(index++), BarcodeFormat.QR_CODE, size, size, HINTS);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.qrcode.benchmark;
+
+import com.example.qrcode.core.QRCodeFontRegistry;
+import com.example.qrcode.core.QRCodeIconCache;
+import com.example.qrcode.core.QRCodeLabelTemplate;
+import com.example.qrcode.core.QRCodeLabelTemplate.TemplateKey;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 中间图标: 圆角与白色边框处理, 以及合成到二维码上
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IconBenchmark {
+    private static final int SIZE = 400;
+    private static final int ICON_SIZE = 80;
+    private static final int ICON_OFFSET = (SIZE - ICON_SIZE) / 2;
+
+    private String iconPath;
+    private BufferedImage icon;
+    private BufferedImage canvas;
+    private Graphics2D graphics;
+    private QRCodeLabelTemplate template;
+
+    @Setup
+    public void setUp() throws IOException {
+        iconPath = BenchmarkSupport.options(SIZE).getIconPath();
+        icon = QRCodeIconCache.getIcon(iconPath, 30, 10, ICON_SIZE);
+        canvas = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+        graphics = canvas.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        TemplateKey key = new TemplateKey(SIZE, SIZE, 0, 0, iconPath, ICON_OFFSET, ICON_OFFSET);
+        template = QRCodeLabelTemplate.getTemplate(key, icon, QRCodeFontRegistry.getInstance(), g2d -> {
+        });
+    }
+
+    @TearDown
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    /**
+     * 未命中缓存时的图标处理: 读取原图、圆角、白色边框、缩放
+     */
+    @Benchmark
+    public BufferedImage roundIcon() throws IOException {
+        QRCodeIconCache.clear();
+        return QRCodeIconCache.getIcon(iconPath, 30, 10, ICON_SIZE);
+    }
+
+    @Benchmark
+    public BufferedImage drawImage() {
+        graphics.drawImage(icon, ICON_OFFSET, ICON_OFFSET, null);
+        return canvas;
+    }
+
+    /**
+     * 模板中预先拆分好的图标色段
+     */
+    @Benchmark
+    public BufferedImage templateDrawIcon() {
+        template.drawIcon(canvas);
+        return canvas;
+    }
+}
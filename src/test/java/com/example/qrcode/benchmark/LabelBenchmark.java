@@ -0,0 +1,50 @@
+package com.example.qrcode.benchmark;
+
+import com.example.qrcode.core.QRCodeGenerator;
+import com.example.qrcode.core.QRCodeMemorySink;
+import com.example.qrcode.core.QRCodeRenderOptions;
+import com.google.zxing.WriterException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 端到端生成带额外信息的二维码: 编码、绘制与 PNG 编码
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LabelBenchmark {
+    @Param({"400"})
+    private int size;
+
+    private QRCodeRenderOptions options;
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream(64 * 1024);
+    private final QRCodeMemorySink sink = new QRCodeMemorySink();
+    private long index;
+
+    @Setup
+    public void setUp() {
+        options = BenchmarkSupport.options(size);
+    }
+
+    @Benchmark
+    public int writeQRCodeWithExtraData() throws WriterException, IOException {
+        output.reset();
+        QRCodeGenerator.writeQRCodeWithExtraData(BenchmarkSupport.BASE_TEXT, options, BenchmarkSupport.extraData(index++), output);
+        return output.size();
+    }
+
+    @Benchmark
+    public String writeQRCodeToSink() throws WriterException, IOException {
+        return QRCodeGenerator.writeQRCodeWithExtraData(BenchmarkSupport.BASE_TEXT, options, BenchmarkSupport.extraData(index++), sink, "label.png");
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.qrcode.benchmark;
+
+import com.example.qrcode.core.QRCodeGenerator;
+import com.example.qrcode.core.QRCodeIconCache;
+import com.example.qrcode.core.QRCodeMemorySink;
+import com.example.qrcode.core.QRCodeRenderOptions;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.ChecksumException;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.FormatException;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Result;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeReader;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 并发压力测试与长时间浸泡测试
+ * <p>
+ * 每个并发度下启动对应数量的虚拟线程循环生成二维码, 每张图片都用 ZXing 解码校验内容,
+ * 并与单线程生成的参考图片逐字节比较, 画布、模板或输出在线程之间串用时会导致测试失败。
+ * 结束后输出吞吐量与 p50/p99/p999 延迟。
+ * <pre>
+ * mvn -P stress test
+ * mvn -P stress test -Dstress.concurrency=1,16,256 -Dstress.labels=5000
+ * mvn -P stress test -Dstress.duration=PT30M                       # 浸泡测试, 每个并发度运行 30 分钟
+ * </pre>
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+class LabelStressTest {
+    /**
+     * 参考图片的数量, 第 i 张二维码与第 i % REFERENCES 张参考图片的内容相同
+     */
+    private static final int REFERENCES = 16;
+
+    private static final int[] CONCURRENCY = Arrays.stream(System.getProperty("stress.concurrency", "1,8,64,256").split(","))
+            .map(String::trim).mapToInt(Integer::parseInt).toArray();
+    private static final long LABELS = Long.getLong("stress.labels", 2000);
+    private static final Duration DURATION = Optional.ofNullable(System.getProperty("stress.duration"))
+            .filter(value -> !value.isBlank()).map(Duration::parse).orElse(null);
+    private static final int SIZE = Integer.getInteger("stress.size", 300);
+
+    private static final byte[][] REFERENCE_LABELS = new byte[REFERENCES][];
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        QRCodeRenderOptions options = BenchmarkSupport.options(SIZE);
+        for (int i = 0; i < REFERENCES; i++) {
+            REFERENCE_LABELS[i] = render(options, i);
+        }
+    }
+
+    /**
+     * 在内存中生成二维码
+     */
+    @Test
+    void writeQRCodeWithExtraData() throws Exception {
+        QRCodeRenderOptions options = BenchmarkSupport.options(SIZE);
+        for (int concurrency : CONCURRENCY) {
+            run("write", concurrency, index -> {
+                long start = System.nanoTime();
+                byte[] label = render(options, index);
+                long elapsed = System.nanoTime() - start;
+                verify(index, label);
+                return elapsed;
+            });
+        }
+    }
+
+    /**
+     * 生成二维码并写入输出存储, 每个线程写入不同的名称
+     */
+    @Test
+    void writeQRCodeToSink() throws Exception {
+        QRCodeRenderOptions options = BenchmarkSupport.options(SIZE);
+        QRCodeMemorySink sink = new QRCodeMemorySink();
+        for (int concurrency : CONCURRENCY) {
+            run("sink", concurrency, index -> {
+                String name = "label_" + Thread.currentThread().threadId() + ".png";
+                long start = System.nanoTime();
+                QRCodeGenerator.writeQRCodeWithExtraData(BenchmarkSupport.BASE_TEXT, options, BenchmarkSupport.extraData(index % REFERENCES), sink, name);
+                long elapsed = System.nanoTime() - start;
+                try (var input = sink.open(name)) {
+                    verify(index, input.readAllBytes());
+                }
+                return elapsed;
+            });
+        }
+    }
+
+    /**
+     * 并发读取圆角图标, 缓存被反复清除时各线程拿到的图标都应完整且与单线程处理的一致
+     */
+    @Test
+    void iconCache() throws Exception {
+        QRCodeIconCache.clear();
+        int[] expected = pixels(QRCodeIconCache.getIcon(BenchmarkSupport.ICON_PATH, 30, 10, 80));
+        for (int concurrency : CONCURRENCY) {
+            run("icon", concurrency, index -> {
+                if (index % REFERENCES == 0) {
+                    QRCodeIconCache.invalidate(BenchmarkSupport.ICON_PATH);
+                }
+                long start = System.nanoTime();
+                BufferedImage icon = QRCodeIconCache.getIcon(BenchmarkSupport.ICON_PATH, 30, 10, 80);
+                long elapsed = System.nanoTime() - start;
+                assertArrayEquals(expected, pixels(icon), "icon " + index + " differs from the reference");
+                return elapsed;
+            }, Math.min(LABELS, 200));
+        }
+    }
+
+    private static void run(String name, int concurrency, Task task) throws Exception {
+        run(name, concurrency, task, LABELS);
+    }
+
+    /**
+     * 启动 concurrency 个虚拟线程循环执行 task, 直到完成 labels 次或超过 stress.duration
+     */
+    private static void run(String name, int concurrency, Task task, long labels) throws Exception {
+        long deadline = DURATION == null ? Long.MAX_VALUE : System.nanoTime() + DURATION.toNanos();
+        long limit = DURATION == null ? labels : Long.MAX_VALUE;
+        AtomicLong next = new AtomicLong();
+        Queue<Long> latencies = new ConcurrentLinkedQueue<>();
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> workers = new ArrayList<>(concurrency);
+            for (int i = 0; i < concurrency; i++) {
+                workers.add(executor.submit(() -> {
+                    for (long index; (index = next.getAndIncrement()) < limit && System.nanoTime() < deadline; ) {
+                        latencies.add(task.run(index));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        assertTrue(sorted.length > 0, "no labels generated");
+        System.out.printf("%-9s concurrency=%-4d labels=%-7d throughput=%8.1f/s p50=%7.2fms p99=%7.2fms p999=%7.2fms max=%7.2fms%n",
+                name, concurrency, sorted.length, sorted.length * 1e9 / elapsed,
+                percentile(sorted, 0.5), percentile(sorted, 0.99), percentile(sorted, 0.999), sorted[sorted.length - 1] / 1e6);
+    }
+
+    private static byte[] render(QRCodeRenderOptions options, long index) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(32 * 1024);
+        QRCodeGenerator.writeQRCodeWithExtraData(BenchmarkSupport.BASE_TEXT, options, BenchmarkSupport.extraData(index % REFERENCES), output);
+        return output.toByteArray();
+    }
+
+    /**
+     * 解码校验二维码内容, 并与参考图片逐字节比较, 图标缺失、文字错位等问题都会导致不一致
+     */
+    private static void verify(long index, byte[] label) throws IOException {
+        int reference = (int) (index % REFERENCES);
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(label));
+        assertNotNull(image, "label #" + index + " is not a complete PNG");
+        assertEquals(BenchmarkSupport.content(reference), decode(image), "label #" + index + " decoded to the wrong content");
+        assertArrayEquals(REFERENCE_LABELS[reference], label, "label #" + index + " differs from the single-threaded reference");
+    }
+
+    private static String decode(BufferedImage image) {
+        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(new BufferedImageLuminanceSource(image)));
+        try {
+            Result result = new QRCodeReader().decode(bitmap, Map.of(DecodeHintType.TRY_HARDER, Boolean.TRUE));
+            return result.getText();
+        } catch (NotFoundException | ChecksumException | FormatException e) {
+            return null;
+        }
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        /**
+         * @param index 序号
+         * @return 被测操作的耗时, 单位: 纳秒
+         */
+        long run(long index) throws Exception;
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.qrcode.benchmark;
+
+import com.example.qrcode.util.PngEncoder;
+import com.google.zxing.WriterException;
+import org.openjdk.jmh.annotations.*;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PNG 编码: ImageIO 与 {@link PngEncoder} 各颜色类型的对比
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PngEncodeBenchmark {
+    /**
+     * IMAGEIO 表示 {@code ImageIO.write}, 其余为 {@link PngEncoder.ColorMode}
+     */
+    @Param({"IMAGEIO", "AUTO", "INDEXED", "GRAY", "RGB"})
+    private String encoder;
+
+    @Param({"400"})
+    private int size;
+
+    private BufferedImage image;
+    private PngEncoder pngEncoder;
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream(64 * 1024);
+
+    @Setup
+    public void setUp() throws WriterException, IOException {
+        ImageIO.setUseCache(false);
+        image = BenchmarkSupport.label(size);
+        if (!"IMAGEIO".equals(encoder)) {
+            pngEncoder = new PngEncoder(PngEncoder.ColorMode.valueOf(encoder), 6, PngEncoder.FilterStrategy.ADAPTIVE);
+        }
+    }
+
+    @Benchmark
+    public int encode() throws IOException {
+        output.reset();
+        if (pngEncoder == null) {
+            ImageIO.write(image, "png", output);
+        } else {
+            pngEncoder.encode(image, output);
+        }
+        return output.size();
+    }
+}
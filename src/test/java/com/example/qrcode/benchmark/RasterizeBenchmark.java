@@ -0,0 +1,84 @@
+package com.example.qrcode.benchmark;
+
+import com.example.qrcode.core.QRCodeGenerator;
+import com.example.qrcode.core.QRCodeRasterizer;
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 二维码矩阵光栅化: 逐像素 setRGB 与 {@link QRCodeRasterizer} 的对比
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RasterizeBenchmark {
+    @Param({"200", "400", "800"})
+    private int size;
+
+    private BitMatrix bitMatrix;
+    private ByteMatrix modules;
+    private int moduleSize;
+    private BufferedImage canvas;
+
+    @Setup
+    public void setUp() throws WriterException {
+        String content = BenchmarkSupport.content(0);
+        Map<EncodeHintType, Object> hints = Map.of(
+                EncodeHintType.CHARACTER_SET, StandardCharsets.UTF_8.name(),
+                EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.H);
+        bitMatrix = new QRCodeWriter().encode(content, BarcodeFormat.QR_CODE, size, size, hints);
+        modules = QRCodeGenerator.encodeModules(content);
+        moduleSize = Math.max(1, size / (modules.getWidth() + 4));
+        canvas = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+    }
+
+    /**
+     * 优化前的做法: 逐像素调用 setRGB
+     */
+    @Benchmark
+    public BufferedImage setRgbPerPixel() {
+        BufferedImage image = new BufferedImage(bitMatrix.getWidth(), bitMatrix.getHeight(), BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < bitMatrix.getWidth(); x++) {
+            for (int y = 0; y < bitMatrix.getHeight(); y++) {
+                image.setRGB(x, y, bitMatrix.get(x, y) ? 0xFF000000 : 0xFFFFFFFF);
+            }
+        }
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage toBufferedImage() {
+        return QRCodeRasterizer.toBufferedImage(bitMatrix, BufferedImage.TYPE_INT_RGB);
+    }
+
+    @Benchmark
+    public BufferedImage toBufferedImageGray() {
+        return QRCodeRasterizer.toBufferedImage(bitMatrix, BufferedImage.TYPE_BYTE_GRAY);
+    }
+
+    /**
+     * 按模块绘制到已有画布, 即 generateQRCodeWithExtraData 使用的方式
+     */
+    @Benchmark
+    public BufferedImage rasterizeModules() {
+        QRCodeRasterizer.rasterize(modules, moduleSize, canvas, 0, 0);
+        return canvas;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.qrcode.benchmark;
+
+import com.example.qrcode.core.QRCodeFontRegistry;
+import com.example.qrcode.core.QRCodeFontRegistry.TextLine;
+import com.example.qrcode.core.QRCodeFontRegistry.TextStyle;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 中文文字绘制: 每次派生字体并 drawString 与字体注册表缓存排版结果的对比
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TextBenchmark {
+    private static final String TITLE = "奥迪充电站杭州城西银泰";
+    private static final String CAPTION = "所处地区: 浙江省杭州市西湖区";
+
+    private final Font baseFont = new Font("宋体", Font.PLAIN, 18);
+    private final QRCodeFontRegistry fontRegistry = new QRCodeFontRegistry(baseFont);
+    private BufferedImage canvas;
+    private Graphics2D graphics;
+
+    @Setup
+    public void setUp() {
+        canvas = new BufferedImage(400, 100, BufferedImage.TYPE_INT_RGB);
+        graphics = canvas.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        graphics.setColor(Color.BLACK);
+    }
+
+    @TearDown
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    /**
+     * 优化前的做法: 每次派生字体, 用 FontMetrics 测量后 drawString
+     */
+    @Benchmark
+    public BufferedImage drawString() {
+        graphics.setFont(baseFont.deriveFont(Font.BOLD, 22));
+        int width = graphics.getFontMetrics().stringWidth(TITLE);
+        graphics.drawString(TITLE, (400 - width) / 2, 25);
+        graphics.setFont(baseFont.deriveFont(Font.PLAIN, 18));
+        graphics.drawString(CAPTION, 30, 60);
+        return canvas;
+    }
+
+    @Benchmark
+    public BufferedImage cachedLayout() {
+        TextLine title = fontRegistry.layout(TextStyle.TITLE, TITLE);
+        title.draw(graphics, (400 - title.width()) / 2f, 25);
+        fontRegistry.layout(TextStyle.CAPTION, CAPTION).draw(graphics, 30, 60);
+        return canvas;
+    }
+
+    /**
+     * 每次都不同的文字, 如枪码, 只排版不缓存
+     */
+    @Benchmark
+    public BufferedImage shapeUncached() {
+        fontRegistry.shape(TextStyle.CAPTION, CAPTION).draw(graphics, 30, 60);
+        return canvas;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.qrcode.benchmark;
+
+import com.example.qrcode.core.QRCodeGenerator;
+import com.example.qrcode.util.ZipUtil;
+import com.google.zxing.WriterException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 将已编码的二维码图片写入 ZIP 输出流
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ZipBenchmark {
+    @Param({"100"})
+    private int entries;
+
+    private byte[] content;
+
+    @Setup
+    public void setUp() throws WriterException, IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        QRCodeGenerator.writePng(BenchmarkSupport.label(400), BenchmarkSupport.options(400), output);
+        content = output.toByteArray();
+    }
+
+    @Benchmark
+    public void addToZip() throws IOException {
+        try (ZipOutputStream zos = new ZipOutputStream(OutputStream.nullOutputStream())) {
+            for (int i = 0; i < entries; i++) {
+                ZipUtil.addToZip(zos, "label-" + i + ".png", output -> output.write(content));
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.qrcode.core;
+
+import com.example.qrcode.core.QRCodeFontRegistry.TextLine;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+import com.google.zxing.qrcode.encoder.Encoder;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 按 PDF 结构解析打印页: 文件头、交叉引用表中的偏移量、页面树与每页的二维码数量
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+class QRCodePdfSheetTest {
+    private static final Pattern REF = Pattern.compile("(\\d+) 0 R");
+
+    /**
+     * 交叉引用表中每个对象的偏移量都指向该对象, startxref 指向交叉引用表, 页数与每页的二维码数量正确
+     */
+    @Test
+    void xrefOffsetsAndPageCount() throws Exception {
+        ByteMatrix matrix = Encoder.encode("https://example.com/qrcode?id=0123456789", ErrorCorrectionLevel.M).getMatrix();
+        BufferedImage icon = new BufferedImage(8, 8, BufferedImage.TYPE_INT_ARGB);
+        icon.setRGB(1, 1, 0x80FF0000);
+        Font font = new Font(Font.SANS_SERIF, Font.PLAIN, 12);
+        TextLine line = new TextLine(font.createGlyphVector(new FontRenderContext(null, true, true), "站点"), 24);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (QRCodePdfSheet sheet = new QRCodePdfSheet(output, 2, 2, 20, 10)) {
+            for (int i = 0; i < 9; i++) {
+                sheet.beginLabel(200, 240);
+                sheet.modules(matrix, 4, 10, 10);
+                sheet.image(icon, 80, 80);
+                sheet.text("站点", line, font, 10, 230);
+                sheet.endLabel();
+            }
+            // 输出失败的二维码不计入页面
+            sheet.beginLabel(200, 240);
+            sheet.modules(matrix, 4, 10, 10);
+            assertEquals(9, sheet.getLabelCount());
+        }
+
+        Pdf pdf = new Pdf(output.toByteArray());
+        String catalog = pdf.object(pdf.root);
+        assertTrue(catalog.contains("/Type /Catalog"), catalog);
+        String pages = pdf.object(ref(catalog, "/Pages"));
+        assertTrue(pages.contains("/Count 3"), pages);
+        Matcher kids = REF.matcher(pages.substring(pages.indexOf("/Kids")));
+        List<Integer> pageIds = new ArrayList<>();
+        while (kids.find()) {
+            pageIds.add(Integer.parseInt(kids.group(1)));
+        }
+        assertEquals(3, pageIds.size());
+
+        int[] labelsPerPage = {4, 4, 1};
+        for (int i = 0; i < pageIds.size(); i++) {
+            String page = pdf.object(pageIds.get(i));
+            assertTrue(page.contains("/Type /Page "), page);
+            String content = pdf.inflate(ref(page, "/Contents"));
+            assertEquals(labelsPerPage[i], count(content, " re\n") / rectCount(matrix), "page " + (i + 1));
+            assertEquals(labelsPerPage[i] * 2, count(content, " Do Q\n"), "page " + (i + 1));
+        }
+        // 图标 (含软蒙版) 与文字只写入一次
+        assertEquals(2, count(pdf.text, "/Subtype /Image"));
+        assertEquals(1, count(pdf.text, "/Subtype /Form"));
+    }
+
+    /**
+     * 没有二维码时仍输出只有一个空白页的合法文档
+     */
+    @Test
+    void emptySheetHasOnePage() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new QRCodePdfSheet(output, 3, 4, 20, 10).close();
+        Pdf pdf = new Pdf(output.toByteArray());
+        String pages = pdf.object(ref(pdf.object(pdf.root), "/Pages"));
+        assertTrue(pages.contains("/Count 1"), pages);
+    }
+
+    private static int rectCount(ByteMatrix matrix) {
+        int[] count = {0};
+        QRCodeVectorCanvas.forEachModuleRect(matrix, (x, y, width, height) -> count[0]++);
+        return count[0];
+    }
+
+    private static int ref(String dictionary, String key) {
+        Matcher matcher = REF.matcher(dictionary.substring(dictionary.indexOf(key) + key.length()));
+        assertTrue(matcher.find(), key + " in " + dictionary);
+        return Integer.parseInt(matcher.group(1));
+    }
+
+    private static int count(String text, String token) {
+        int count = 0;
+        for (int i = text.indexOf(token); i >= 0; i = text.indexOf(token, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 按交叉引用表读取对象的最小 PDF 解析
+     */
+    private static final class Pdf {
+        private final byte[] bytes;
+        private final String text;
+        private final long[] offsets;
+        private final int root;
+
+        Pdf(byte[] bytes) {
+            this.bytes = bytes;
+            this.text = new String(bytes, StandardCharsets.ISO_8859_1);
+            assertTrue(text.startsWith("%PDF-1.4\n%"), "PDF header");
+            assertTrue(text.endsWith("%%EOF\n"), "PDF trailer");
+            Matcher startxref = Pattern.compile("startxref\n(\\d+)\n%%EOF\n$").matcher(text);
+            assertTrue(startxref.find());
+            int xref = Integer.parseInt(startxref.group(1));
+            assertTrue(text.startsWith("xref\n0 ", xref), "startxref must point at the xref table");
+
+            int lineEnd = text.indexOf('\n', xref + 5);
+            int size = Integer.parseInt(text.substring(xref + 7, lineEnd));
+            offsets = new long[size];
+            int entry = lineEnd + 1;
+            assertEquals("0000000000 65535 f \n", text.substring(entry, entry + 20));
+            for (int id = 1; id < size; id++) {
+                entry += 20;
+                String row = text.substring(entry, entry + 20);
+                assertTrue(row.endsWith(" 00000 n \n"), row);
+                offsets[id] = Long.parseLong(row.substring(0, 10));
+                assertTrue(text.startsWith(id + " 0 obj\n", (int) offsets[id]), "xref offset of object " + id);
+            }
+            String trailer = text.substring(entry + 20);
+            assertTrue(trailer.startsWith("trailer\n<< /Size " + size + " "), trailer);
+            root = ref(trailer, "/Root");
+        }
+
+        /**
+         * 对象的内容, 流对象只包含字典
+         */
+        String object(int id) {
+            int start = (int) offsets[id];
+            int end = text.indexOf("\nendobj\n", start);
+            int stream = text.indexOf("\nstream\n", start);
+            return text.substring(start, stream >= 0 && stream < end ? stream : end);
+        }
+
+        /**
+         * 解压流对象的内容, 并检查 /Length 与 endstream 的位置一致
+         */
+        String inflate(int id) throws Exception {
+            String dictionary = object(id);
+            Matcher length = Pattern.compile("/Length (\\d+)").matcher(dictionary);
+            assertTrue(length.find(), dictionary);
+            int start = (int) offsets[id] + dictionary.length() + "\nstream\n".length();
+            int end = start + Integer.parseInt(length.group(1));
+            assertTrue(text.startsWith("\nendstream\nendobj\n", end), "stream length of object " + id);
+            Inflater inflater = new Inflater();
+            inflater.setInput(bytes, start, end - start);
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                assertFalse(n == 0 && inflater.needsInput(), "truncated stream " + id);
+                content.write(buffer, 0, n);
+            }
+            inflater.end();
+            return content.toString(StandardCharsets.ISO_8859_1);
+        }
+    }
+}
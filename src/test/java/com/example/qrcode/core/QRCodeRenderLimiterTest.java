@@ -0,0 +1,105 @@
+package com.example.qrcode.core;
+
+import com.example.qrcode.core.QRCodeRenderLimiter.Permit;
+import com.example.qrcode.core.QRCodeRenderLimiter.RejectedException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 渲染准入控制的拒绝、等待超时与许可归还
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+class QRCodeRenderLimiterTest {
+    private static final int RETRY_AFTER = 7;
+
+    /**
+     * 许可用完且没有等待队列时立即拒绝, 并带上建议的重试时间; 归还许可后可以再次获取
+     */
+    @Test
+    void rejectsWhenSaturated() {
+        QRCodeRenderLimiter limiter = new QRCodeRenderLimiter("test", 1, 0, 10_000, RETRY_AFTER);
+        Permit permit = limiter.acquire();
+        long start = System.nanoTime();
+        RejectedException e = assertThrows(RejectedException.class, limiter::acquire);
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5), "must not wait without a queue");
+        assertEquals(RETRY_AFTER, e.getRetryAfterSeconds());
+        assertEquals(new QRCodeRenderLimiter.Stats(1, 0, 1, 1), limiter.getStats());
+
+        permit.close();
+        limiter.acquire().close();
+        assertEquals(new QRCodeRenderLimiter.Stats(0, 0, 2, 1), limiter.getStats());
+    }
+
+    /**
+     * 在队列中等待超过最长时间后拒绝, 不再占用队列位置
+     */
+    @Test
+    void rejectsAfterMaxWait() {
+        QRCodeRenderLimiter limiter = new QRCodeRenderLimiter("test", 1, 1, 100, RETRY_AFTER);
+        try (Permit permit = limiter.acquire()) {
+            long start = System.nanoTime();
+            assertThrows(RejectedException.class, limiter::acquire);
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100), "must wait up to maxWait");
+            assertEquals(0, limiter.getStats().waiting());
+            assertEquals(1, limiter.getStats().rejected());
+        }
+    }
+
+    /**
+     * 等待队列已满时立即拒绝; 队列中的请求在许可归还后获得许可
+     */
+    @Test
+    void queuedRequestIsAdmittedAndOverflowIsRejected() throws Exception {
+        QRCodeRenderLimiter limiter = new QRCodeRenderLimiter("test", 1, 1, 10_000, RETRY_AFTER);
+        Permit permit = limiter.acquire();
+        CompletableFuture<Permit> queued = CompletableFuture.supplyAsync(limiter::acquire);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (limiter.getStats().waiting() == 0) {
+            assertTrue(System.nanoTime() < deadline, "request never queued");
+            Thread.sleep(1);
+        }
+
+        long start = System.nanoTime();
+        assertThrows(RejectedException.class, limiter::acquire);
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5), "overflow must be rejected without waiting");
+        assertFalse(queued.isDone());
+
+        permit.close();
+        queued.get(5, TimeUnit.SECONDS).close();
+        assertEquals(new QRCodeRenderLimiter.Stats(0, 0, 2, 1), limiter.getStats());
+    }
+
+    /**
+     * 同一许可重复归还只计一次
+     */
+    @Test
+    void permitIsReleasedOnce() {
+        QRCodeRenderLimiter limiter = new QRCodeRenderLimiter("test", 1, 0, 0, RETRY_AFTER);
+        Permit permit = limiter.acquire();
+        permit.close();
+        permit.close();
+        Permit second = limiter.acquire();
+        assertThrows(RejectedException.class, limiter::acquire);
+        second.close();
+    }
+
+    /**
+     * 等待时被中断则拒绝, 并保留中断状态
+     */
+    @Test
+    void interruptedWaitIsRejected() {
+        QRCodeRenderLimiter limiter = new QRCodeRenderLimiter("test", 1, 1, 10_000, RETRY_AFTER);
+        try (Permit permit = limiter.acquire()) {
+            Thread.currentThread().interrupt();
+            assertThrows(RejectedException.class, limiter::acquire);
+            assertTrue(Thread.interrupted());
+            assertEquals(0, limiter.getStats().waiting());
+        }
+    }
+}
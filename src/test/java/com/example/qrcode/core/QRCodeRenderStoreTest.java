@@ -0,0 +1,209 @@
+package com.example.qrcode.core;
+
+import com.example.qrcode.core.QRCodeRenderOptions.OutputFormat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 二维码磁盘存储的崩溃恢复、收录、淘汰与键冲突
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+class QRCodeRenderStoreTest {
+    private static final long MAX_BYTES = 1024 * 1024;
+    private static final int MAX_ENTRIES = 16;
+
+    @TempDir
+    Path root;
+
+    /**
+     * 索引文件被截断 (如: 写入时崩溃) 后重新打开, 图片按文件重新收录, 仍然可以读取
+     */
+    @Test
+    void reopenAfterTruncatedIndexServesContent() throws Exception {
+        try (QRCodeRenderStore store = open()) {
+            for (int i = 0; i < 3; i++) {
+                store.put(key(i), content(i), OutputFormat.PNG);
+            }
+        }
+        Path index = root.resolve("index.bin");
+        try (FileChannel channel = FileChannel.open(index, WRITE)) {
+            channel.truncate(channel.size() / 2);
+        }
+        try (QRCodeRenderStore store = open()) {
+            assertEquals(3, store.getStats().size());
+            for (int i = 0; i < 3; i++) {
+                assertArrayEquals(content(i), store.get(key(i)));
+            }
+        }
+        try (FileChannel channel = FileChannel.open(index, WRITE)) {
+            channel.truncate(10);
+        }
+        try (QRCodeRenderStore store = open()) {
+            for (int i = 0; i < 3; i++) {
+                assertArrayEquals(content(i), store.get(key(i)), "header truncated, entry " + i);
+            }
+        }
+    }
+
+    /**
+     * 旧版本的索引按图片文件重建
+     */
+    @Test
+    void reopenWithOldIndexVersionRebuildsIndex() throws Exception {
+        try (QRCodeRenderStore store = open()) {
+            store.put(key(1), content(1), OutputFormat.PNG);
+        }
+        try (FileChannel channel = FileChannel.open(root.resolve("index.bin"), WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, 1), 4);
+        }
+        try (QRCodeRenderStore store = open()) {
+            assertArrayEquals(content(1), store.get(key(1)));
+        }
+    }
+
+    /**
+     * 重命名到目标位置后、登记索引前崩溃留下的图片在启动时被收录; 名称不合法的文件与临时文件被删除
+     */
+    @Test
+    void adoptsOrphansAndDeletesJunk() throws Exception {
+        try (QRCodeRenderStore store = open()) {
+            store.put(key(1), content(1), OutputFormat.PNG);
+        }
+        String orphan = key(2);
+        Path orphanDir = Files.createDirectories(root.resolve("objects").resolve(orphan.substring(0, 2)));
+        Files.write(orphanDir.resolve(orphan + ".svg"), content(2));
+        Path junk = Files.write(orphanDir.resolve("not-a-digest.png"), content(3));
+        Path unknownFormat = Files.write(orphanDir.resolve(key(4) + ".gif"), content(4));
+        Path tmp = Files.write(root.resolve("tmp").resolve("partial.tmp"), content(5));
+
+        try (QRCodeRenderStore store = open()) {
+            assertEquals(2, store.getStats().size());
+            assertArrayEquals(content(1), store.get(key(1)));
+            assertArrayEquals(content(2), store.get(orphan));
+            assertFalse(Files.exists(junk));
+            assertFalse(Files.exists(unknownFormat));
+            assertFalse(Files.exists(tmp));
+        }
+    }
+
+    /**
+     * 超出总大小或条目数上限时淘汰最久未使用的图片, 并删除其文件
+     */
+    @Test
+    void evictsLeastRecentlyUsed() throws Exception {
+        byte[] large = new byte[400];
+        try (QRCodeRenderStore store = new QRCodeRenderStore(root, 1000, MAX_ENTRIES)) {
+            store.put(key(1), large, OutputFormat.PNG);
+            store.put(key(2), large, OutputFormat.PNG);
+            assertNotNull(store.get(key(1)));
+            store.put(key(3), large, OutputFormat.PNG);
+
+            assertNull(store.get(key(2)), "least recently used entry must be evicted");
+            assertNotNull(store.get(key(1)));
+            assertNotNull(store.get(key(3)));
+            assertEquals(1, store.getStats().evictions());
+            assertEquals(800, store.getStats().bytes());
+            assertFalse(Files.exists(root.resolve("objects").resolve(key(2).substring(0, 2)).resolve(key(2) + ".png")));
+        }
+        try (QRCodeRenderStore store = new QRCodeRenderStore(root.resolve("small"), MAX_BYTES, 2)) {
+            for (int i = 1; i <= 3; i++) {
+                store.put(key(i), content(i), OutputFormat.PNG);
+            }
+            assertEquals(2, store.getStats().size(), "entry count is limited by the index capacity");
+            assertEquals(1, store.getStats().evictions());
+            assertNull(store.get(key(1)));
+            assertNotNull(store.get(key(3)));
+        }
+    }
+
+    /**
+     * 删除的图片连同文件一起移除, 槽位可以重用, 重新打开后也不会被重新收录
+     */
+    @Test
+    void removeDeletesEntryAndFile() throws Exception {
+        try (QRCodeRenderStore store = new QRCodeRenderStore(root, MAX_BYTES, 2)) {
+            store.put(key(1), content(1), OutputFormat.PNG);
+            store.put(key(2), content(2), OutputFormat.PNG);
+            assertTrue(store.remove(key(1)));
+            assertFalse(store.remove(key(1)));
+            assertNull(store.get(key(1)));
+            assertFalse(Files.exists(root.resolve("objects").resolve(key(1).substring(0, 2)).resolve(key(1) + ".png")));
+            assertEquals(content(2).length, store.getStats().bytes());
+
+            store.put(key(3), content(3), OutputFormat.PNG);
+            assertEquals(0, store.getStats().evictions(), "removed slot must be reused");
+        }
+        try (QRCodeRenderStore store = open()) {
+            assertEquals(2, store.getStats().size());
+            assertNull(store.get(key(1)));
+            assertArrayEquals(content(3), store.get(key(3)));
+        }
+    }
+
+    /**
+     * 同一个键只保存第一次写入的内容; 目录前缀相同的不同键互不影响; 不合法的键被拒绝
+     */
+    @Test
+    void keyCollisions() throws Exception {
+        try (QRCodeRenderStore store = open()) {
+            store.put(key(1), content(1), OutputFormat.PNG);
+            store.put(key(1), content(2), OutputFormat.PNG);
+            assertArrayEquals(content(1), store.get(key(1)));
+            assertEquals(content(1).length, store.getStats().bytes());
+
+            String first = "ab" + "0".repeat(62);
+            String second = "ab" + "1".repeat(62);
+            store.put(first, content(3), OutputFormat.PNG);
+            store.put(second, content(4), OutputFormat.SVG);
+            assertArrayEquals(content(3), store.get(first));
+            assertArrayEquals(content(4), store.get(second));
+
+            assertThrows(IllegalArgumentException.class, () -> store.put("../" + key(5).substring(3), content(5), OutputFormat.PNG));
+            assertNull(store.get("../" + key(5).substring(3)));
+        }
+    }
+
+    /**
+     * 图片文件的扩展名由图片格式决定
+     */
+    @Test
+    void extensionFollowsFormat() throws Exception {
+        try (QRCodeRenderStore store = open()) {
+            store.put(key(1), content(1), OutputFormat.SVG);
+            store.put(key(2), content(2), OutputFormat.PNG);
+        }
+        Path objects = root.resolve("objects");
+        assertTrue(Files.exists(objects.resolve(key(1).substring(0, 2)).resolve(key(1) + ".svg")));
+        assertTrue(Files.exists(objects.resolve(key(2).substring(0, 2)).resolve(key(2) + ".png")));
+        try (QRCodeRenderStore store = open()) {
+            assertArrayEquals(content(1), store.get(key(1)));
+            assertArrayEquals(content(2), store.get(key(2)));
+        }
+    }
+
+    private QRCodeRenderStore open() throws IOException {
+        return new QRCodeRenderStore(root, MAX_BYTES, MAX_ENTRIES);
+    }
+
+    private static String key(int i) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(("key" + i).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static byte[] content(int i) {
+        return ("content-" + i).repeat(i + 1).getBytes(StandardCharsets.UTF_8);
+    }
+}
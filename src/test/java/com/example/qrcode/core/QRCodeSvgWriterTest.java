@@ -0,0 +1,126 @@
+package com.example.qrcode.core;
+
+import com.example.qrcode.core.QRCodeFontRegistry.TextLine;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+import com.google.zxing.qrcode.encoder.Encoder;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SVG 输出按 XML 解析后, 二维码路径还原出的模块与 ByteMatrix 一致
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+class QRCodeSvgWriterTest {
+    private static final int MODULE_SIZE = 4;
+    private static final int OFFSET = 12;
+    /**
+     * 二维码路径中的一个矩形: M x y h 宽 v 高 h -宽 z
+     */
+    private static final Pattern RECT = Pattern.compile("M(\\d+) (\\d+)h(\\d+)v(\\d+)h-(\\d+)z");
+
+    /**
+     * 路径中的矩形互不重叠, 覆盖的模块与 ByteMatrix 的深色模块完全相同
+     */
+    @Test
+    void moduleRectsMatchByteMatrix() throws Exception {
+        for (String content : new String[]{"A", "https://example.com/qrcode?id=0123456789", "x".repeat(600)}) {
+            ByteMatrix matrix = Encoder.encode(content, ErrorCorrectionLevel.M).getMatrix();
+            int size = matrix.getWidth() * MODULE_SIZE + OFFSET * 2;
+            QRCodeSvgWriter writer = new QRCodeSvgWriter(false);
+            writer.beginLabel(size, size);
+            writer.modules(matrix, MODULE_SIZE, OFFSET, OFFSET);
+            writer.endLabel();
+
+            Document document = parse(writer);
+            Element svg = document.getDocumentElement();
+            assertEquals("svg", svg.getTagName());
+            assertEquals("0 0 " + size + " " + size, svg.getAttribute("viewBox"));
+            NodeList paths = document.getElementsByTagName("path");
+            assertEquals(1, paths.getLength(), "the whole matrix is a single path");
+            Element path = (Element) paths.item(0);
+            assertEquals("translate(" + OFFSET + " " + OFFSET + ") scale(" + MODULE_SIZE + ")", path.getAttribute("transform"));
+
+            int[][] covered = new int[matrix.getHeight()][matrix.getWidth()];
+            Matcher matcher = RECT.matcher(path.getAttribute("d"));
+            int end = 0;
+            while (matcher.find()) {
+                assertEquals(end, matcher.start(), "unexpected path data at " + end);
+                end = matcher.end();
+                int x = Integer.parseInt(matcher.group(1));
+                int y = Integer.parseInt(matcher.group(2));
+                int width = Integer.parseInt(matcher.group(3));
+                int height = Integer.parseInt(matcher.group(4));
+                assertEquals(width, Integer.parseInt(matcher.group(5)));
+                for (int row = y; row < y + height; row++) {
+                    for (int column = x; column < x + width; column++) {
+                        covered[row][column]++;
+                    }
+                }
+            }
+            assertEquals(path.getAttribute("d").length(), end, "path must only contain module rects");
+
+            int dark = 0;
+            for (int y = 0; y < matrix.getHeight(); y++) {
+                for (int x = 0; x < matrix.getWidth(); x++) {
+                    int expected = matrix.get(x, y) == 1 ? 1 : 0;
+                    dark += expected;
+                    assertEquals(expected, covered[y][x], "module (" + x + ", " + y + ") of " + content.length() + " chars");
+                }
+            }
+            assertTrue(dark > 0);
+        }
+    }
+
+    /**
+     * 文字中的 XML 特殊字符被转义, 不允许的控制字符被丢弃, 文档仍是合法的 XML
+     */
+    @Test
+    void textIsEscaped() throws Exception {
+        String text = "a<b>&\"c\u0001d";
+        Font font = new Font(Font.SANS_SERIF, Font.BOLD, 14);
+        TextLine line = new TextLine(font.createGlyphVector(new FontRenderContext(null, true, true), text), 80);
+        QRCodeSvgWriter writer = new QRCodeSvgWriter(false);
+        writer.beginLabel(100, 40);
+        writer.text(text, line, font, 10.5f, 20);
+        writer.endLabel();
+
+        Element element = (Element) parse(writer).getElementsByTagName("text").item(0);
+        assertEquals("a<b>&\"cd", element.getTextContent());
+        assertEquals("10.5", element.getAttribute("x"));
+        assertEquals("80", element.getAttribute("textLength"));
+        assertEquals("bold", element.getAttribute("font-weight"));
+    }
+
+    /**
+     * 一个 SVG 文档只能包含一张二维码
+     */
+    @Test
+    void rejectsSecondLabel() {
+        QRCodeSvgWriter writer = new QRCodeSvgWriter(true);
+        writer.beginLabel(10, 10);
+        assertThrows(IllegalStateException.class, () -> writer.beginLabel(10, 10));
+    }
+
+    private static Document parse(QRCodeSvgWriter writer) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        writer.writeTo(output);
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory.newDocumentBuilder().parse(new ByteArrayInputStream(output.toByteArray()));
+    }
+}
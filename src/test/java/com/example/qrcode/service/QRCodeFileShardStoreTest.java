@@ -0,0 +1,179 @@
+package com.example.qrcode.service;
+
+import com.example.qrcode.entity.QRCodeShardChunk;
+import com.example.qrcode.entity.QRCodeShardChunk.State;
+import com.example.qrcode.entity.QRCodeShardJob;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 两个存储实例共享同一目录, 模拟两个服务实例之间的领取、续约、租约到期与放弃租约
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+class QRCodeFileShardStoreTest {
+    private static final long SHORT_LEASE = 50;
+    private static final long LONG_LEASE = 60_000;
+    private static final int MAX_ATTEMPTS = 3;
+
+    @TempDir
+    Path root;
+    private QRCodeFileShardStore a;
+    private QRCodeFileShardStore b;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        a = new QRCodeFileShardStore(root, objectMapper);
+        b = new QRCodeFileShardStore(root, objectMapper);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        a.close();
+        b.close();
+    }
+
+    /**
+     * 租约到期后分片由另一个实例重新领取, 原实例的续约与完成都失败
+     */
+    @Test
+    void expiredLeaseIsReclaimedByAnotherWorker() throws Exception {
+        createJob("job1", 1);
+        QRCodeShardChunk first = a.claim("a", SHORT_LEASE, MAX_ATTEMPTS);
+        assertNotNull(first);
+        assertNull(b.claim("b", SHORT_LEASE, MAX_ATTEMPTS), "lease is still valid");
+
+        Thread.sleep(SHORT_LEASE * 2);
+        QRCodeShardChunk second = b.claim("b", LONG_LEASE, MAX_ATTEMPTS);
+        assertNotNull(second);
+        assertEquals(first.getIndex(), second.getIndex());
+        assertEquals("b", second.getOwner());
+        assertEquals(2, second.getAttempts());
+
+        assertFalse(a.renew(first, LONG_LEASE));
+        assertFalse(a.complete(first, 0));
+        assertTrue(b.complete(second, 0));
+        assertEquals(State.DONE, a.getChunks("job1").get(0).getState());
+    }
+
+    /**
+     * 领取次数达到上限且租约到期的分片标记为失败, 不再领取
+     */
+    @Test
+    void chunkFailsAfterMaxAttempts() throws Exception {
+        createJob("job1", 1);
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            QRCodeShardChunk chunk = (attempt % 2 == 1 ? a : b).claim("worker" + attempt, SHORT_LEASE, MAX_ATTEMPTS);
+            assertNotNull(chunk, "attempt " + attempt);
+            assertEquals(attempt, chunk.getAttempts());
+            Thread.sleep(SHORT_LEASE * 2);
+        }
+        assertNull(a.claim("a", SHORT_LEASE, MAX_ATTEMPTS));
+        assertNull(b.claim("b", SHORT_LEASE, MAX_ATTEMPTS));
+        assertEquals(State.FAILED, b.getChunks("job1").get(0).getState());
+    }
+
+    /**
+     * 实例停止时放弃租约, 分片不必等租约到期即可被另一个实例领取
+     */
+    @Test
+    void releasedChunkIsClaimableImmediately() throws Exception {
+        createJob("job1", 1);
+        QRCodeShardChunk chunk = a.claim("a", LONG_LEASE, MAX_ATTEMPTS);
+        assertNotNull(chunk);
+        assertNull(b.claim("b", LONG_LEASE, MAX_ATTEMPTS));
+
+        a.release(chunk);
+        QRCodeShardChunk reclaimed = b.claim("b", LONG_LEASE, MAX_ATTEMPTS);
+        assertNotNull(reclaimed);
+        assertEquals("b", reclaimed.getOwner());
+        assertEquals(2, reclaimed.getAttempts());
+        assertFalse(a.complete(chunk, 0), "released lease must not complete the chunk");
+    }
+
+    /**
+     * 持续续约时租约不会到期, 另一个实例领取不到分片
+     */
+    @Test
+    void renewedLeaseIsNotReclaimed() throws Exception {
+        createJob("job1", 1);
+        long lease = 200;
+        QRCodeShardChunk chunk = a.claim("a", lease, MAX_ATTEMPTS);
+        assertNotNull(chunk);
+        for (int i = 0; i < 6; i++) {
+            Thread.sleep(lease / 3);
+            assertTrue(a.renew(chunk, lease));
+            assertNull(b.claim("b", lease, MAX_ATTEMPTS), "renewed lease was reclaimed");
+        }
+        assertTrue(a.complete(chunk, 0));
+        assertEquals(1, a.getChunks("job1").get(0).getAttempts());
+    }
+
+    /**
+     * 切分出的分片分批追加, 追加后立即可以被领取; 切分租约到期后由另一个实例从最后一个分片处继续
+     */
+    @Test
+    void indexingStreamsChunksAndIsTakenOverAfterExpiry() throws Exception {
+        a.create(new QRCodeShardJob().setJobId("job1").setIndexing(true).setCreatedAt(1), List.of());
+        assertNull(b.claim("b", LONG_LEASE, MAX_ATTEMPTS), "no chunks before indexing");
+
+        QRCodeShardJob indexing = a.claimIndexing("a", SHORT_LEASE, MAX_ATTEMPTS);
+        assertNotNull(indexing);
+        assertNull(b.claimIndexing("b", SHORT_LEASE, MAX_ATTEMPTS), "indexing lease is still valid");
+        assertTrue(a.appendChunks(indexing, List.of(chunk("job1", 0)), false, SHORT_LEASE));
+        QRCodeShardChunk claimed = b.claim("b", LONG_LEASE, MAX_ATTEMPTS);
+        assertNotNull(claimed, "appended chunk is claimable while indexing continues");
+        assertEquals(0, claimed.getIndex());
+
+        Thread.sleep(SHORT_LEASE * 2);
+        QRCodeShardJob takeover = b.claimIndexing("b", LONG_LEASE, MAX_ATTEMPTS);
+        assertNotNull(takeover);
+        assertEquals(1, takeover.getChunks());
+        assertFalse(a.appendChunks(indexing, List.of(chunk("job1", 1)), false, SHORT_LEASE), "expired indexing lease must not append");
+        assertTrue(b.appendChunks(takeover, List.of(chunk("job1", 1)), true, 0));
+
+        QRCodeShardJob job = a.getJob("job1");
+        assertFalse(job.isIndexing());
+        assertEquals(2, job.getChunks());
+        assertEquals(20, job.getRecords());
+        assertNull(a.claimIndexing("a", SHORT_LEASE, MAX_ATTEMPTS));
+    }
+
+    /**
+     * 任务切分完成且所有分片结束前, 不会被当作已完成而跳过
+     */
+    @Test
+    void jobWithoutChunksIsNotDoneWhileIndexing() throws Exception {
+        a.create(new QRCodeShardJob().setJobId("job1").setIndexing(true).setCreatedAt(1), List.of());
+        assertNull(a.claim("a", LONG_LEASE, MAX_ATTEMPTS));
+        QRCodeShardJob indexing = b.claimIndexing("b", LONG_LEASE, MAX_ATTEMPTS);
+        assertTrue(b.appendChunks(indexing, List.of(chunk("job1", 0)), true, 0));
+        assertNotNull(a.claim("a", LONG_LEASE, MAX_ATTEMPTS), "chunk appended after an empty claim must be claimable");
+    }
+
+    private void createJob(String jobId, int chunks) throws IOException {
+        List<QRCodeShardChunk> list = new ArrayList<>();
+        for (int i = 0; i < chunks; i++) {
+            list.add(chunk(jobId, i));
+        }
+        a.create(new QRCodeShardJob().setJobId(jobId).setChunks(chunks).setRecords(chunks * 10L).setCreatedAt(1), list);
+    }
+
+    private static QRCodeShardChunk chunk(String jobId, int index) {
+        return new QRCodeShardChunk().setJobId(jobId).setIndex(index)
+                .setStartOffset(index * 100L).setEndOffset((index + 1) * 100L)
+                .setFirstRecord(index * 10L).setRecords(10);
+    }
+}
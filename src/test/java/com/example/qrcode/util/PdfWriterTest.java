@@ -0,0 +1,49 @@
+package com.example.qrcode.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PDF 写入工具的数值格式与对象编号检查
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+class PdfWriterTest {
+
+    /**
+     * 数值保留两位小数, 不使用科学计数法
+     */
+    @Test
+    void numberFormat() {
+        assertEquals("0", PdfWriter.number(0));
+        assertEquals("12", PdfWriter.number(12.001));
+        assertEquals("0.5", PdfWriter.number(0.5));
+        assertEquals("0.05", PdfWriter.number(0.05));
+        assertEquals("-3.14", PdfWriter.number(-3.14159));
+        assertEquals("595.28", PdfWriter.number(595.28f));
+        assertEquals("10000000", PdfWriter.number(1e7));
+    }
+
+    /**
+     * 预留后未写入的对象、未设置根对象都会导致关闭失败; 同一对象不能写入两次
+     */
+    @Test
+    void rejectsIncompleteDocument() throws IOException {
+        PdfWriter reserved = new PdfWriter(new ByteArrayOutputStream());
+        reserved.reserve();
+        reserved.setRoot(reserved.writeObject("<< /Type /Catalog >>"));
+        assertThrows(IOException.class, reserved::close);
+
+        assertThrows(IOException.class, new PdfWriter(new ByteArrayOutputStream())::close);
+
+        PdfWriter twice = new PdfWriter(new ByteArrayOutputStream());
+        int id = twice.writeObject("<< >>");
+        assertThrows(IllegalStateException.class, () -> twice.writeObject(id, "<< >>"));
+        assertThrows(IllegalStateException.class, () -> twice.writeObject(id + 1, "<< >>"));
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.qrcode.util;
+
+import com.example.qrcode.util.PngEncoder.ColorMode;
+import com.example.qrcode.util.PngEncoder.FilterStrategy;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PNG 编码器的往返测试: 编码后用 ImageIO 解码, 逐像素与原图比较
+ *
+ * @author weasley
+ * @version 1.0.0
+ */
+class PngEncoderTest {
+    private static final int WIDTH = 37;
+    private static final int HEIGHT = 23;
+    /**
+     * IHDR 中颜色类型所在的字节: 签名(8) + 长度(4) + 类型(4) + 宽高(8) + 位深度(1)
+     */
+    private static final int COLOR_TYPE_OFFSET = 25;
+
+    /**
+     * AUTO 与 RGB 对 TYPE_INT_RGB 与 TYPE_INT_ARGB 的各种图片都是无损的
+     */
+    @Test
+    void autoAndRgbAreLossless() throws IOException {
+        for (int type : new int[]{BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB}) {
+            for (Content content : Content.values()) {
+                if (content == Content.TRANSLUCENT && type == BufferedImage.TYPE_INT_RGB) {
+                    continue;
+                }
+                BufferedImage image = content.create(type);
+                for (ColorMode mode : new ColorMode[]{ColorMode.AUTO, ColorMode.RGB}) {
+                    assertPixelsEqual(image, encode(new PngEncoder(mode, 6, FilterStrategy.ADAPTIVE), image),
+                            mode + " " + content + " type " + type);
+                }
+            }
+        }
+    }
+
+    /**
+     * 每种行过滤方式在每种颜色类型下都能正确解码
+     */
+    @Test
+    void everyFilterRoundTrips() throws IOException {
+        for (FilterStrategy filter : FilterStrategy.values()) {
+            for (Content content : Content.values()) {
+                BufferedImage image = content.create(BufferedImage.TYPE_INT_ARGB);
+                for (int level : new int[]{0, 9}) {
+                    assertPixelsEqual(image, encode(new PngEncoder(ColorMode.AUTO, level, filter), image),
+                            filter + " " + content + " level " + level);
+                }
+            }
+        }
+    }
+
+    /**
+     * AUTO 选择能无损表示图片的最小颜色类型
+     */
+    @Test
+    void autoChoosesSmallestColorType() throws IOException {
+        PngEncoder encoder = new PngEncoder(ColorMode.AUTO, 6, FilterStrategy.ADAPTIVE);
+        assertEquals(0, encode(encoder, Content.GRAY.create(BufferedImage.TYPE_INT_RGB))[COLOR_TYPE_OFFSET]);
+        assertEquals(3, encode(encoder, Content.FEW_COLORS.create(BufferedImage.TYPE_INT_RGB))[COLOR_TYPE_OFFSET]);
+        assertEquals(2, encode(encoder, Content.MANY_COLORS.create(BufferedImage.TYPE_INT_RGB))[COLOR_TYPE_OFFSET]);
+        assertEquals(6, encode(encoder, Content.TRANSLUCENT.create(BufferedImage.TYPE_INT_ARGB))[COLOR_TYPE_OFFSET]);
+    }
+
+    /**
+     * 颜色数不超过 256 时 INDEXED 也是无损的; GRAY 按亮度转换彩色像素
+     */
+    @Test
+    void indexedAndGrayModes() throws IOException {
+        BufferedImage fewColors = Content.FEW_COLORS.create(BufferedImage.TYPE_INT_RGB);
+        assertPixelsEqual(fewColors, encode(new PngEncoder(ColorMode.INDEXED, 6, FilterStrategy.ADAPTIVE), fewColors), "INDEXED");
+
+        BufferedImage red = new BufferedImage(2, 2, BufferedImage.TYPE_INT_RGB);
+        red.setRGB(0, 0, 0xFF0000);
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(encode(new PngEncoder(ColorMode.GRAY, 6, FilterStrategy.NONE), red)));
+        assertEquals(BufferedImage.TYPE_BYTE_GRAY, decoded.getType());
+        assertEquals((255 * 299 + 500) / 1000, decoded.getRaster().getSample(0, 0, 0));
+        assertEquals(0, decoded.getRaster().getSample(1, 1, 0));
+    }
+
+    /**
+     * 压缩级别超出 0 ~ 9 时拒绝创建
+     */
+    @Test
+    void rejectsInvalidCompressionLevel() {
+        assertThrows(IllegalArgumentException.class, () -> new PngEncoder(ColorMode.AUTO, 10, FilterStrategy.NONE));
+        assertThrows(IllegalArgumentException.class, () -> new PngEncoder(ColorMode.AUTO, -2, FilterStrategy.NONE));
+    }
+
+    private static byte[] encode(PngEncoder encoder, BufferedImage image) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        encoder.encode(image, output);
+        return output.toByteArray();
+    }
+
+    private static void assertPixelsEqual(BufferedImage expected, byte[] png, String message) throws IOException {
+        BufferedImage actual = ImageIO.read(new ByteArrayInputStream(png));
+        assertNotNull(actual, message + ": not a readable PNG");
+        assertEquals(expected.getWidth(), actual.getWidth(), message);
+        assertEquals(expected.getHeight(), actual.getHeight(), message);
+        // ImageIO 把灰度 PNG 解码为线性灰度色彩空间, getRGB 会做伽马转换, 灰度图直接比较采样值
+        boolean gray = actual.getType() == BufferedImage.TYPE_BYTE_GRAY;
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                int e = expected.getRGB(x, y);
+                int a = actual.getRGB(x, y);
+                if (gray) {
+                    int v = actual.getRaster().getSample(x, y, 0);
+                    a = 0xFF000000 | v << 16 | v << 8 | v;
+                }
+                if (e != a) {
+                    fail(String.format("%s: pixel (%d, %d) expected %08x but was %08x", message, x, y, e, a));
+                }
+            }
+        }
+    }
+
+    /**
+     * 测试图片的内容, 分别对应 AUTO 选择的各种颜色类型
+     */
+    private enum Content {
+        /**
+         * 只有灰色, 包括二维码常见的黑白两色
+         */
+        GRAY,
+        /**
+         * 不超过 256 种颜色
+         */
+        FEW_COLORS,
+        /**
+         * 超过 256 种颜色的渐变
+         */
+        MANY_COLORS,
+        /**
+         * 含半透明与全透明像素
+         */
+        TRANSLUCENT;
+
+        BufferedImage create(int type) {
+            BufferedImage image = new BufferedImage(WIDTH, HEIGHT, type);
+            Random random = new Random(42);
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    int argb = switch (this) {
+                        case GRAY -> {
+                            int v = (x + y) % 3 == 0 ? 0 : (x * 7 + y) & 0xFF;
+                            yield 0xFF000000 | v << 16 | v << 8 | v;
+                        }
+                        case FEW_COLORS -> 0xFF000000 | random.nextInt(100) * 0x010305;
+                        case MANY_COLORS -> 0xFF000000 | (x * 7) << 16 | (y * 11) << 8 | random.nextInt(256);
+                        case TRANSLUCENT -> random.nextInt(256) << 24 | random.nextInt(0x1000000);
+                    };
+                    image.setRGB(x, y, argb);
+                }
+            }
+            return image;
+        }
+    }
+}